@@ -0,0 +1,114 @@
+package Benchmarks;
+
+import File_Readers.BoardCompiler;
+import File_Readers.Parser;
+import GameControl.BoardLayout;
+import GameControl.BoardRenderer;
+import GameControl.CompiledBoard;
+import GameControl.Game;
+import GameControl.Player;
+import GameControl.Position;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Printing the board, updating it on an ANSI terminal, and reading it in from
+ * cluedoBoardDraw.txt, which must be in the working directory. A game makes its
+ * board from the layout compiled once a run, compiling checks the drawing.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class Benchmark_Board {
+
+    private Game game;
+    private Player player;
+
+    // a renderer showing the player stepping back and forth between two squares
+    private BoardRenderer renderer;
+    private List<Player> players;
+    private Position here;
+    private Position there;
+
+    private List<String> drawing;
+
+    // parsing adds doors to the rooms of a game, so every parse gets a fresh game
+    private Game fresh;
+
+    @Setup
+    public void setup() throws IOException {
+        drawing = Files.readAllLines(Parser.BOARD_FILE);
+        game = new Game();
+        player = game.createPlayer("Bench", Player.Token.MrGreen, 1);
+        renderer = new BoardRenderer(game.getBoard());
+        players = Collections.singletonList(game.createPlayer("Step", Player.Token.MissScarlett, 2));
+        here = players.get(0).getPosition();
+        there = game.getBoard().position(here.x + 1, here.y);
+        renderer.update(players);
+    }
+
+    @Setup(Level.Invocation)
+    public void freshGame() {
+        fresh = new Game();
+    }
+
+    @Benchmark
+    public String printBoard() {
+        return game.printBoard(player);
+    }
+
+    /**
+     * The ANSI update after a one square move
+     */
+    @Benchmark
+    public String updateAfterMove() {
+        Player p = players.get(0);
+        p.move(p.getPosition() == here ? there : here);
+        return renderer.update(players);
+    }
+
+    /**
+     * The walkable neighbours of every square, which are kept with each square's position
+     */
+    @Benchmark
+    public int neighboursEverySquare() {
+        CompiledBoard board = game.getBoard();
+        int n = 0;
+        for (int cell = 0; cell < board.size(); cell++)
+            n += board.position(cell).getNeighbours(board).size();
+        return n;
+    }
+
+    @Benchmark
+    public CompiledBoard parseFile() {
+        return Parser.parseFile(fresh);
+    }
+
+    @Benchmark
+    public BoardLayout compileBoard() {
+        return BoardCompiler.compile(drawing);
+    }
+
+    @Benchmark
+    public Game newGame() {
+        return new Game();
+    }
+}
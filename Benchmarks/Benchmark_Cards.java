@@ -0,0 +1,85 @@
+package Benchmarks;
+
+import GameControl.Card;
+import GameControl.Game;
+import GameControl.GameEngine;
+import GameControl.Player;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Creating and dealing the deck, and looking cards up by name the way the
+ * TextClient does with what the players type.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class Benchmark_Cards {
+
+    private static final String[] ROOMS = {"Kitchen", "ball room", "Conservatory", "dining", "Billiard Room",
+            "library", "Lounge", "hall", "Study"};
+    private static final String[] CHARACTERS = {"Miss Scarlett", "mustard", "Green", "peacock", "Mrs White", "plum"};
+    private static final String[] WEAPONS = {"Rope", "dagger", "Candlestick", "lead pipe", "Spanner", "revolver"};
+
+    private Game game;
+    private Card card;
+
+    @Setup
+    public void setup() {
+        game = new Game();
+        card = game.getCard();
+    }
+
+    /**
+     * Builds a new deck and deals it to six players
+     */
+    @Benchmark
+    public List<Player> createAndDeal() {
+        Card deck = new Card();
+        List<Player> players = new ArrayList<>();
+        for (Player.Token token : Player.Token.values())
+            players.add(new Player(token.name(), token, null, token.ordinal() + 1));
+        deck.dealCards(players);
+        return players;
+    }
+
+    @Benchmark
+    public void lookupRooms(Blackhole bh) {
+        for (String name : ROOMS)
+            bh.consume(card.getRoom(name));
+    }
+
+    @Benchmark
+    public void lookupCharacters(Blackhole bh) {
+        for (String name : CHARACTERS)
+            bh.consume(card.getCharacter(name));
+    }
+
+    @Benchmark
+    public void lookupWeapons(Blackhole bh) {
+        for (String name : WEAPONS)
+            bh.consume(card.getWeapon(name));
+    }
+
+    @Benchmark
+    public void tokenOfCharacters(Blackhole bh) {
+        for (String name : CHARACTERS)
+            bh.consume(GameEngine.tokenOf(card.getCharacter(name)));
+    }
+}
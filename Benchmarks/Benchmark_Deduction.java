@@ -0,0 +1,76 @@
+package Benchmarks;
+
+import GameControl.DeductionSolver;
+import GameControl.Game;
+import GameControl.GameEngine;
+import GameControl.Knowledge;
+import GameControl.Player;
+import GameControl.SolutionProbabilities;
+import Simulation.Bot;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Solving a player's knowledge and weighing the envelopes part way through a
+ * game of four Bots, which the Bots do on every one of their turns.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class Benchmark_Deduction {
+
+    // how many turns are played before the knowledge is taken
+    @Param({"8", "24", "40"})
+    public int turns;
+
+    private Knowledge knowledge;
+    private int[] handSizes;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(42);
+        GameEngine engine = new GameEngine(new Game(random), random);
+        List<Bot> bots = new ArrayList<>();
+        for (int i = 0; i < 4; i++)
+            bots.add(new Bot(engine.addPlayer("Bot " + (i + 1), Player.Token.values()[i]), random));
+        engine.start();
+        while (!engine.isOver() && engine.getTurn() < turns)
+            engine.execute(bots.get(engine.getPlayers().indexOf(engine.getCurrentPlayer())).nextCommand(engine));
+        knowledge = engine.getPlayers().get(0).getKnowledge();
+        handSizes = new int[knowledge.getPlayers()];
+        for (int i = 0; i < handSizes.length; i++)
+            handSizes[i] = knowledge.getHandSize(i);
+    }
+
+    @Benchmark
+    public Knowledge solve() {
+        return DeductionSolver.solve(knowledge);
+    }
+
+    /**
+     * Weighing every envelope from nothing, without any counts kept from earlier turns
+     */
+    @Benchmark
+    public SolutionProbabilities probabilities() {
+        SolutionProbabilities probabilities = new SolutionProbabilities(handSizes);
+        probabilities.update(knowledge);
+        return probabilities;
+    }
+}
@@ -0,0 +1,86 @@
+package Benchmarks;
+
+import GameControl.Game;
+import GameControl.GameEngine;
+import GameControl.Journal;
+import GameControl.Player;
+import GameControl.Replayer;
+import Simulation.Bot;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reading back a journal of a hundred games of four Bots, streaming every
+ * event and rebuilding the last game at its end.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class Benchmark_Journal {
+
+    private Path file;
+    private Replayer replayer;
+    private long last;
+
+    @Setup
+    public void setup() throws IOException {
+        file = Files.createTempFile("benchmark", ".journal");
+        Random random = new Random(42);
+        try (Journal journal = new Journal(file)) {
+            for (int game = 0; game < 100; game++) {
+                GameEngine engine = new GameEngine(new Game(random), random);
+                List<Bot> bots = new ArrayList<>();
+                for (int i = 0; i < 4; i++)
+                    bots.add(new Bot(engine.addPlayer("Bot " + (i + 1), Player.Token.values()[i]), random));
+                engine.setJournal(journal);
+                engine.start();
+                while (!engine.isOver() && engine.getTurn() < 500)
+                    engine.execute(bots.get(engine.getPlayers().indexOf(engine.getCurrentPlayer())).nextCommand(engine));
+            }
+            last = journal.getRecords() - 1;
+        }
+        replayer = new Replayer(file);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.delete(file);
+    }
+
+    /**
+     * Every record of the journal, as analytics would read them
+     */
+    @Benchmark
+    public long stream() {
+        replayer.rewind();
+        long sum = 0;
+        while (replayer.next())
+            sum += replayer.isGame() ? replayer.getSolution() : replayer.getValue() + replayer.getPlayer();
+        return sum;
+    }
+
+    @Benchmark
+    public GameEngine rebuild() {
+        return replayer.rebuild(last);
+    }
+}
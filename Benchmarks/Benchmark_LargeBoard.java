@@ -0,0 +1,109 @@
+package Benchmarks;
+
+import File_Readers.BoardGenerator;
+import GameControl.BoardLayout;
+import GameControl.Game;
+import GameControl.HierarchicalPathFinder;
+import GameControl.PathFinder;
+import GameControl.Player;
+import GameControl.Room;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Playing on generated boards from 256 to 4096 squares across, each with 256
+ * rooms of four doors. That is too many doors for distance fields, so players
+ * are moved with the hierarchical search.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgs = "-Xmx4g")
+public class Benchmark_LargeBoard {
+
+    @Param({"256", "1024", "4096"})
+    private int size;
+
+    private BoardLayout layout;
+    private Game game;
+    private Player player;
+    private Room room;
+    private int[] path;
+
+    @Setup
+    public void setup() {
+        layout = new BoardGenerator(size, size, 256, 4).generate(42);
+        game = new Game(new Random(42), layout);
+        player = game.createPlayer("Bench", Player.Token.MissScarlett, 1);
+        room = game.getRoom("Study");
+        path = new int[12];
+    }
+
+    /**
+     * The shortest path between opposite corners of the board
+     */
+    @Benchmark
+    public int findPathAcross() {
+        PathFinder finder = game.getPathFinder();
+        return finder.findPath(0, finder.size() - 1, path);
+    }
+
+    /**
+     * The same path with the hierarchical search, only the first turn's steps are filled in
+     */
+    @Benchmark
+    public int findPathAcrossHierarchical() {
+        HierarchicalPathFinder finder = game.getHierarchicalPathFinder();
+        return finder.findPath(0, layout.size() - 1, path);
+    }
+
+    /**
+     * One turn's walk from the start towards a room
+     */
+    @Benchmark
+    public boolean moveTowardsRoom() {
+        player.leaveRoom();
+        player.move(game.getBoard().getStartPositions().get(0));
+        return game.movePlayer(player, 12, room);
+    }
+
+    /**
+     * Turns of a walk towards a room, each carrying on along the path of the last
+     * until the player gets there and starts again
+     */
+    @Benchmark
+    public boolean carryOnTowardsRoom() {
+        if (player.getRoom() != null) {
+            player.leaveRoom();
+            player.move(game.getBoard().getStartPositions().get(0));
+        }
+        return game.movePlayer(player, 12, room);
+    }
+
+    /**
+     * A game on a board that has already been loaded, which only makes its own rooms and doors
+     */
+    @Benchmark
+    public Game newGame() {
+        return new Game(new Random(42), layout);
+    }
+
+    @Benchmark
+    public String printBoard() {
+        return game.printBoard(player);
+    }
+}
@@ -0,0 +1,163 @@
+package Benchmarks;
+
+import GameControl.CompiledBoard;
+import GameControl.DistanceField;
+import GameControl.Door;
+import GameControl.Game;
+import GameControl.Occupancy;
+import GameControl.PathFinder;
+import GameControl.Player;
+import GameControl.Position;
+import GameControl.Room;
+import GameControl.RoomSearch;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Moving players from every start position to every door on the board, both
+ * through Game.movePlayer and with the A* search on its own, and with the other
+ * tokens standing in the way. Then how far every room is from every start, with
+ * one search a start or a search a room.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class Benchmark_Pathfinding {
+
+    private Game game;
+    private Player player;
+    private List<Position> starts;
+    private List<Door> doors;
+    private int[] path;
+
+    private Game crowded;
+    private Player walker;
+
+    @Setup
+    public void setup() {
+        game = new Game();
+        player = game.createPlayer("Bench", Player.Token.MissScarlett, 1);
+        starts = game.getBoard().getStartPositions();
+        doors = game.getBoard().getDoors();
+        path = new int[game.getPathFinder().size()];
+
+        // every other token a few steps out from its start towards the first door
+        crowded = new Game();
+        Occupancy occupancy = crowded.getOccupancy();
+        DistanceField distances = crowded.getDistances();
+        walker = crowded.createPlayer("Bench", Player.Token.MissScarlett, 1);
+        occupancy.add(walker);
+        for (Player.Token token : Player.Token.values()) {
+            if (token == walker.getToken())
+                continue;
+            Player other = crowded.createPlayer(token.name(), token, token.ordinal() + 1);
+            Position p = other.getPosition();
+            for (int i = 0; i < 4; i++)
+                p = distances.nextStep(crowded.getBoard().getDoors().get(0), p);
+            other.move(p);
+            occupancy.add(other);
+        }
+    }
+
+    /**
+     * Walks a player from every start towards every door, far enough to always get there
+     */
+    @Benchmark
+    public int movePlayerAllPairs() {
+        int entered = 0;
+        for (Position start : starts)
+            for (Door door : doors) {
+                player.leaveRoom();
+                player.move(start);
+                if (game.movePlayer(player, 100, door.getRoom()))
+                    entered++;
+            }
+        return entered;
+    }
+
+    /**
+     * The same walks with the other five tokens on the board, which are walked round
+     */
+    @Benchmark
+    public int movePlayerPastTokens() {
+        int entered = 0;
+        for (Position start : starts)
+            for (Door door : crowded.getBoard().getDoors()) {
+                walker.leaveRoom();
+                walker.move(start);
+                if (crowded.movePlayer(walker, 100, door.getRoom()))
+                    entered++;
+            }
+        return entered;
+    }
+
+    /**
+     * Finds the shortest path from every start to every door
+     */
+    @Benchmark
+    public int findPathAllPairs() {
+        PathFinder finder = game.getPathFinder();
+        int steps = 0;
+        for (Position start : starts)
+            for (Door door : doors)
+                steps += finder.findPath(finder.cell(start), finder.cell(door.getPos()), path);
+        return steps;
+    }
+
+    /**
+     * Asks for a path from every start into the middle of every room, which no
+     * path reaches, so the board graph turns each one away without a search
+     */
+    @Benchmark
+    public int findPathIntoRooms() {
+        PathFinder finder = game.getPathFinder();
+        int missed = 0;
+        for (Position start : starts)
+            for (int cell = 0; cell < finder.size(); cell++)
+                if (game.getBoard().kind(cell) == CompiledBoard.INSIDE
+                        && finder.findPath(finder.cell(start), cell, null) == PathFinder.NO_PATH)
+                    missed++;
+        return missed;
+    }
+    /**
+     * How far every room is from every start, with one search from each
+     */
+    @Benchmark
+    public int distancesToEveryRoom() {
+        int steps = 0;
+        for (Position start : starts) {
+            RoomSearch.Distances distances = game.getRoomSearch().from(start);
+            for (Room room : distances.getRooms())
+                steps += distances.getSteps(room);
+        }
+        return steps;
+    }
+
+    /**
+     * The same with an A* search to the door of every room nearest as the crow flies
+     */
+    @Benchmark
+    public int findPathToEveryRoom() {
+        PathFinder finder = game.getPathFinder();
+        int steps = 0;
+        for (Position start : starts)
+            for (Room room : game.getCard().getRooms())
+                steps += finder.findPath(finder.cell(start), finder.cell(room.getDoor(start).getPos()), null);
+        return steps;
+    }
+
+}
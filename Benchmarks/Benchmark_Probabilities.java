@@ -0,0 +1,78 @@
+package Benchmarks;
+
+import GameControl.Game;
+import GameControl.GameEngine;
+import GameControl.Knowledge;
+import GameControl.Player;
+import GameControl.SolutionProbabilities;
+import Simulation.Bot;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The cost of a turn's update of the solution probabilities, as a Bot makes them.
+ * A game of Bots is played once and what the first player knows after every turn
+ * is kept, then each call updates the same SolutionProbabilities with the next
+ * turn's knowledge, starting again with a new one when the game runs out.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class Benchmark_Probabilities {
+
+    // a game of Bots is nearly always over long before this
+    private static final int MAX_TURNS = 400;
+
+    @Param({"3", "6"})
+    public int players;
+
+    private final List<Knowledge> turns = new ArrayList<>();
+    private int[] handSizes;
+    private SolutionProbabilities probabilities;
+    private int next;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(42);
+        GameEngine engine = new GameEngine(new Game(random), random);
+        List<Bot> bots = new ArrayList<>();
+        for (int i = 0; i < players; i++)
+            bots.add(new Bot(engine.addPlayer("Bot " + (i + 1), Player.Token.values()[i]), random));
+        engine.start();
+        Knowledge knowledge = engine.getPlayers().get(0).getKnowledge();
+        while (!engine.isOver() && engine.getTurn() < MAX_TURNS) {
+            engine.execute(bots.get(engine.getPlayers().indexOf(engine.getCurrentPlayer())).nextCommand(engine));
+            turns.add(new Knowledge(knowledge));
+        }
+        handSizes = new int[knowledge.getPlayers()];
+        for (int i = 0; i < handSizes.length; i++)
+            handSizes[i] = knowledge.getHandSize(i);
+    }
+
+    @Benchmark
+    public SolutionProbabilities update() {
+        if (next == turns.size())
+            next = 0;
+        if (next == 0)
+            probabilities = new SolutionProbabilities(handSizes);
+        probabilities.update(turns.get(next++));
+        return probabilities;
+    }
+}
@@ -0,0 +1,166 @@
+package Benchmarks;
+
+import File_Readers.BoardGenerator;
+import File_Readers.MoveTableCompiler;
+import File_Readers.Parser;
+import GameControl.CompiledBoard;
+import GameControl.Game;
+import GameControl.GameEngine;
+import GameControl.MoveTable;
+import GameControl.Reachability;
+import GameControl.Room;
+import GameControl.TurnPlanner;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Finding everywhere a roll can take a player from every square of the board,
+ * searching afresh, looking up the answers kept from the last search and reading
+ * the move table, and searching on a generated board of 4096 squares across.
+ * Then working out and asking how many turns every room is from every square.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgs = "-Xmx4g")
+public class Benchmark_Reachability {
+
+    private CompiledBoard board;
+    private Reachability kept;
+    private MoveTable table;
+    private TurnPlanner planner;
+    private Game game;
+    private int[] walkable;
+
+    private CompiledBoard large;
+    private int[] largeCells;
+    private int next;
+
+    @Setup
+    public void setup() {
+        game = new Game(new Random(42));
+        board = game.getBoard();
+        kept = game.getReachability();
+        table = game.getMoveTable();
+        walkable = walkable(board);
+        planner = game.getTurnPlanner();
+        for (int cell : walkable)
+            kept.from(cell);
+
+        large = new Game(new Random(42), new BoardGenerator(4096, 4096, 256, 4).generate(42)).getBoard();
+        Random random = new Random(42);
+        largeCells = new int[1024];
+        for (int i = 0; i < largeCells.length; ) {
+            int cell = random.nextInt(large.size());
+            if (large.isWalkable(cell))
+                largeCells[i++] = cell;
+        }
+    }
+
+    private static int[] walkable(CompiledBoard board) {
+        int n = 0;
+        int[] cells = new int[board.size()];
+        for (int cell = 0; cell < board.size(); cell++) {
+            if (board.isWalkable(cell))
+                cells[n++] = cell;
+        }
+        return Arrays.copyOf(cells, n);
+    }
+
+    /**
+     * Searches from every square the player can stand on
+     */
+    @Benchmark
+    public int searchEverySquare() {
+        Reachability reachability = new Reachability(board);
+        int rooms = 0;
+        for (int cell : walkable)
+            rooms |= reachability.from(cell).getRooms(7);
+        return rooms;
+    }
+
+    /**
+     * The rooms each square can reach on every roll, once the answers are kept
+     */
+    @Benchmark
+    public int lookUpEverySquare() {
+        int rooms = 0;
+        for (int cell : walkable)
+            for (int roll = GameEngine.MIN_ROLL; roll <= GameEngine.MAX_ROLL; roll++)
+                rooms += kept.from(cell).getRooms(roll);
+        return rooms;
+    }
+
+    /**
+     * The same questions asked of the move table
+     */
+    @Benchmark
+    public int lookUpMoveTable() {
+        int rooms = 0;
+        for (int cell : walkable)
+            for (int roll = GameEngine.MIN_ROLL; roll <= GameEngine.MAX_ROLL; roll++)
+                rooms += table.getRooms(cell, roll);
+        return rooms;
+    }
+
+    /**
+     * Working the whole move table out, as the first run on a board does
+     */
+    @Benchmark
+    public MoveTable buildMoveTable() {
+        return new MoveTable(board);
+    }
+
+    /**
+     * Reading the move table in from its file, as every later run does
+     */
+    @Benchmark
+    public MoveTable readMoveTable() throws IOException {
+        return MoveTableCompiler.read(MoveTableCompiler.tableFor(Parser.BOARD_FILE), board);
+    }
+
+    /**
+     * One search on the large board, which looks at no more of it than the roll can reach
+     */
+    @Benchmark
+    public int searchLargeBoard() {
+        Reachability reachability = new Reachability(large);
+        next = (next + 1) & (largeCells.length - 1);
+        return reachability.from(largeCells[next]).getCells(GameEngine.MAX_ROLL);
+    }
+
+    /**
+     * Working out the turns from every square and room to every room
+     */
+    @Benchmark
+    public TurnPlanner buildTurnPlanner() {
+        return new TurnPlanner(board, game.getRoomSearch());
+    }
+
+    /**
+     * The turns from every square to every room, once they are worked out
+     */
+    @Benchmark
+    public double lookUpTurns() {
+        double turns = 0;
+        for (int cell : walkable)
+            for (Room room : game.getCard().getRooms())
+                turns += planner.getTurns(cell, room);
+        return turns;
+    }
+}
@@ -0,0 +1,69 @@
+package Benchmarks;
+
+import GameControl.Game;
+import GameControl.GameEngine;
+import GameControl.Player;
+import GameControl.Snapshot;
+import Simulation.Bot;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Saving a game part way through to a snapshot and restoring it. Restoring
+ * deals the cards again onto the same Game each time, as the rooms and board
+ * are not changed by playing.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class Benchmark_Snapshot {
+
+    @Param({"3", "6"})
+    public int players;
+
+    private GameEngine engine;
+    private byte[] snapshot;
+    private Game game;
+    private Random random;
+
+    @Setup
+    public void setup() {
+        random = new Random(42);
+        engine = new GameEngine(new Game(random), random);
+        List<Bot> bots = new ArrayList<>();
+        for (int i = 0; i < players; i++)
+            bots.add(new Bot(engine.addPlayer("Bot " + (i + 1), Player.Token.values()[i]), random));
+        engine.start();
+        while (!engine.isOver() && engine.getTurn() < 30)
+            engine.execute(bots.get(engine.getPlayers().indexOf(engine.getCurrentPlayer())).nextCommand(engine));
+        snapshot = Snapshot.save(engine);
+        game = new Game();
+    }
+
+    @Benchmark
+    public byte[] save() {
+        return Snapshot.save(engine);
+    }
+
+    @Benchmark
+    public GameEngine restore() {
+        return Snapshot.restore(snapshot, game, random);
+    }
+}
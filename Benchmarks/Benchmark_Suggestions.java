@@ -0,0 +1,66 @@
+package Benchmarks;
+
+import GameControl.Card;
+import GameControl.CardSet;
+import GameControl.Game;
+import GameControl.Player;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Resolving suggestions: going round the players until one of them holds a
+ * card of the guess and picking the card they reveal.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class Benchmark_Suggestions {
+
+    private static final int GUESSES = 1024;
+
+    private List<Player> players;
+    private CardSet[] guesses;
+    private int next;
+
+    @Setup
+    public void setup() {
+        Game game = new Game(new Random(42));
+        players = new ArrayList<>();
+        for (Player.Token token : Player.Token.values())
+            players.add(game.createPlayer(token.name(), token, token.ordinal() + 1));
+        game.dealCards(players);
+
+        // every suggestion is one card of each category
+        Random random = new Random(7);
+        Card card = game.getCard();
+        guesses = new CardSet[GUESSES];
+        for (int i = 0; i < GUESSES; i++)
+            guesses[i] = new CardSet(card.getCard(random.nextInt(6)), card.getCard(6 + random.nextInt(6)),
+                    card.getCard(12 + random.nextInt(9)));
+    }
+
+    @Benchmark
+    public Card resolveSuggestion() {
+        CardSet guess = guesses[next++ & (GUESSES - 1)];
+        for (Player p : players)
+            if (p.checkCards(guess))
+                return p.pickRandomCardToReveal(guess);
+        return null;
+    }
+}
@@ -0,0 +1,24 @@
+package Benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs all of our benchmarks, reporting throughput along with the allocation
+ * rate from the GC profiler. A single suite can be run by passing part of its
+ * name, for example "Pathfinding".
+ */
+public class Main_Benchmarks {
+
+    public static void main(String[] args) throws RunnerException {
+        String include = args.length > 0 ? args[0] : "Benchmark_";
+        Options options = new OptionsBuilder()
+                .include(Main_Benchmarks.class.getPackage().getName() + ".*" + include + ".*")
+                .addProfiler(GCProfiler.class)
+                .build();
+        new Runner(options).run();
+    }
+}
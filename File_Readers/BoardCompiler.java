@@ -0,0 +1,353 @@
+package File_Readers;
+
+import GameControl.BoardGraph;
+import GameControl.BoardLayout;
+import GameControl.Card;
+import GameControl.CardIndex;
+import GameControl.CompiledBoard;
+import GameControl.Player;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The BoardCompiler reads the text drawing of the board once, checks that it
+ * can be played on, and writes it out as a binary file next to the drawing
+ * (cluedoBoardDraw.txt becomes cluedoBoardDraw.bin). Later loads read the binary
+ * file instead of the text, checking it as they go, and within one run the
+ * layout is only loaded once and shared by every game.
+ * <p>
+ * The binary file is rebuilt whenever the drawing has changed since it was written:
+ * <pre>
+ * magic     4 bytes  CLDB
+ * version   4 bytes
+ * source    8 bytes  the last modified time of the drawing
+ *           8 bytes  the length of the drawing
+ * size      4 bytes  rows, then 4 bytes columns
+ * kinds     1 byte a square, row by row, as CompiledBoard.PATH and so on
+ * rooms     1 byte a square, the card id of the room of a room or door square, 255 for the rest
+ * </pre>
+ */
+public class BoardCompiler {
+
+    public static final int MAGIC = 0x434C4442; // CLDB
+    public static final int VERSION = 1;
+    private static final int HEADER = 32;
+
+    // the lower case letter of a room's squares, the upper case letter is one of its doors
+    private static final String ROOM_LETTERS = "kbcdrloht";
+    private static final String[] ROOM_NAMES = {"Kitchen", "Ball Room", "Conservatory", "Dining Room",
+            "Billiard Room", "Library", "Lounge", "Hall", "Study"};
+    private static final int[] ROOM_IDS = new int[ROOM_NAMES.length];
+
+    static {
+        for (int i = 0; i < ROOM_NAMES.length; i++)
+            ROOM_IDS[i] = CardIndex.find(ROOM_NAMES[i], Card.ROOMS);
+    }
+
+    private static final int[] DX = {0, 0, -1, 1};
+    private static final int[] DY = {-1, 1, 0, 0};
+
+    private static final Map<Path, BoardLayout> loaded = new ConcurrentHashMap<>();
+
+    /**
+     * The layout of the drawing, loaded once a run from its binary file, which is
+     * compiled first if it is missing or out of date
+     */
+    public static BoardLayout load(Path drawing) {
+        return loaded.computeIfAbsent(drawing.toAbsolutePath().normalize(), BoardCompiler::loadFile);
+    }
+
+    private static BoardLayout loadFile(Path drawing) {
+        try {
+            long modified = Files.getLastModifiedTime(drawing).toMillis();
+            long length = Files.size(drawing);
+            Path binary = binaryFor(drawing);
+            if (Files.exists(binary)) {
+                try {
+                    BoardLayout layout = read(binary, modified, length);
+                    if (layout != null)
+                        return layout;
+                } catch (IllegalArgumentException e) {
+                    // a damaged binary file is compiled again
+                }
+            }
+            BoardLayout layout = compile(Files.readAllLines(drawing, StandardCharsets.UTF_8));
+            try {
+                write(layout, binary, modified, length);
+            } catch (IOException e) {
+                // we can still play if the binary cannot be written, it will be compiled again next run
+            }
+            return layout;
+        } catch (IOException e) {
+            throw new UncheckedIOException("The board could not be read from " + drawing, e);
+        }
+    }
+
+    /**
+     * Where the binary file of the drawing goes, next to it with the extension .bin
+     */
+    public static Path binaryFor(Path drawing) {
+        String name = drawing.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        return drawing.resolveSibling((dot < 0 ? name : name.substring(0, dot)) + ".bin");
+    }
+
+    /*********************************/
+    /*          COMPILING            */
+    /*********************************/
+
+    /**
+     * Reads the drawing of a board and checks that it can be played on: every row
+     * the same length, every door between a path and its own room, the middle of
+     * every room closed off from the paths, a door into every room, a start square
+     * for every token and every door reachable from the start squares.
+     *
+     * @param lines the rows of the drawing, blank lines are skipped
+     */
+    public static BoardLayout compile(List<String> lines) {
+        List<String> drawing = new ArrayList<>();
+        for (String line : lines)
+            if (!line.trim().isEmpty())
+                drawing.add(line.trim());
+        if (drawing.isEmpty())
+            throw new IllegalArgumentException("The board is empty");
+
+        int rows = drawing.size();
+        int cols = drawing.get(0).length();
+        byte[] kinds = new byte[rows * cols];
+        byte[] rooms = new byte[rows * cols];
+
+        for (int x = 0; x < rows; x++) {
+            String row = drawing.get(x);
+            if (row.length() != cols)
+                throw new IllegalArgumentException("Row " + x + " of the board is " + row.length() + " squares long, not " + cols);
+            for (int y = 0; y < cols; y++) {
+                char c = row.charAt(y);
+                int cell = x * cols + y;
+                int room = ROOM_LETTERS.indexOf(Character.toLowerCase(c));
+                rooms[cell] = (byte) (room < 0 ? BoardLayout.NO_ROOM : ROOM_IDS[room]);
+                kinds[cell] = kindOf(c, room);
+                if (kinds[cell] < 0)
+                    throw new IllegalArgumentException("Incorrect input read: " + c + " at " + at(x, y));
+            }
+        }
+        return compile(rows, cols, kinds, rooms);
+    }
+
+    /**
+     * Checks a board made some other way, such as by the BoardGenerator, in the
+     * same way as a drawing
+     *
+     * @param kinds the kind of every square, as CompiledBoard.PATH and so on
+     * @param rooms the card id of the room of every room and door square, BoardLayout.NO_ROOM for the rest
+     */
+    public static BoardLayout compile(int rows, int cols, byte[] kinds, byte[] rooms) {
+        BoardLayout layout = new BoardLayout(rows, cols, kinds, rooms);
+        check(rows, cols, kinds, rooms);
+        checkReachable(layout);
+        return layout;
+    }
+
+    /**
+     * Draws a layout as text, so it can be read back with compile
+     */
+    public static List<String> draw(BoardLayout layout) {
+        List<String> lines = new ArrayList<>(layout.rows());
+        char[] line = new char[layout.cols()];
+        for (int x = 0; x < layout.rows(); x++) {
+            for (int y = 0; y < layout.cols(); y++) {
+                int cell = x * layout.cols() + y;
+                line[y] = letterOf(layout.kind(cell), layout.room(cell));
+            }
+            lines.add(new String(line));
+        }
+        return lines;
+    }
+
+    private static char letterOf(byte kind, int room) {
+        switch (kind) {
+            case CompiledBoard.ROOM:
+            case CompiledBoard.DOOR:
+                for (int i = 0; i < ROOM_IDS.length; i++)
+                    if (ROOM_IDS[i] == room) {
+                        char letter = ROOM_LETTERS.charAt(i);
+                        return kind == CompiledBoard.DOOR ? Character.toUpperCase(letter) : letter;
+                    }
+                throw new IllegalArgumentException("There is no letter for the room " + room);
+            case CompiledBoard.BLOCKED:
+                return '#';
+            case CompiledBoard.SOLUTION:
+                return 's';
+            case CompiledBoard.INSIDE:
+                return '*';
+            case CompiledBoard.START:
+                return 'P';
+            default:
+                return '.';
+        }
+    }
+
+    private static byte kindOf(char c, int room) {
+        if (room >= 0)
+            return Character.isUpperCase(c) ? CompiledBoard.DOOR : CompiledBoard.ROOM;
+        switch (c) {
+            case '#':
+                return CompiledBoard.BLOCKED;
+            case 's':
+                return CompiledBoard.SOLUTION;
+            case '.': // these are the paths in which we can move
+                return CompiledBoard.PATH;
+            case '*': // the middle of a room, players are never on these
+                return CompiledBoard.INSIDE;
+            case 'P': // players start position
+                return CompiledBoard.START;
+            default:
+                return -1;
+        }
+    }
+
+    private static void check(int rows, int cols, byte[] kinds, byte[] rooms) {
+        int doorsOfRooms = 0;
+        int starts = 0;
+        for (int cell = 0; cell < kinds.length; cell++) {
+            int x = cell / cols;
+            int y = cell % cols;
+            boolean path = false;
+            boolean wall = false;
+            for (int d = 0; d < DX.length; d++) {
+                int nx = x + DX[d];
+                int ny = y + DY[d];
+                if (nx < 0 || ny < 0 || nx >= rows || ny >= cols)
+                    continue;
+                int next = nx * cols + ny;
+                path |= kinds[next] == CompiledBoard.PATH || kinds[next] == CompiledBoard.START;
+                wall |= kinds[next] == CompiledBoard.INSIDE
+                        || kinds[next] == CompiledBoard.ROOM && rooms[next] == rooms[cell];
+            }
+            switch (kinds[cell]) {
+                case CompiledBoard.DOOR:
+                    if (!path)
+                        throw new IllegalArgumentException("The door of the " + name(rooms[cell]) + " at " + at(x, y) + " does not open onto a path");
+                    if (!wall)
+                        throw new IllegalArgumentException("The door of the " + name(rooms[cell]) + " at " + at(x, y) + " is not in its wall");
+                    doorsOfRooms |= 1 << rooms[cell];
+                    break;
+                case CompiledBoard.INSIDE:
+                    if (path)
+                        throw new IllegalArgumentException("The room at " + at(x, y) + " is open to the path, it must be closed off by its walls and doors");
+                    break;
+                case CompiledBoard.START:
+                    starts++;
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        int missing = Card.ROOMS & ~doorsOfRooms;
+        if (missing != 0)
+            throw new IllegalArgumentException("The " + name((byte) Integer.numberOfTrailingZeros(missing)) + " has no door");
+        int tokens = Player.Token.values().length;
+        if (starts < tokens)
+            throw new IllegalArgumentException("The board has " + starts + " start squares, it needs one for each of the " + tokens + " tokens");
+    }
+
+    /**
+     * Every start square and door must be reachable by walking from the first start square
+     */
+    private static void checkReachable(BoardLayout layout) {
+        BoardGraph graph = layout.graph();
+        int component = BoardGraph.NO_COMPONENT;
+        for (int cell = 0; cell < layout.size() && component == BoardGraph.NO_COMPONENT; cell++)
+            if (layout.kind(cell) == CompiledBoard.START)
+                component = graph.component(cell);
+        for (int cell = 0; cell < layout.size(); cell++) {
+            byte kind = layout.kind(cell);
+            if ((kind == CompiledBoard.DOOR || kind == CompiledBoard.START) && graph.component(cell) != component)
+                throw new IllegalArgumentException("The square at " + at(cell / layout.cols(), cell % layout.cols()) + " cannot be reached from the start squares");
+        }
+    }
+
+    private static String name(byte room) {
+        for (int i = 0; i < ROOM_IDS.length; i++)
+            if (ROOM_IDS[i] == room)
+                return ROOM_NAMES[i];
+        return "room " + room;
+    }
+
+    private static String at(int x, int y) {
+        return "row " + x + ", column " + y;
+    }
+
+    /*********************************/
+    /*          THE BINARY FILE      */
+    /*********************************/
+
+    /**
+     * Writes the layout to its binary file, through a temporary file so a game
+     * starting at the same time never reads half a file
+     */
+    public static void write(BoardLayout layout, Path binary, long modified, long length) throws IOException {
+        int size = layout.size();
+        ByteBuffer out = ByteBuffer.allocate(HEADER + 2 * size);
+        out.putInt(MAGIC).putInt(VERSION).putLong(modified).putLong(length).putInt(layout.rows()).putInt(layout.cols());
+        for (int cell = 0; cell < size; cell++)
+            out.put(layout.kind(cell));
+        for (int cell = 0; cell < size; cell++)
+            out.put((byte) layout.room(cell));
+
+        Path temp = Files.createTempFile(binary.toAbsolutePath().getParent(), binary.getFileName().toString(), ".tmp");
+        try {
+            Files.write(temp, out.array());
+            Files.move(temp, binary, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Reads a binary file back into a layout. The planes must be the size the header
+     * says, and the board they make is checked as a drawing would be.
+     *
+     * @param modified the last modified time the drawing must have had when the file was written, or -1 for any
+     * @param length   the length the drawing must have had, or -1 for any
+     * @return the layout, or null if the file was written for a different drawing or version
+     */
+    public static BoardLayout read(Path binary, long modified, long length) throws IOException {
+        long fileSize = Files.size(binary);
+        if (fileSize < HEADER)
+            throw new IllegalArgumentException("The board file " + binary + " is damaged");
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(binary)))) {
+            if (in.readInt() != MAGIC)
+                throw new IllegalArgumentException("The file " + binary + " is not a compiled board");
+            if (in.readInt() != VERSION)
+                return null;
+            long sourceModified = in.readLong();
+            long sourceLength = in.readLong();
+            if (modified >= 0 && sourceModified != modified || length >= 0 && sourceLength != length)
+                return null;
+            int rows = in.readInt();
+            int cols = in.readInt();
+            long size = (long) rows * cols;
+            if (rows <= 0 || cols <= 0 || size > Integer.MAX_VALUE || HEADER + 2 * size != fileSize)
+                throw new IllegalArgumentException("The board file " + binary + " is damaged");
+            byte[] kinds = new byte[(int) size];
+            byte[] rooms = new byte[(int) size];
+            in.readFully(kinds);
+            in.readFully(rooms);
+            return compile(rows, cols, kinds, rooms);
+        }
+    }
+}
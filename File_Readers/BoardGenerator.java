@@ -0,0 +1,144 @@
+package File_Readers;
+
+import GameControl.BoardLayout;
+import GameControl.Card;
+import GameControl.CompiledBoard;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * The BoardGenerator makes boards of any size for testing how the game copes
+ * with large tables. The board is cut into a grid of blocks with a path around
+ * every block, and a room is put in each block, a rectangle of wall squares
+ * around its middle with its doors set in the walls. The sizes of the rooms and
+ * where their doors go are random but depend only on the seed.
+ * <p>
+ * There are only nine room cards, so on a board with more rooms than that the
+ * rooms take turns at being each card, and a card's doors are spread over all
+ * of its rooms. The start squares are on the top and bottom edges. Generated
+ * boards are checked by the BoardCompiler like any drawing, and can be drawn out
+ * with BoardCompiler.draw to be played on later.
+ */
+public class BoardGenerator {
+
+    // a room needs a wall either side of its middle and a path on each side of it
+    private static final int MIN_BLOCK = 5;
+    private static final int STARTS = 6;
+
+    private final int rows;
+    private final int cols;
+    private final int rooms;
+    private final int doors;
+
+    private final int[] roomIds;
+
+    /**
+     * @param rows  the height of the board
+     * @param cols  the width of the board
+     * @param rooms the number of rooms, at least one for each room card
+     * @param doors the number of doors in each room
+     */
+    public BoardGenerator(int rows, int cols, int rooms, int doors) {
+        int cards = Integer.bitCount(Card.ROOMS);
+        if (rooms < cards)
+            throw new IllegalArgumentException("A board needs at least " + cards + " rooms, one for each room card");
+        if (doors < 1)
+            throw new IllegalArgumentException("Every room needs a door");
+        int across = across(rooms);
+        int down = (rooms + across - 1) / across;
+        if (rows / down < MIN_BLOCK || cols / across < MIN_BLOCK || cols < STARTS)
+            throw new IllegalArgumentException("A board of " + rows + " by " + cols + " is too small for " + rooms + " rooms");
+        this.rows = rows;
+        this.cols = cols;
+        this.rooms = rooms;
+        this.doors = doors;
+
+        this.roomIds = new int[cards];
+        int id = Integer.numberOfTrailingZeros(Card.ROOMS);
+        for (int i = 0; i < cards; i++)
+            roomIds[i] = id + i;
+    }
+
+    /**
+     * The number of blocks across the board, as near to square as the number of rooms allows
+     */
+    private static int across(int rooms) {
+        return (int) Math.ceil(Math.sqrt(rooms));
+    }
+
+    /**
+     * Makes a board, the same seed always makes the same board
+     */
+    public BoardLayout generate(long seed) {
+        Random random = new Random(seed);
+        byte[] kinds = new byte[rows * cols]; // all PATH to start with
+        byte[] roomOf = new byte[rows * cols];
+        Arrays.fill(roomOf, (byte) BoardLayout.NO_ROOM);
+
+        int across = across(rooms);
+        int down = (rooms + across - 1) / across;
+        int blockRows = rows / down;
+        int blockCols = cols / across;
+        for (int room = 0; room < rooms; room++) {
+            // the room fits inside its block leaving at least a square of path all round
+            int top = room / across * blockRows;
+            int left = room % across * blockCols;
+            int height = 3 + random.nextInt(blockRows - MIN_BLOCK + 1);
+            int width = 3 + random.nextInt(blockCols - MIN_BLOCK + 1);
+            int x0 = top + 1 + random.nextInt(blockRows - height - 1);
+            int y0 = left + 1 + random.nextInt(blockCols - width - 1);
+            addRoom(kinds, roomOf, (byte) roomIds[room % roomIds.length], x0, y0, height, width, random);
+        }
+
+        // the start squares, spread out along the top and bottom edges
+        for (int i = 0; i < STARTS; i++) {
+            int x = i % 2 == 0 ? 0 : rows - 1;
+            int y = (i / 2 + 1) * cols / (STARTS / 2 + 1);
+            kinds[x * cols + y] = CompiledBoard.START;
+        }
+        return BoardCompiler.compile(rows, cols, kinds, roomOf);
+    }
+
+    private void addRoom(byte[] kinds, byte[] roomOf, byte id, int x0, int y0, int height, int width, Random random) {
+        for (int x = x0; x < x0 + height; x++) {
+            for (int y = y0; y < y0 + width; y++) {
+                int cell = x * cols + y;
+                boolean wall = x == x0 || y == y0 || x == x0 + height - 1 || y == y0 + width - 1;
+                kinds[cell] = wall ? CompiledBoard.ROOM : CompiledBoard.INSIDE;
+                if (wall)
+                    roomOf[cell] = id;
+            }
+        }
+
+        // the doors go in the walls but not the corners, which have no middle square next to them
+        int sides = height - 2;
+        int ends = width - 2;
+        int places = 2 * sides + 2 * ends;
+        int[] order = new int[places];
+        for (int i = 0; i < places; i++)
+            order[i] = i;
+        for (int i = 0; i < Math.min(doors, places); i++) {
+            int pick = i + random.nextInt(places - i);
+            int place = order[pick];
+            order[pick] = order[i];
+
+            int x;
+            int y;
+            if (place < ends) {
+                x = x0;
+                y = y0 + 1 + place;
+            } else if (place < 2 * ends) {
+                x = x0 + height - 1;
+                y = y0 + 1 + place - ends;
+            } else if (place < 2 * ends + sides) {
+                x = x0 + 1 + place - 2 * ends;
+                y = y0;
+            } else {
+                x = x0 + 1 + place - 2 * ends - sides;
+                y = y0 + width - 1;
+            }
+            kinds[x * cols + y] = CompiledBoard.DOOR;
+        }
+    }
+}
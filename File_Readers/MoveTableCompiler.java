@@ -0,0 +1,162 @@
+package File_Readers;
+
+import GameControl.BoardLayout;
+import GameControl.Card;
+import GameControl.CompiledBoard;
+import GameControl.MoveTable;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.CRC32;
+
+/**
+ * The MoveTableCompiler keeps the MoveTable of a drawing of the board in a file
+ * next to it (cluedoBoardDraw.txt has cluedoBoardDraw.moves), so a run only has
+ * to read the table in rather than work it out. The file can be made ahead of
+ * time by running this class, and is made again whenever the board it was made
+ * for has changed:
+ * <pre>
+ * magic     4 bytes  CLMT
+ * version   4 bytes
+ * board     8 bytes  the checksum of the layout the table was made for
+ * size      4 bytes  rows, then 4 bytes columns
+ * entries   4 bytes  the number of entries, then 2 bytes an entry as MoveTable.getEntries gives them
+ * </pre>
+ */
+public class MoveTableCompiler {
+
+    public static final int MAGIC = 0x434C4D54; // CLMT
+    public static final int VERSION = 2;
+    private static final int HEADER = 28;
+
+    private static final Map<Path, MoveTable> loaded = new ConcurrentHashMap<>();
+
+    /**
+     * The table of the drawing for the board made from it, loaded once a run from
+     * its file, which is made first if it is missing or out of date
+     */
+    public static MoveTable load(Path drawing, CompiledBoard board) {
+        return loaded.computeIfAbsent(drawing.toAbsolutePath().normalize(), d -> loadFile(d, board));
+    }
+
+    private static MoveTable loadFile(Path drawing, CompiledBoard board) {
+        Path file = tableFor(drawing);
+        try {
+            if (Files.exists(file)) {
+                try {
+                    MoveTable table = read(file, board);
+                    if (table != null)
+                        return table;
+                } catch (IllegalArgumentException e) {
+                    // a damaged file is made again
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("The move table could not be read from " + file, e);
+        }
+        MoveTable table = new MoveTable(board);
+        try {
+            write(table, board, file);
+        } catch (IOException e) {
+            // the table is only kept to save time, it will be made again next run
+        }
+        return table;
+    }
+
+    /**
+     * Where the table of the drawing goes, next to it with the extension .moves
+     */
+    public static Path tableFor(Path drawing) {
+        String name = drawing.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        return drawing.resolveSibling((dot < 0 ? name : name.substring(0, dot)) + ".moves");
+    }
+
+    /**
+     * A checksum of every square of the layout, the table has to be made again when it changes
+     */
+    public static long checksum(BoardLayout layout) {
+        CRC32 crc = new CRC32();
+        byte[] squares = new byte[2 * layout.size()];
+        for (int cell = 0; cell < layout.size(); cell++) {
+            squares[2 * cell] = layout.kind(cell);
+            squares[2 * cell + 1] = (byte) layout.room(cell);
+        }
+        crc.update(squares, 0, squares.length);
+        return crc.getValue() ^ (long) layout.rows() << 32 ^ (long) layout.cols() << 48;
+    }
+
+    /*********************************/
+    /*          THE TABLE FILE       */
+    /*********************************/
+
+    /**
+     * Writes the table to its file, through a temporary file so a game starting
+     * at the same time never reads half a table
+     */
+    public static void write(MoveTable table, CompiledBoard board, Path file) throws IOException {
+        char[] entries = table.getEntries();
+        ByteBuffer out = ByteBuffer.allocate(HEADER + 2 * entries.length);
+        out.putInt(MAGIC).putInt(VERSION).putLong(checksum(board.getLayout()))
+                .putInt(board.rows()).putInt(board.cols()).putInt(entries.length);
+        out.asCharBuffer().put(entries);
+
+        Path temp = Files.createTempFile(file.toAbsolutePath().getParent(), file.getFileName().toString(), ".tmp");
+        try {
+            Files.write(temp, out.array());
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Reads a table back in for the board
+     *
+     * @return the table, or null if the file was made for a different board or version
+     */
+    public static MoveTable read(Path file, CompiledBoard board) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() < HEADER)
+                throw new IllegalArgumentException("The move table " + file + " is damaged");
+            MappedByteBuffer in = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (in.getInt() != MAGIC)
+                throw new IllegalArgumentException("The file " + file + " is not a move table");
+            if (in.getInt() != VERSION)
+                return null;
+            if (in.getLong() != checksum(board.getLayout()) || in.getInt() != board.rows() || in.getInt() != board.cols())
+                return null;
+            int count = in.getInt();
+            if (count < 0 || 2L * count != in.remaining())
+                throw new IllegalArgumentException("The move table " + file + " is damaged");
+            char[] entries = new char[count];
+            CharBuffer chars = in.asCharBuffer();
+            chars.get(entries);
+            return new MoveTable(board, entries);
+        }
+    }
+
+    /**
+     * Makes the table file of a drawing ahead of time
+     * <p>
+     * Arguments: [drawing], cluedoBoardDraw.txt if it is not given
+     */
+    public static void main(String[] args) throws IOException {
+        Path drawing = args.length > 0 ? Paths.get(args[0]) : Parser.BOARD_FILE;
+        CompiledBoard board = new CompiledBoard(BoardCompiler.load(drawing), new Card());
+        Path file = tableFor(drawing);
+        write(new MoveTable(board), board, file);
+        System.out.println("Wrote the move table of " + drawing + " to " + file + " (" + Files.size(file) + " bytes)");
+    }
+}
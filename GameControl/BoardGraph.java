@@ -0,0 +1,214 @@
+package GameControl;
+
+import java.util.Arrays;
+
+/**
+ * A BoardGraph is the walkable squares of a board joined to the walkable squares
+ * next to them, kept in compressed rows: the neighbours of a square are
+ * edges[first(cell)] up to edges[first(cell + 1)], up, down, left then right.
+ * Squares that cannot be walked on have none.
+ * <p>
+ * Each walkable square also has the id of the group of squares that can all be
+ * walked to from each other, found with a union-find when the graph is made, so
+ * whether there is any way between two squares is answered without a search.
+ * <p>
+ * The graph only depends on the layout, so it is made once and shared, read only,
+ * by the searches of every game on it.
+ * <p>
+ * Squares are indexed row by row, cell = x * columns + y.
+ */
+public class BoardGraph {
+
+    public static final int NO_COMPONENT = -1;
+
+    private final int rows;
+    private final int cols;
+    private final int[] first; // the first edge of each square, with one more at the end
+    private final int[] edges; // the square each edge leads to
+    private final int[] component; // NO_COMPONENT for squares that cannot be walked on
+    private final int components;
+
+    public BoardGraph(BoardLayout layout) {
+        this(layout.rows(), layout.cols(), layout.kinds);
+    }
+
+    /**
+     * The graph of a board built square by square, which has no layout to share it through
+     */
+    public BoardGraph(CompiledBoard board) {
+        this(board.rows(), board.cols(), kinds(board));
+    }
+
+    private static byte[] kinds(CompiledBoard board) {
+        byte[] kinds = new byte[board.size()];
+        for (int cell = 0; cell < kinds.length; cell++)
+            kinds[cell] = board.kind(cell);
+        return kinds;
+    }
+
+    private BoardGraph(int rows, int cols, byte[] kinds) {
+        this.rows = rows;
+        this.cols = cols;
+        int size = kinds.length;
+
+        // count the edges first so they fit in one array
+        this.first = new int[size + 1];
+        int count = 0;
+        for (int cell = 0; cell < size; cell++) {
+            first[cell] = count;
+            if (CompiledBoard.isWalkable(kinds[cell]))
+                count += degree(kinds, cell);
+        }
+        first[size] = count;
+        this.edges = new int[count];
+
+        // union-find over the squares, joining each walkable square to those right of and below it
+        int[] parent = new int[size];
+        for (int cell = 0; cell < size; cell++)
+            parent[cell] = cell;
+        for (int cell = 0, e = 0; cell < size; cell++) {
+            if (!CompiledBoard.isWalkable(kinds[cell]))
+                continue;
+            int y = cell % cols;
+            if (y > 0 && CompiledBoard.isWalkable(kinds[cell - 1]))
+                edges[e++] = cell - 1;
+            if (y < cols - 1 && CompiledBoard.isWalkable(kinds[cell + 1])) {
+                edges[e++] = cell + 1;
+                union(parent, cell, cell + 1);
+            }
+            if (cell >= cols && CompiledBoard.isWalkable(kinds[cell - cols]))
+                edges[e++] = cell - cols;
+            if (cell + cols < size && CompiledBoard.isWalkable(kinds[cell + cols])) {
+                edges[e++] = cell + cols;
+                union(parent, cell, cell + cols);
+            }
+        }
+
+        // every parent is a lower square, so going up the board each square can be pointed straight at its root
+        for (int cell = 0; cell < size; cell++)
+            parent[cell] = parent[parent[cell]];
+
+        // then number the groups in the order their roots appear, reusing the parents
+        this.component = parent;
+        int found = 0;
+        for (int cell = 0; cell < size; cell++) {
+            int root = parent[cell];
+            if (!CompiledBoard.isWalkable(kinds[cell]))
+                component[cell] = NO_COMPONENT;
+            else
+                component[cell] = root == cell ? found++ : component[root];
+        }
+        this.components = found;
+    }
+
+    private int degree(byte[] kinds, int cell) {
+        int y = cell % cols;
+        int n = 0;
+        if (y > 0 && CompiledBoard.isWalkable(kinds[cell - 1])) n++;
+        if (y < cols - 1 && CompiledBoard.isWalkable(kinds[cell + 1])) n++;
+        if (cell >= cols && CompiledBoard.isWalkable(kinds[cell - cols])) n++;
+        if (cell + cols < kinds.length && CompiledBoard.isWalkable(kinds[cell + cols])) n++;
+        return n;
+    }
+
+    private static int find(int[] parent, int cell) {
+        while (parent[cell] != cell) {
+            parent[cell] = parent[parent[cell]]; // halve the path as we go
+            cell = parent[cell];
+        }
+        return cell;
+    }
+
+    private static void union(int[] parent, int a, int b) {
+        int ra = find(parent, a);
+        int rb = find(parent, b);
+        // the lower square becomes the root, so a group's root is its first square
+        if (ra < rb)
+            parent[rb] = ra;
+        else if (rb < ra)
+            parent[ra] = rb;
+    }
+
+    public int rows() {
+        return rows;
+    }
+
+    public int cols() {
+        return cols;
+    }
+
+    public int size() {
+        return component.length;
+    }
+
+    /**
+     * @return the first edge of the square, its edges end at the first edge of the next square
+     */
+    public int first(int cell) {
+        return first[cell];
+    }
+
+    /**
+     * @return the square the edge leads to
+     */
+    public int target(int edge) {
+        return edges[edge];
+    }
+
+    public int degree(int cell) {
+        return first[cell + 1] - first[cell];
+    }
+
+    public boolean isWalkable(int cell) {
+        return component[cell] != NO_COMPONENT;
+    }
+
+    /**
+     * @return the id of the group of squares that can be walked to from this one, or NO_COMPONENT
+     */
+    public int component(int cell) {
+        return component[cell];
+    }
+
+    /**
+     * @return the number of separate groups of walkable squares
+     */
+    public int components() {
+        return components;
+    }
+
+    /**
+     * Whether there is any way to walk between the two squares, both must be walkable
+     */
+    public boolean connected(int from, int to) {
+        return component[from] != NO_COMPONENT && component[from] == component[to];
+    }
+
+    /**
+     * Steps from the nearest of the squares to every square, -1 for those that cannot be walked to
+     */
+    public int[] distances(int[] sources) {
+        int[] distance = new int[size()];
+        Arrays.fill(distance, -1);
+        int[] queue = new int[size()];
+        int head = 0;
+        int tail = 0;
+        for (int cell : sources) {
+            if (distance[cell] < 0) {
+                distance[cell] = 0;
+                queue[tail++] = cell;
+            }
+        }
+        while (head < tail) {
+            int cell = queue[head++];
+            for (int e = first[cell], end = first[cell + 1]; e < end; e++) {
+                int next = edges[e];
+                if (distance[next] < 0) {
+                    distance[next] = distance[cell] + 1;
+                    queue[tail++] = next;
+                }
+            }
+        }
+        return distance;
+    }
+}
@@ -0,0 +1,186 @@
+package GameControl;
+
+import java.util.Arrays;
+
+/**
+ * A BoardLayout is the board as the BoardCompiler reads it in, before it has
+ * any Room or Door objects: the kind of every square and the id of the room card
+ * of each room and door square. It never changes, so one layout is read once and
+ * shared by every game, and each game only makes its own rooms and doors for it.
+ * <p>
+ * The things every game works out from the layout alone, the graph of its
+ * walkable squares, the distance fields, the path finders and where each roll
+ * of the dice can take a player, are built for the first game and shared with
+ * the rest.
+ * <p>
+ * Squares are indexed row by row, cell = x * columns + y.
+ */
+public class BoardLayout {
+
+    public static final int NO_ROOM = 0xFF;
+
+    // the most squares we make a Position for up front, bigger boards make them as they are asked for
+    private static final int MAX_POSITIONS = 1 << 16;
+
+    private final int rows;
+    private final int cols;
+    private final byte[] rooms; // the card id of the room of the square, NO_ROOM for none
+
+    // what a CompiledBoard is made from, it shares the kinds and ids rather than copying them
+    final byte[] kinds;
+    final char[] ids; // the index of the room or door of the square, as the Parser numbered them
+    final int[] roomOrder; // the card ids of the rooms in the order their squares first appear
+    final int[] doorCells; // the cells of the doors, row by row
+    final int[] startCells; // the cells of the start squares, row by row
+
+    private final Position[] positions; // one for every square, null for big boards
+
+    private BoardGraph graph;
+    private DistanceField distances;
+    private PathFinder pathFinder;
+    private HierarchicalPathFinder hierarchical;
+    private Reachability reachability;
+    private MoveTable moveTable;
+
+    /**
+     * @param kinds the kind of every square, as CompiledBoard.PATH and so on
+     * @param rooms the card id of the room of every room and door square, NO_ROOM for the rest
+     */
+    public BoardLayout(int rows, int cols, byte[] kinds, byte[] rooms) {
+        if (rows <= 0 || cols <= 0 || kinds.length != rows * cols || rooms.length != kinds.length)
+            throw new IllegalArgumentException("The board layout is not " + rows + " by " + cols);
+        this.rows = rows;
+        this.cols = cols;
+        this.kinds = kinds.clone();
+        this.rooms = rooms.clone();
+        this.ids = new char[kinds.length];
+
+        int[] order = new int[Card.DECK_SIZE];
+        int roomCount = 0;
+        int doorCount = 0;
+        int startCount = 0;
+        for (int cell = 0; cell < kinds.length; cell++) {
+            byte kind = this.kinds[cell];
+            if (kind < CompiledBoard.PATH || kind > CompiledBoard.START)
+                throw new IllegalArgumentException("Unknown kind of square " + kind + " at cell " + cell);
+            int room = this.rooms[cell] & 0xFF;
+            boolean inRoom = kind == CompiledBoard.ROOM || kind == CompiledBoard.DOOR;
+            if (inRoom != (room != NO_ROOM) || inRoom && (room >= Card.DECK_SIZE || (Card.ROOMS & 1 << room) == 0))
+                throw new IllegalArgumentException("The square at cell " + cell + " has the wrong room");
+
+            if (kind == CompiledBoard.ROOM) {
+                int index = 0;
+                while (index < roomCount && order[index] != room)
+                    index++;
+                if (index == roomCount)
+                    order[roomCount++] = room;
+                ids[cell] = CompiledBoard.toId(index);
+            } else if (kind == CompiledBoard.DOOR) {
+                ids[cell] = CompiledBoard.toId(doorCount++);
+            } else if (kind == CompiledBoard.START) {
+                startCount++;
+            }
+        }
+        this.roomOrder = Arrays.copyOf(order, roomCount);
+
+        // a second pass, so a large board does not need lists as long as the board
+        this.doorCells = new int[doorCount];
+        this.startCells = new int[startCount];
+        doorCount = 0;
+        startCount = 0;
+        for (int cell = 0; cell < kinds.length; cell++) {
+            if (this.kinds[cell] == CompiledBoard.DOOR)
+                doorCells[doorCount++] = cell;
+            else if (this.kinds[cell] == CompiledBoard.START)
+                startCells[startCount++] = cell;
+        }
+        this.positions = kinds.length <= MAX_POSITIONS ? Position.intern(this) : null;
+    }
+
+    public int rows() {
+        return rows;
+    }
+
+    public int cols() {
+        return cols;
+    }
+
+    public int size() {
+        return kinds.length;
+    }
+
+    public byte kind(int cell) {
+        return kinds[cell];
+    }
+
+    /**
+     * @return the card id of the room the square belongs to, or NO_ROOM
+     */
+    public int room(int cell) {
+        return rooms[cell] & 0xFF;
+    }
+
+    /**
+     * @return the position of the square, the same one every time on all but the biggest boards
+     */
+    public Position position(int cell) {
+        return positions != null ? positions[cell] : new Position(cell / cols, cell % cols);
+    }
+
+    /**
+     * The walkable squares and how they join up, which every search on this layout walks over
+     */
+    public synchronized BoardGraph graph() {
+        if (graph == null)
+            graph = new BoardGraph(this);
+        return graph;
+    }
+
+    /**
+     * The distance fields of a board made from this layout, which share their
+     * tables with those of every other board made from it
+     */
+    synchronized DistanceField distances(CompiledBoard board) {
+        if (distances == null) {
+            distances = new DistanceField(board);
+            return distances;
+        }
+        return new DistanceField(board, distances);
+    }
+
+    /**
+     * The path finder only looks at which squares can be walked on, so one is shared by every board
+     */
+    synchronized PathFinder pathFinder(CompiledBoard board) {
+        if (pathFinder == null)
+            pathFinder = new PathFinder(board);
+        return pathFinder;
+    }
+
+    /**
+     * The hierarchical search for boards without distance fields, which only needs where the doors are
+     */
+    synchronized HierarchicalPathFinder hierarchical(CompiledBoard board) {
+        if (hierarchical == null)
+            hierarchical = new HierarchicalPathFinder(board);
+        return hierarchical;
+    }
+
+    /**
+     * Where players can get to on each roll, rooms have the same card ids in every game so one is shared
+     */
+    synchronized Reachability reachability(CompiledBoard board) {
+        if (reachability == null)
+            reachability = new Reachability(board);
+        return reachability;
+    }
+
+    /**
+     * The move table of a board made from this layout, worked out the first time a game asks for it
+     */
+    synchronized MoveTable moveTable(CompiledBoard board) {
+        if (moveTable == null)
+            moveTable = new MoveTable(board);
+        return moveTable;
+    }
+}
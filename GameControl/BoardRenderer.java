@@ -0,0 +1,139 @@
+package GameControl;
+
+import java.util.Collection;
+
+/**
+ * The BoardRenderer draws the board as text with every player's token on it.
+ * The rooms, doors and paths never change, so they are drawn once into a frame
+ * of chars which is copied for each drawing before the tokens are put on top.
+ * <p>
+ * On a terminal that understands ANSI escape codes the board is kept at the top
+ * of the screen, and the lines below it are made a scroll region of their own so
+ * the text printed there never scrolls the board away. The renderer remembers
+ * what it last showed, and after the first full drawing only sends the squares
+ * that have changed since, each one addressed by moving the cursor straight to
+ * it. A move then costs a few bytes instead of the whole board.
+ */
+public class BoardRenderer {
+
+    // clears the terminal and puts the cursor at the top left
+    public static final String CLEAR = "\u001b[H\u001b[2J";
+
+    private static final char ESC = '\u001b';
+
+    private final CompiledBoard board;
+    private final int width; // chars in a line of the frame, two per square and the new line
+    private final int text; // the line of the screen the text below the board starts on
+
+    private final char[] background;
+    private final char[] frame;
+    private final char[] shown;
+    private boolean valid = false; // the terminal is showing the frame in shown
+
+    public BoardRenderer(CompiledBoard board) {
+        this.board = board;
+        this.width = board.cols() * 2 + 1;
+        this.text = board.rows() + 2;
+        this.background = new char[board.rows() * width];
+        for (int x = 0; x < board.rows(); x++) {
+            for (int y = 0; y < board.cols(); y++) {
+                background[x * width + y * 2] = board.printArray(board.cell(x, y));
+                background[x * width + y * 2 + 1] = ' ';
+            }
+            background[x * width + width - 1] = '\n';
+        }
+        this.frame = background.clone();
+        this.shown = new char[background.length];
+    }
+
+    /**
+     * Draws the whole board with the tokens of the players on it, each player is
+     * drawn as their number
+     */
+    public String draw(Collection<Player> players) {
+        render(players);
+        return new String(frame);
+    }
+
+    /**
+     * The ANSI codes that bring the terminal up to date with the players. The first
+     * time, and after invalidate, the screen is cleared, the board drawn in full at
+     * the top and the cursor put below it, after that only the squares that changed
+     * are sent and the cursor is put back where it was
+     *
+     * @return the text to print, empty if nothing has changed
+     */
+    public String update(Collection<Player> players) {
+        render(players);
+        if (!valid) {
+            valid = true;
+            System.arraycopy(frame, 0, shown, 0, frame.length);
+            return CLEAR + new String(frame) + ESC + "[" + text + "r" + ESC + "[" + text + ";1H";
+        }
+
+        StringBuilder out = new StringBuilder();
+        for (int x = 0; x < board.rows(); x++) {
+            int y = 0;
+            while (y < board.cols()) {
+                if (!changed(x, y)) {
+                    y++;
+                    continue;
+                }
+                // send the run of changed squares in one go
+                int end = y + 1;
+                while (end < board.cols() && changed(x, end))
+                    end++;
+                out.append(ESC).append('[').append(x + 1).append(';').append(y * 2 + 1).append('H');
+                out.append(frame, x * width + y * 2, (end - y) * 2 - 1);
+                y = end;
+            }
+        }
+        System.arraycopy(frame, 0, shown, 0, frame.length);
+        if (out.length() == 0)
+            return "";
+        return ESC + "7" + out + ESC + "8";
+    }
+
+    /**
+     * The terminal has been cleared or scrolled, so the next update draws the board in full
+     */
+    public void invalidate() {
+        valid = false;
+    }
+
+    /**
+     * The ANSI codes that clear the text below the board and leave the board
+     * showing, or clear the whole screen if the board is not on it
+     */
+    public String clearText() {
+        if (!valid)
+            return CLEAR;
+        return ESC + "[" + text + ";1H" + ESC + "[J";
+    }
+
+    /**
+     * The ANSI codes that give the whole screen back to the text, with the cursor
+     * at the bottom. The next update draws the board in full again.
+     */
+    public String release() {
+        valid = false;
+        return ESC + "[r" + ESC + "[999;1H";
+    }
+
+    private boolean changed(int x, int y) {
+        int i = x * width + y * 2;
+        return frame[i] != shown[i];
+    }
+
+    /**
+     * Copies the background into the frame and puts the players on it
+     */
+    private void render(Collection<Player> players) {
+        System.arraycopy(background, 0, frame, 0, background.length);
+        for (Player p : players) {
+            Position pos = p.getPosition();
+            if (pos != null && board.inBounds(pos.x, pos.y))
+                frame[pos.x * width + pos.y * 2] = (char) ('0' + p.playerNumber);
+        }
+    }
+}
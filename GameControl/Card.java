@@ -3,9 +3,8 @@ package GameControl;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.HashSet;
 import java.util.List;
-import java.util.Set;
+import java.util.Random;
 
 /**
  * A GameControl.Card is either a GameControl.Character, GameControl.Weapon, or GameControl.Room. Each card has
@@ -16,6 +15,14 @@ import java.util.Set;
  */
 public class Card {
 
+    // the number of cards in the game, each card has an id below this
+    public static final int DECK_SIZE = 21;
+
+    // masks of the card ids in each category, characters come first then weapons then rooms
+    public static final int CHARACTERS = 0x3F;
+    public static final int WEAPONS = 0xFC0;
+    public static final int ROOMS = 0x1FF000;
+
     // list of all our playing cards
     private List<Card> deck = new ArrayList<>();
 
@@ -24,23 +31,36 @@ public class Card {
     private List<Character> characters = new ArrayList<>();
     private List<Weapon> weapons = new ArrayList<>();
 
+    // every card indexed by its id
+    private Card[] cardsById = new Card[DECK_SIZE];
+
     // Our solution to win the game of Cluedo
-    private Set<Card> solution = new HashSet<>();
+    private CardSet solution = new CardSet();
 
     private int deckCount = 0;
 
     // the name of our card
     private String name;
 
+    // a small number that stays the same for this card in every game, -1 if the card is not in a deck
+    private int id = -1;
+
     public Card() {
+        this(new Random());
+    }
+
+    /**
+     * @param random where the shuffling of the solution and the deck comes from
+     */
+    public Card(Random random) {
         createCards();
-        createSolution();
+        createSolution(random);
         deck.addAll(characters);
         deck.addAll(weapons);
         deck.addAll(rooms);
 
         // shuffle our deck
-        Collections.shuffle(deck);
+        Collections.shuffle(deck, random);
     }
 
     protected Card(String name) {
@@ -100,6 +120,15 @@ public class Card {
         weapons.add(spanner);
         weapons.add(gun);
 
+        // number our cards, this must happen before anything is shuffled
+        List<Card> ordered = new ArrayList<>();
+        ordered.addAll(characters);
+        ordered.addAll(weapons);
+        ordered.addAll(rooms);
+        for (int i = 0; i < ordered.size(); i++) {
+            ordered.get(i).id = i;
+            cardsById[i] = ordered.get(i);
+        }
     }
 
     /*********************************/
@@ -118,17 +147,33 @@ public class Card {
     }
 
     /**
-     * Gets a card from the deck with the specified name
+     * Return the id of this card, cards not in a deck have an id of -1
+     */
+    public int getId() {
+        return id;
+    }
+
+    /**
+     * Gets a card from the deck by its id
+     */
+    public Card getCard(int id) {
+        if (id < 0 || id >= DECK_SIZE)
+            throw new IllegalArgumentException("Card id: " + id + " is not contained in the deck");
+        return cardsById[id];
+    }
+
+    /**
+     * Gets a card from the deck by its name, see CardIndex for the names that are understood
      *
      * @param name the name of the card we are searching for
      * @return Card if it is found
      */
     public Card getCard(String name) {
-        for (Card c : deck) {
-            if (c.getName().contains(name))
-                return c;
-        }
-        throw new IllegalArgumentException("Card: " + name + " is not contained in the deck");
+        int id = CardIndex.find(name, CHARACTERS | WEAPONS | ROOMS);
+        if (id < 0)
+            throw new IllegalArgumentException("Card: " + name + (id == CardIndex.AMBIGUOUS
+                    ? " could be more than one card in the deck" : " is not contained in the deck"));
+        return cardsById[id];
     }
 
     /**
@@ -139,44 +184,44 @@ public class Card {
     }
 
     public Room getRoom(String name) {
-        for (Room r : rooms) {
-            if (r.getName().toLowerCase().contains(name.toLowerCase()))
-                return r;
-        }
-        throw new IllegalArgumentException("Name: " + name + " is not a valid Room card");
+        return (Room) cardsById[find(name, ROOMS, "Room")];
     }
 
     public Character getCharacter(String name) {
-        for (Character c : characters) {
-            if (c.getName().toLowerCase().contains(name.toLowerCase()))
-                return c;
-        }
-        throw new IllegalArgumentException("Name: " + name + " is not a valid Character card");
+        return (Character) cardsById[find(name, CHARACTERS, "Character")];
     }
 
     public Weapon getWeapon(String name) {
-        for (Weapon w : weapons) {
-            if (w.getName().toLowerCase().contains(name.toLowerCase()))
-                return w;
-        }
-        throw new IllegalArgumentException("Name: " + name + " is not a valid Weapon card");
+        return (Weapon) cardsById[find(name, WEAPONS, "Weapon")];
+    }
+
+    /**
+     * The id of the card of the category with the name
+     */
+    private static int find(String name, int category, String kind) {
+        int id = CardIndex.find(name, category);
+        if (id == CardIndex.AMBIGUOUS)
+            throw new IllegalArgumentException("Name: " + name + " could be more than one " + kind + " card");
+        if (id < 0)
+            throw new IllegalArgumentException("Name: " + name + " is not a valid " + kind + " card");
+        return id;
     }
 
     /**
      * Define our solution cards which are randomly chosen and stored in a set.
      * The solution contains 1 Character, 1 Weapon, and 1 Room
      */
-    private void createSolution() {
-        Collections.shuffle(rooms);
-        Collections.shuffle(characters);
-        Collections.shuffle(weapons);
+    private void createSolution(Random random) {
+        Collections.shuffle(rooms, random);
+        Collections.shuffle(characters, random);
+        Collections.shuffle(weapons, random);
 
         solution.add(characters.get(0));
         solution.add(weapons.get(0));
         solution.add(rooms.get(0));
     }
 
-    public Set<Card> getSolution() {
+    public CardSet getSolution() {
         return this.solution;
     }
 
@@ -209,6 +254,24 @@ public class Card {
 
     }
 
+    /**
+     * Deals the cards as they were dealt in a recorded game, replacing the solution
+     *
+     * @param hands    the mask of the card ids in each player's hand
+     * @param solution the mask of the card ids in the envelope
+     */
+    void dealCards(List<Player> players, int[] hands, int solution) {
+        this.solution.clear();
+        for (int id = 0; id < DECK_SIZE; id++)
+            if ((solution & 1 << id) != 0)
+                this.solution.add(cardsById[id]);
+        for (int i = 0; i < players.size(); i++)
+            for (int id = 0; id < DECK_SIZE; id++)
+                if ((hands[i] & 1 << id) != 0)
+                    players.get(i).addCardToHand(cardsById[id]);
+        this.deckCount = DECK_SIZE;
+    }
+
     /**
      * Helper method for dealCards.
      * Removes the solution from the deck and returns
@@ -0,0 +1,144 @@
+package GameControl;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * The CardIndex finds cards by what players type. It is built once, as the
+ * names and ids of the cards are the same in every game, and looking a name up
+ * walks a trie one letter at a time without making any objects.
+ * <p>
+ * Case and spaces are ignored, so "Miss Scarlett", "missscarlett" and the token
+ * name MissScarlett are all the same. A name can be started from any of its
+ * words and cut short, so "scar" and "dining" find Miss Scarlett and the Dining
+ * Room. A name that could be more than one card, such as "room", is ambiguous
+ * unless it is exactly the name of one of them. A single letter finds the room
+ * drawn with that letter on the board.
+ */
+public class CardIndex {
+
+    public static final int NOT_FOUND = -1;
+    public static final int AMBIGUOUS = -2;
+
+    private static final int LETTERS = 26;
+
+    // the names and ids of the cards are the same in every deck
+    private static final CardIndex DECK = new CardIndex(new Card(new Random(0)));
+
+    private int[] children = new int[LETTERS * 64]; // the child of each node for each letter, 0 for none
+    private int[] below = new int[64]; // mask of the ids of the cards with a name through each node
+    private int[] ends = new int[64]; // mask of the ids of the cards with a name ending at each node
+    private int nodes = 1; // node 0 is the root
+
+    private final int[] boardLetters = new int[LETTERS]; // the id of the room drawn with each letter
+    private final Player.Token[] tokens = new Player.Token[Card.DECK_SIZE];
+
+    private CardIndex(Card deck) {
+        Arrays.fill(boardLetters, NOT_FOUND);
+        for (int id = 0; id < Card.DECK_SIZE; id++) {
+            Card card = deck.getCard(id);
+            String name = card.getName();
+            // the name from each of its words
+            for (int i = 0; i < name.length(); i++)
+                if (i == 0 || name.charAt(i - 1) == ' ')
+                    add(name, i, id);
+            if (card instanceof Room)
+                boardLetters[letter(((Room) card).printArray())] = id;
+        }
+        for (Player.Token token : Player.Token.values())
+            tokens[lookup(token.name(), 0, token.name().length(), Card.CHARACTERS)] = token;
+    }
+
+    private void add(String name, int start, int id) {
+        int node = 0;
+        below[node] |= 1 << id;
+        for (int i = start; i < name.length(); i++) {
+            int letter = letter(name.charAt(i));
+            if (letter < 0)
+                continue;
+            int child = children[node * LETTERS + letter];
+            if (child == 0) {
+                child = newNode();
+                children[node * LETTERS + letter] = child;
+            }
+            node = child;
+            below[node] |= 1 << id;
+        }
+        ends[node] |= 1 << id;
+    }
+
+    private int newNode() {
+        if (nodes == below.length) {
+            below = Arrays.copyOf(below, nodes * 2);
+            ends = Arrays.copyOf(ends, nodes * 2);
+            children = Arrays.copyOf(children, nodes * 2 * LETTERS);
+        }
+        return nodes++;
+    }
+
+    /**
+     * The letter as 0 to 25 whatever its case, or -1 for anything else
+     */
+    private static int letter(char c) {
+        if (c >= 'a' && c <= 'z')
+            return c - 'a';
+        if (c >= 'A' && c <= 'Z')
+            return c - 'A';
+        return -1;
+    }
+
+    /**
+     * Finds the card a name means
+     *
+     * @param categories mask of the ids of the cards it could be, such as Card.ROOMS
+     * @return the id of the card, NOT_FOUND or AMBIGUOUS
+     */
+    public static int find(CharSequence name, int categories) {
+        return DECK.lookup(name, 0, name.length(), categories);
+    }
+
+    /**
+     * Finds the card named by the chars of the input from start to end
+     */
+    public static int find(CharSequence input, int start, int end, int categories) {
+        return DECK.lookup(input, start, end, categories);
+    }
+
+    private int lookup(CharSequence input, int start, int end, int categories) {
+        int node = 0;
+        int letters = 0;
+        int first = -1;
+        for (int i = start; i < end; i++) {
+            char c = input.charAt(i);
+            if (c == ' ' || c == '\t')
+                continue;
+            int letter = letter(c);
+            if (letter < 0)
+                return NOT_FOUND;
+            if (letters++ == 0)
+                first = letter;
+            if (node >= 0)
+                node = children[node * LETTERS + letter] == 0 ? -1 : children[node * LETTERS + letter];
+        }
+        if (letters == 0)
+            return NOT_FOUND;
+        if (letters == 1 && boardLetters[first] >= 0 && (categories & 1 << boardLetters[first]) != 0)
+            return boardLetters[first];
+        if (node < 0)
+            return NOT_FOUND;
+
+        int cards = ends[node] & categories;
+        if (cards == 0)
+            cards = below[node] & categories;
+        if (cards == 0)
+            return NOT_FOUND;
+        return (cards & cards - 1) != 0 ? AMBIGUOUS : Integer.numberOfTrailingZeros(cards);
+    }
+
+    /**
+     * The token that plays the character of the card
+     */
+    public static Player.Token tokenOf(int characterId) {
+        return DECK.tokens[characterId];
+    }
+}
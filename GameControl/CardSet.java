@@ -0,0 +1,125 @@
+package GameControl;
+
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * A CardSet is a set of cards kept as a 32 bit mask, bit n is set when the card
+ * with id n is in the set. There are only 21 cards in Cluedo so a whole hand,
+ * notepad, guess or solution fits in a single int, and checking whether a player
+ * holds any card of a guess is a single AND.
+ * <p>
+ * Only cards that belong to a deck (that have an id) can be added.
+ */
+public class CardSet extends AbstractSet<Card> {
+
+    public static final int MAX_CARDS = 32;
+
+    private int mask;
+
+    // the card for every set bit, so we can hand back the card objects themselves
+    private final Card[] cards = new Card[MAX_CARDS];
+
+    public CardSet() {
+    }
+
+    public CardSet(Card... cards) {
+        for (Card c : cards)
+            add(c);
+    }
+
+    /**
+     * Return the bits of the cards in this set
+     */
+    public int getMask() {
+        return this.mask;
+    }
+
+    @Override
+    public boolean add(Card card) {
+        int id = card.getId();
+        if (id < 0 || id >= MAX_CARDS)
+            throw new IllegalArgumentException("Card: " + card + " does not belong to a deck");
+        int bit = 1 << id;
+        boolean added = (mask & bit) == 0;
+        mask |= bit;
+        cards[id] = card;
+        return added;
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        if (!(o instanceof Card)) return false;
+        int id = ((Card) o).getId();
+        return id >= 0 && id < MAX_CARDS && (mask & (1 << id)) != 0 && cards[id].equals(o);
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        if (!contains(o)) return false;
+        int id = ((Card) o).getId();
+        mask &= ~(1 << id);
+        cards[id] = null;
+        return true;
+    }
+
+    @Override
+    public void clear() {
+        while (mask != 0) {
+            cards[Integer.numberOfTrailingZeros(mask)] = null;
+            mask &= mask - 1;
+        }
+    }
+
+    @Override
+    public int size() {
+        return Integer.bitCount(mask);
+    }
+
+    /**
+     * Checks whether at least one card is in both sets
+     */
+    public boolean intersects(CardSet other) {
+        return (mask & other.mask) != 0;
+    }
+
+    /**
+     * Checks whether every card of the other set is in this set
+     */
+    public boolean containsAll(CardSet other) {
+        return (mask & other.mask) == other.mask;
+    }
+
+    /**
+     * Cards are iterated in order of their id
+     */
+    @Override
+    public Iterator<Card> iterator() {
+        return new Iterator<Card>() {
+            private int remaining = mask;
+            private int last = -1;
+
+            @Override
+            public boolean hasNext() {
+                return remaining != 0;
+            }
+
+            @Override
+            public Card next() {
+                if (remaining == 0) throw new NoSuchElementException();
+                last = Integer.numberOfTrailingZeros(remaining);
+                remaining &= remaining - 1;
+                return cards[last];
+            }
+
+            @Override
+            public void remove() {
+                if (last < 0) throw new IllegalStateException();
+                mask &= ~(1 << last);
+                cards[last] = null;
+                last = -1;
+            }
+        };
+    }
+}
@@ -0,0 +1,75 @@
+package GameControl;
+
+/**
+ * A Command is something the current player asks the GameEngine to do on
+ * their turn. Commands are created with the static methods below and carry
+ * only the cards the action needs.
+ */
+public class Command {
+
+    public enum Type {
+        MOVE,    // walk towards a room using the dice roll
+        PASSAGE, // take the secret passage out of the current room
+        STAY,    // stay in the room another player moved us into
+        SUGGEST, // suggest a character and weapon in the current room
+        ACCUSE,  // accuse a character, weapon and room, anywhere on the board
+        END      // end the turn
+    }
+
+    private final Type type;
+    private final Card character;
+    private final Card weapon;
+    private final Room room;
+
+    private Command(Type type, Card character, Card weapon, Room room) {
+        this.type = type;
+        this.character = character;
+        this.weapon = weapon;
+        this.room = room;
+    }
+
+    public static Command move(Room room) {
+        return new Command(Type.MOVE, null, null, room);
+    }
+
+    public static Command passage() {
+        return new Command(Type.PASSAGE, null, null, null);
+    }
+
+    public static Command stay() {
+        return new Command(Type.STAY, null, null, null);
+    }
+
+    public static Command suggest(Card character, Card weapon) {
+        return new Command(Type.SUGGEST, character, weapon, null);
+    }
+
+    public static Command accuse(Card character, Card weapon, Room room) {
+        return new Command(Type.ACCUSE, character, weapon, room);
+    }
+
+    public static Command end() {
+        return new Command(Type.END, null, null, null);
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public Card getCharacter() {
+        return character;
+    }
+
+    public Card getWeapon() {
+        return weapon;
+    }
+
+    public Room getRoom() {
+        return room;
+    }
+
+    public String toString() {
+        return type + (character != null ? " " + character : "") + (weapon != null ? " " + weapon : "")
+                + (room != null ? " " + room : "");
+    }
+}
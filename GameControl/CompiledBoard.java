@@ -0,0 +1,242 @@
+package GameControl;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The CompiledBoard is the playing field of one game, made from the BoardLayout
+ * the Parser reads in or built up square by square. Boards can be any size,
+ * with up to 65535 doors. Every square
+ * is stored as a single byte giving its kind, with a second plane of chars saying
+ * which room (for room squares) or which door (for door squares) it belongs to.
+ * This keeps the whole board in a couple of flat arrays instead of an object
+ * for every square.
+ * <p>
+ * Squares are indexed row by row, cell = x * columns + y.
+ */
+public class CompiledBoard {
+
+    // the kinds of square on the board
+    public static final byte PATH = 0;     // squares we can walk along
+    public static final byte ROOM = 1;     // inside a room
+    public static final byte DOOR = 2;     // the doors into rooms
+    public static final byte BLOCKED = 3;  // walls around the edge of the board
+    public static final byte INSIDE = 4;   // the middle of a room, drawn blank
+    public static final byte SOLUTION = 5; // where the solution cards are kept
+    public static final byte START = 6;    // players start positions
+
+    private final int rows;
+    private final int cols;
+    private final byte[] kinds;
+    private final char[] ids;
+    private final BoardLayout layout; // null for a board built square by square
+    private BoardGraph graph;
+
+    private final List<Room> rooms = new ArrayList<>();
+    private final List<Door> doors = new ArrayList<>();
+    private final List<Position> startPositions = new ArrayList<>();
+
+    public CompiledBoard(int rows, int cols) {
+        this.rows = rows;
+        this.cols = cols;
+        this.kinds = new byte[rows * cols];
+        this.ids = new char[rows * cols];
+        this.layout = null;
+    }
+
+    /**
+     * Makes the board of a game from a layout, with a Room from the deck and a new
+     * Door for every door square. The squares are shared with the layout.
+     */
+    public CompiledBoard(BoardLayout layout, Card deck) {
+        this.rows = layout.rows();
+        this.cols = layout.cols();
+        this.kinds = layout.kinds;
+        this.ids = layout.ids;
+        this.layout = layout;
+        for (int id : layout.roomOrder)
+            rooms.add((Room) deck.getCard(id));
+        for (int cell : layout.doorCells) {
+            Door door = ((Room) deck.getCard(layout.room(cell))).createDoor(position(cell));
+            door.setIndex(doors.size());
+            doors.add(door);
+        }
+        for (int cell : layout.startCells)
+            startPositions.add(position(cell));
+    }
+
+    /*********************************/
+    /*          BUILDING             */
+    /*********************************/
+
+    public void addSquare(int x, int y, byte kind) {
+        checkBuilding();
+        if (kind == ROOM || kind == DOOR)
+            throw new IllegalArgumentException("Rooms and doors must be added with their objects");
+        kinds[cell(x, y)] = kind;
+        if (kind == START)
+            startPositions.add(new Position(x, y));
+    }
+
+    public void addRoom(int x, int y, Room room) {
+        checkBuilding();
+        int id = rooms.indexOf(room);
+        if (id < 0) {
+            id = rooms.size();
+            rooms.add(room);
+        }
+        kinds[cell(x, y)] = ROOM;
+        ids[cell(x, y)] = toId(id);
+    }
+
+    public void addDoor(int x, int y, Door door) {
+        checkBuilding();
+        door.setIndex(doors.size());
+        kinds[cell(x, y)] = DOOR;
+        ids[cell(x, y)] = toId(doors.size());
+        doors.add(door);
+    }
+
+    private void checkBuilding() {
+        if (layout != null)
+            throw new IllegalArgumentException("A board made from a layout cannot be changed");
+    }
+
+    static char toId(int id) {
+        if (id > 0xFFFF)
+            throw new IllegalArgumentException("Too many rooms or doors on the board");
+        return (char) id;
+    }
+
+    /*********************************/
+    /*          QUERIES              */
+    /*********************************/
+
+    public int rows() {
+        return rows;
+    }
+
+    public int cols() {
+        return cols;
+    }
+
+    public int size() {
+        return kinds.length;
+    }
+
+    public int cell(int x, int y) {
+        return x * cols + y;
+    }
+
+    public int cell(Position p) {
+        return cell(p.x, p.y);
+    }
+
+    /**
+     * @return the position of the square, which is the same object every time for a board made from a layout
+     */
+    public Position position(int cell) {
+        return layout != null ? layout.position(cell) : new Position(cell / cols, cell % cols);
+    }
+
+    public Position position(int x, int y) {
+        if (!inBounds(x, y))
+            throw new IllegalArgumentException("There is no square at row " + x + ", column " + y);
+        return position(cell(x, y));
+    }
+
+    public boolean inBounds(int x, int y) {
+        return x >= 0 && y >= 0 && x < rows && y < cols;
+    }
+
+    public byte kind(int cell) {
+        return kinds[cell];
+    }
+
+    /**
+     * A square can be walked on as long as it is not part of a room
+     */
+    public boolean isWalkable(int cell) {
+        return isWalkable(kinds[cell]);
+    }
+
+    public static boolean isWalkable(byte kind) {
+        return kind == PATH || kind == DOOR || kind == START;
+    }
+
+    /**
+     * Return the room the square belongs to, doors belong to the room they open into
+     *
+     * @return the room, or null if the square is not part of one
+     */
+    public Room roomAt(int cell) {
+        switch (kinds[cell]) {
+            case ROOM:
+                return rooms.get(ids[cell]);
+            case DOOR:
+                return doors.get(ids[cell]).getRoom();
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * @return the door on the square, or null if there is not one
+     */
+    public Door doorAt(int cell) {
+        return kinds[cell] == DOOR ? doors.get(ids[cell]) : null;
+    }
+
+    /**
+     * The character used to draw the square when printing the board
+     */
+    public char printArray(int cell) {
+        switch (kinds[cell]) {
+            case ROOM:
+                return rooms.get(ids[cell]).printArray();
+            case DOOR:
+                return doors.get(ids[cell]).printArray();
+            case BLOCKED:
+            case SOLUTION:
+                return '#';
+            case INSIDE:
+                return ' ';
+            default:
+                return '.';
+        }
+    }
+
+    /**
+     * The walkable squares and how they join up, shared with every board of the same layout
+     */
+    public BoardGraph getGraph() {
+        if (graph == null)
+            graph = layout != null ? layout.graph() : new BoardGraph(this);
+        return graph;
+    }
+
+    /**
+     * @return the layout the board was made from, or null if it was built square by square
+     */
+    public BoardLayout getLayout() {
+        return layout;
+    }
+
+    public List<Room> getRooms() {
+        return this.rooms;
+    }
+
+    /**
+     * Return the players start positions, in the order they were added
+     */
+    public List<Position> getStartPositions() {
+        return this.startPositions;
+    }
+
+    /**
+     * Return all the doors on the board, a doors position in this list is its index
+     */
+    public List<Door> getDoors() {
+        return this.doors;
+    }
+}
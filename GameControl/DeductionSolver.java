@@ -0,0 +1,171 @@
+package GameControl;
+
+/**
+ * The DeductionSolver works out every fact that must be true given what a player
+ * knows, such as "the murder weapon must be the Rope" or "player 3 must hold the
+ * Study", including the ones Knowledge cannot see by applying its rules alone.
+ * <p>
+ * A fact is certain when no deal of the cards that agrees with the knowledge
+ * says otherwise. For every owner and card we search for a deal where that owner
+ * holds the card. The search decides which card satisfies each "shown one of"
+ * constraint, letting Knowledge propagate each choice so dead ends are found
+ * early, and then the rest of the cards only have to fit into the hands that
+ * could take them, which a matching answers without any more searching. Every
+ * deal found also shows every other card it places is possible, so most pairs
+ * never need a search of their own. Whatever is never possible is ruled out,
+ * and what that forces follows.
+ */
+public class DeductionSolver {
+
+    private final Knowledge knowledge;
+
+    // per owner, the cards they hold in at least one deal found so far
+    private final int[] possible;
+    private long searched;
+
+    public DeductionSolver(Knowledge knowledge) {
+        this.knowledge = knowledge;
+        this.possible = new int[knowledge.getPlayers() + 1];
+    }
+
+    /**
+     * Shorthand for solving the knowledge with a new solver
+     */
+    public static Knowledge solve(Knowledge knowledge) {
+        return new DeductionSolver(knowledge).solve();
+    }
+
+    /**
+     * @return a copy of the knowledge with every certain fact added
+     * @throws IllegalArgumentException if no deal agrees with the knowledge
+     */
+    public Knowledge solve() {
+        if (!knowledge.isConsistent() || !search(new Knowledge(knowledge)))
+            throw new IllegalArgumentException("No deal of the cards agrees with what is known");
+
+        // each card found impossible is ruled out straight away, which makes the searches after it shorter
+        Knowledge solved = new Knowledge(knowledge);
+        int owners = knowledge.getPlayers() + 1;
+        for (int owner = 0; owner < owners; owner++) {
+            int open = ~solved.getHasnt(owner) & ~possible[owner] & solved.getUnplaced();
+            while (open != 0) {
+                int bit = open & -open;
+                Knowledge trial = new Knowledge(solved);
+                trial.setHas(owner, bit);
+                if (!search(trial))
+                    solved.setHasnt(owner, bit);
+                open &= ~possible[owner] & ~solved.getHasnt(owner) & solved.getUnplaced() & ~bit;
+            }
+        }
+        return solved;
+    }
+
+    /**
+     * Looks for a complete deal that agrees with the knowledge, adding the
+     * cards of the deal to the possible cards if there is one
+     *
+     * @return true if a deal was found
+     */
+    private boolean search(Knowledge k) {
+        searched++;
+        if (!k.isConsistent())
+            return false;
+        if (k.getConstraintCount() == 0)
+            return match(k);
+
+        // decide the constraint with the fewest cards left first
+        int best = 0;
+        int bestCards = Integer.MAX_VALUE;
+        for (int i = 0; i < k.getConstraintCount(); i++) {
+            int cards = k.getConstraintCards(i) & ~k.getHasnt(k.getConstraintOwner(i));
+            if (Integer.bitCount(cards) < Integer.bitCount(bestCards)) {
+                best = i;
+                bestCards = cards;
+            }
+        }
+        int owner = k.getConstraintOwner(best);
+
+        // cards not yet seen with the owner go first, so each deal found proves as much as it can,
+        // and each choice rules out the ones before it so no deal is looked at twice
+        int tried = 0;
+        for (int pass = 0; pass < 2; pass++) {
+            int cards = bestCards & (pass == 0 ? ~possible[owner] : possible[owner]);
+            for (; cards != 0; cards &= cards - 1) {
+                int bit = cards & -cards;
+                Knowledge next = new Knowledge(k);
+                next.setHasnt(owner, tried);
+                next.setHas(owner, bit);
+                if (search(next))
+                    return true;
+                tried |= bit;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * With every constraint settled, the cards left just have to fit in the hands
+     * of the owners that could have them. This is a matching of cards to hands,
+     * grown one card at a time by moving cards already placed out of the way
+     *
+     * @return true if every card fits, adding the deal to the possible cards
+     */
+    private boolean match(Knowledge k) {
+        // the envelope takes one card of each category, so it is three hands here
+        int players = k.getPlayers();
+        int[] allowed = new int[players + 3];
+        int[] room = new int[players + 3];
+        for (int o = 0; o < players; o++) {
+            allowed[o] = ~k.getHasnt(o);
+            room[o] = k.getHandSize(o) - Integer.bitCount(k.getHas(o));
+        }
+        int[] categories = {Card.CHARACTERS, Card.WEAPONS, Card.ROOMS};
+        for (int g = 0; g < 3; g++) {
+            allowed[players + g] = ~k.getHasnt(players) & categories[g];
+            room[players + g] = 1 - Integer.bitCount(k.getHas(players) & categories[g]);
+        }
+
+        int[] placed = new int[allowed.length];
+        for (int cards = k.getUnplaced(); cards != 0; cards &= cards - 1)
+            if (!place(Integer.numberOfTrailingZeros(cards), allowed, room, placed, new boolean[allowed.length]))
+                return false;
+
+        for (int o = 0; o < players; o++)
+            possible[o] |= k.getHas(o) | placed[o];
+        possible[players] |= k.getHas(players) | placed[players] | placed[players + 1] | placed[players + 2];
+        return true;
+    }
+
+    /**
+     * Finds a hand for the card, moving a card already placed to another hand if needed
+     */
+    private boolean place(int card, int[] allowed, int[] room, int[] placed, boolean[] visited) {
+        int bit = 1 << card;
+        for (int o = 0; o < allowed.length; o++) {
+            if ((allowed[o] & bit) == 0 || visited[o])
+                continue;
+            visited[o] = true;
+            if (Integer.bitCount(placed[o]) < room[o]) {
+                placed[o] |= bit;
+                return true;
+            }
+            for (int others = placed[o]; others != 0; others &= others - 1) {
+                int other = Integer.numberOfTrailingZeros(others);
+                placed[o] &= ~(1 << other);
+                if (place(other, allowed, room, placed, visited)) {
+                    placed[o] |= bit;
+                    return true;
+                }
+                placed[o] |= 1 << other;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * The number of positions this solver has looked at
+     */
+    public long getSearched() {
+        return searched;
+    }
+}
@@ -0,0 +1,148 @@
+package GameControl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A DistanceField stores, for every door on the board, the number of steps it
+ * takes to walk from each square to that door along with the direction of the
+ * next step to take. The fields are built once with a breadth first search from
+ * every door when the board is read in, so moving a player towards a door is a
+ * table lookup rather than a new search.
+ * <p>
+ * Squares are indexed row by row, cell = x * columns + y.
+ */
+public class DistanceField {
+
+    public static final int UNREACHABLE = -1;
+
+    // the four directions we can step in, in the same order as Position.getNeighbours()
+    private static final int[] DX = {0, 0, -1, 1};
+    private static final int[] DY = {-1, 1, 0, 0};
+    private static final byte NO_STEP = -1;
+
+    // each door costs five bytes per square, this is the most entries we will build
+    private static final long MAX_ENTRIES = 1 << 22;
+
+    private final int rows;
+    private final int cols;
+    private final CompiledBoard board; // for the positions of squares
+
+    // every door on the board, the position in this list is the doors index
+    private final List<Door> doors = new ArrayList<>();
+
+    // walking distances and next step directions, [door index][cell]
+    private final int[][] distances;
+    private final byte[][] steps;
+
+    public DistanceField(CompiledBoard board) {
+        this.board = board;
+        this.rows = board.rows();
+        this.cols = board.cols();
+        this.doors.addAll(board.getDoors());
+
+        BoardGraph graph = board.getGraph();
+        distances = new int[doors.size()][];
+        steps = new byte[doors.size()][];
+        int[] queue = new int[rows * cols];
+        for (Door door : doors) {
+            Position p = door.getPos();
+            fill(graph, p.x * cols + p.y, door.getIndex(), queue);
+        }
+    }
+
+    /**
+     * The fields of another board with the same layout, which share the tables of
+     * the fields already built for it as only the doors differ
+     */
+    DistanceField(CompiledBoard board, DistanceField built) {
+        this.board = board;
+        this.rows = board.rows();
+        this.cols = board.cols();
+        this.doors.addAll(board.getDoors());
+        this.distances = built.distances;
+        this.steps = built.steps;
+    }
+
+    /**
+     * Checks whether the fields for this board are small enough to build, for very
+     * large boards with many doors it is better to search for a path on each move
+     */
+    public static boolean fits(CompiledBoard board) {
+        return (long) board.getDoors().size() * board.size() <= MAX_ENTRIES;
+    }
+
+    /**
+     * Breadth first search out from the door, recording for each square how far
+     * away it is and which way to step to get one square closer.
+     */
+    private void fill(BoardGraph graph, int source, int index, int[] queue) {
+        int[] distance = new int[rows * cols];
+        byte[] step = new byte[rows * cols];
+        Arrays.fill(distance, UNREACHABLE);
+        Arrays.fill(step, NO_STEP);
+
+        int head = 0;
+        int tail = 0;
+        distance[source] = 0;
+        queue[tail++] = source;
+        while (head < tail) {
+            int cell = queue[head++];
+            for (int e = graph.first(cell), end = graph.first(cell + 1); e < end; e++) {
+                int next = graph.target(e);
+                if (distance[next] != UNREACHABLE) continue;
+                distance[next] = distance[cell] + 1;
+                // stepping back the way we came leads towards the door
+                step[next] = direction(next, cell);
+                queue[tail++] = next;
+            }
+        }
+        distances[index] = distance;
+        steps[index] = step;
+    }
+
+    /**
+     * The direction of the step between two squares next to each other, as an index into DX and DY
+     */
+    private byte direction(int from, int to) {
+        if (from / cols == to / cols)
+            return (byte) (to < from ? 0 : 1);
+        return (byte) (to < from ? 2 : 3);
+    }
+
+    /**
+     * The number of steps it takes to walk from the position to the door
+     *
+     * @return steps to the door, or UNREACHABLE if there is no way there
+     */
+    public int distance(Door door, Position p) {
+        int index = door.getIndex();
+        if (index < 0 || index >= doors.size() || doors.get(index) != door || !inBounds(p))
+            return UNREACHABLE;
+        return distances[index][p.x * cols + p.y];
+    }
+
+    /**
+     * The square to step onto to get one step closer to the door
+     *
+     * @return the next position, or null if we are already at the door or cannot get there
+     */
+    public Position nextStep(Door door, Position p) {
+        if (distance(door, p) <= 0)
+            return null;
+        int d = steps[door.getIndex()][p.x * cols + p.y];
+        return board.position(p.x + DX[d], p.y + DY[d]);
+    }
+
+    /**
+     * Return all the doors on the board
+     */
+    public List<Door> getDoors() {
+        return this.doors;
+    }
+
+    private boolean inBounds(Position p) {
+        return p.x >= 0 && p.y >= 0 && p.x < rows && p.y < cols;
+    }
+}
@@ -12,6 +12,9 @@ public class Door implements Board {
     private Position position;
     private Room room;
 
+    // index of this door within the boards distance fields, -1 until the board is read in
+    private int index = -1;
+
     public Door(Room room, Position position) {
         this.room = room;
         this.position = position;
@@ -25,6 +28,14 @@ public class Door implements Board {
         return this.room;
     }
 
+    int getIndex() {
+        return this.index;
+    }
+
+    void setIndex(int index) {
+        this.index = index;
+    }
+
     @Override
     public char printArray() {
         return '/';
@@ -0,0 +1,118 @@
+package GameControl;
+
+/**
+ * An Event is something that happened in the game, the GameEngine returns the
+ * events caused by each command so a front end can show them to the players.
+ * Which fields are set depends on the type of event.
+ */
+public class Event {
+
+    public enum Type {
+        ROUND_STARTED,    // value = the turn number the round starts on
+        TURN_STARTED,     // player = whose turn it is, value = the turn number
+        DICE_ROLLED,      // player, value = the roll
+        MOVED,            // player moved towards room but did not reach it
+        ENTERED_ROOM,     // player entered room, by walking or a secret passage
+        STAYED,           // player stayed in the room they were moved into
+        PLACED_IN_ROOM,   // player was moved into room by the suggestion of other
+        SUGGESTED,        // player suggested character with weapon in room
+        CANNOT_ANSWER,    // player could not show a card to other
+        CARD_REVEALED,    // player showed card to other
+        NO_CARD_REVEALED, // nobody could show player a card
+        ACCUSED,          // player accused character with weapon in room
+        ELIMINATED,       // player made a wrong accusation
+        WON,              // player made the right accusation
+        TURN_ENDED,       // player
+        GAME_OVER         // player = the winner, null when everyone else was eliminated
+    }
+
+    private final Type type;
+    private final Player player;
+    private final Player other;
+    private final Card character;
+    private final Card weapon;
+    private final Room room;
+    private final Card card;
+    private final int value;
+
+    private Event(Type type, Player player, Player other, Card character, Card weapon, Room room, Card card, int value) {
+        this.type = type;
+        this.player = player;
+        this.other = other;
+        this.character = character;
+        this.weapon = weapon;
+        this.room = room;
+        this.card = card;
+        this.value = value;
+    }
+
+    static Event of(Type type, Player player) {
+        return new Event(type, player, null, null, null, null, null, 0);
+    }
+
+    static Event of(Type type, Player player, int value) {
+        return new Event(type, player, null, null, null, null, null, value);
+    }
+
+    static Event of(Type type, Player player, Room room) {
+        return new Event(type, player, null, null, null, room, null, 0);
+    }
+
+    static Event of(Type type, Player player, Player other, Room room) {
+        return new Event(type, player, other, null, null, room, null, 0);
+    }
+
+    static Event reveal(Player player, Player other, Card card) {
+        return new Event(Type.CARD_REVEALED, player, other, null, null, null, card, 0);
+    }
+
+    static Event guess(Type type, Player player, Card character, Card weapon, Room room) {
+        return new Event(type, player, null, character, weapon, room, null, 0);
+    }
+
+    /**
+     * An event with every field given, for events read back from a Journal
+     */
+    static Event of(Type type, Player player, Player other, Card character, Card weapon, Room room, Card card, int value) {
+        return new Event(type, player, other, character, weapon, room, card, value);
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public Player getPlayer() {
+        return player;
+    }
+
+    public Player getOther() {
+        return other;
+    }
+
+    public Card getCharacter() {
+        return character;
+    }
+
+    public Card getWeapon() {
+        return weapon;
+    }
+
+    public Room getRoom() {
+        return room;
+    }
+
+    public Card getCard() {
+        return card;
+    }
+
+    public int getValue() {
+        return value;
+    }
+
+    public String toString() {
+        return type + (player != null ? " " + player.getName() : "") + (other != null ? " " + other.getName() : "")
+                + (character != null ? " " + character : "") + (weapon != null ? " " + weapon : "")
+                + (room != null ? " " + room : "") + (card != null ? " " + card : "")
+                + (value != 0 ? " " + value : "");
+    }
+}
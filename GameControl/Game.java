@@ -1,11 +1,12 @@
 package GameControl;
 
-import java.util.ArrayList;
-import java.util.HashSet;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
-import java.util.PriorityQueue;
-import java.util.Queue;
-import java.util.Set;
+import java.util.Map;
+import java.util.Random;
 
 import File_Readers.Parser;
 
@@ -20,43 +21,115 @@ import File_Readers.Parser;
  */
 public class Game {
 
-    private Board[][] board;
+    private CompiledBoard board;
+    private BoardRenderer renderer;
+
+    // walking distances from every square to every door, null if the board is too big for them
+    private DistanceField distances;
+
+    // A* search over the squares of the board
+    private PathFinder pathFinder;
+
+    // the searches we move players with when we do not have distance fields
+    private HierarchicalPathFinder hierarchical;
+    private int[] path;
+
+    // how far past the last token in our way a path round it joins our path again
+    private static final int REJOIN = 4;
+
+    // the steps of a hierarchical path filled in at once, enough for a few turns
+    private static final int FILLED = 64;
+
+    // the squares with a token on them, which players walk round
+    private Occupancy occupancy;
+    private int[] detour;
+
+    // the rest of the path each player was following without distance fields, so the next turn carries on along it
+    private Map<Player, Route> routes = new IdentityHashMap<>();
+
+    // everywhere a player can get to on a roll, made the first time it is asked for
+    private Reachability reachability;
+
+    // the rooms each roll can take a player to from every square, null if the board is too big for it
+    private MoveTable moveTable;
+
+    // how far every room is from a player, made the first time it is asked for
+    private RoomSearch roomSearch;
+
+    // how many turns every room is from every square and room, made the first time it is asked for
+    private TurnPlanner turnPlanner;
 
     // Card class containing our collections of cards
     private Card card;
 
     public Game() {
+        this(new Random());
+    }
 
-        // create our cards for the game
-        this.card = new Card();
+    /**
+     * @param random where the shuffling of the cards comes from
+     */
+    public Game(Random random) {
+        this(random, null);
+    }
 
-        // read our board in from a text file and populate our game board
-        board = Parser.parseFile(this);
+    /**
+     * @param random where the shuffling of the cards comes from
+     * @param layout the board to play on, such as one from the BoardGenerator, or null for cluedoBoardDraw.txt
+     */
+    public Game(Random random, BoardLayout layout) {
+
+        // create our cards for the game
+        this.card = new Card(random);
+
+        // make our game board from the layout, read from cluedoBoardDraw.txt unless we were given one
+        boolean fromFile = layout == null;
+        board = fromFile ? Parser.parseFile(this) : new CompiledBoard(layout, card);
+        layout = board.getLayout();
+        if (DistanceField.fits(board))
+            distances = layout == null ? new DistanceField(board) : layout.distances(board);
+        pathFinder = layout == null ? new PathFinder(board) : layout.pathFinder(board);
+        if (distances == null)
+            hierarchical = layout == null ? new HierarchicalPathFinder(board) : layout.hierarchical(board);
+        if (fromFile)
+            moveTable = Parser.parseMoves(board);
+        occupancy = new Occupancy(board);
+        // join the rooms with secret passages once, so every room already knows where its passage leads
+        for (Room room : card.getRooms()) {
+            String other = Room.secretPassageOf(room.getName());
+            if (other != null)
+                room.setSecretPassage(card.getRoom(other));
+        }
+        path = new int[0];
+        detour = new int[0];
     }
 
     public String printBoard(Player p) {
         if (p == null) throw new NullPointerException("Player is null in printBoard");
-        String output = "";
-        for (int x = 0; x < board.length; x++) {
-            for (int y = 0; y < board[0].length; y++) {
-
-                if (x == p.getPosition().x && y == p.getPosition().y)
-                    output += p.playerNumber + " "; // draw our player on the board
-
-                else if (board[x][y] instanceof Room || board[x][y] instanceof Door)
-                    output += board[x][y].printArray() + " "; // draw our rooms on the board
+        return printBoard(Collections.singletonList(p));
+    }
 
-                else
-                    output += ". "; // draw the rest of our squares
+    /**
+     * Draw the board with the tokens of all the players on it, each drawn as their number
+     */
+    public String printBoard(Collection<Player> players) {
+        // the renderer keeps a copy of the whole board, so it is only made when the board is first drawn
+        if (renderer == null)
+            renderer = new BoardRenderer(board);
+        return renderer.draw(players) + printKey(players);
+    }
 
-            }
-            output += "\n";
-        }
-        output += "\nThe key:\nA = Kitchen,\t\tB = Ball Room\n" +
+    /**
+     * The key to the letters of the rooms and the numbers of the players on the board
+     */
+    public String printKey(Collection<Player> players) {
+        StringBuilder key = new StringBuilder("\nThe key:\nA = Kitchen,\t\tB = Ball Room\n" +
                 "C = Conservatory,\tD = Billiard Room,\nE = Library,\t\t" +
-                "F = Study,\nG = Hall,\t\tH = Lounge,\nI = Dining room\n" +
-                "Number = "+p.toString()+"\n";
-        return output;
+                "F = Study,\nG = Hall,\t\tH = Lounge,\nI = Dining room\n");
+        for (Player p : players)
+            key.append(players.size() == 1 ? "Number" : String.valueOf(p.playerNumber))
+                    .append(" = ").append(p).append('\n');
+        return key.toString();
     }
 
     /**
@@ -71,17 +144,17 @@ public class Game {
     public Player createPlayer(String name, Player.Token token, int playerNum) {
         switch (token) {
             case MissScarlett:
-                return new Player(name, token, Parser.playersStartPositions.get(0), playerNum);
+                return new Player(name, token, board.getStartPositions().get(0), playerNum);
             case ProfessorPlum:
-                return new Player(name, token, Parser.playersStartPositions.get(1), playerNum);
+                return new Player(name, token, board.getStartPositions().get(1), playerNum);
             case MrsWhite:
-                return new Player(name, token, Parser.playersStartPositions.get(2), playerNum);
+                return new Player(name, token, board.getStartPositions().get(2), playerNum);
             case MrsPeacock:
-                return new Player(name, token, Parser.playersStartPositions.get(3), playerNum);
+                return new Player(name, token, board.getStartPositions().get(3), playerNum);
             case MrGreen:
-                return new Player(name, token, Parser.playersStartPositions.get(4), playerNum);
+                return new Player(name, token, board.getStartPositions().get(4), playerNum);
             case ColonelMustard:
-                return new Player(name, token, Parser.playersStartPositions.get(5), playerNum);
+                return new Player(name, token, board.getStartPositions().get(5), playerNum);
             default:
                 throw new IllegalArgumentException("Player selection was abnormally exited");
         }
@@ -95,19 +168,23 @@ public class Game {
      * @return door object - if there is one near the specified position
      */
     public Door isDoor(Position position) {
-        // check north
-        if (board[position.x][position.y - 1] instanceof Door)
-            return (Door) board[position.x][position.y - 1];
-        // south
-        if (board[position.x][position.y + 1] instanceof Door)
-            return (Door) board[position.x][position.y + 1];
-        // east
-        if (board[position.x + 1][position.y] instanceof Door)
-            return (Door) board[position.x + 1][position.y];
-        // west
-        if (board[position.x - 1][position.y] instanceof Door)
-            return (Door) board[position.x - 1][position.y];
-        return null;
+        // check north, south, east then west
+        Door door = doorAt(position.x, position.y - 1);
+        if (door == null) door = doorAt(position.x, position.y + 1);
+        if (door == null) door = doorAt(position.x + 1, position.y);
+        if (door == null) door = doorAt(position.x - 1, position.y);
+        return door;
+    }
+
+    private Door doorAt(int x, int y) {
+        return board.inBounds(x, y) ? board.doorAt(board.cell(x, y)) : null;
+    }
+
+    /**
+     * Return the compiled board this game is played on
+     */
+    public CompiledBoard getBoard() {
+        return this.board;
     }
 
     /**
@@ -145,20 +222,13 @@ public class Game {
     }
 
     /**
-     * Checks if current position is a Room
-     *
-     * @return
-     */
-    private boolean isRoom(Position p) {
-        return !(board[p.x][p.y] instanceof Room);
-    }
-
-    /**
-     * Here we attempt to move the player n amount of steps (according to the dice roll),
-     * In the future we will implement this move function with more logic. We will attempt
-     * to move the player in a A* fashion towards a room/door of the players choosing
-     *
-     *
+     * Here we attempt to move the player n amount of steps (according to the dice roll)
+     * towards a room/door of the players choosing. Doors are chosen by how far away they
+     * are to walk, and each step is read from the distance field of the chosen door.
+     * Boards without distance fields fall back to a hierarchical search. Players walk
+     * round the tokens on the board rather than through them, and a room they can
+     * walk into this turn round the tokens, as GameEngine.getReachableRooms offers
+     * it, is walked into by the shortest way round them.
      *
      * @param player - the current player who's turn it is
      * @param nmoves - the number of steps we can take (either determined by dice roll, or if player selects < dice roll)
@@ -166,30 +236,27 @@ public class Game {
      * @return boolean - true if player has entered a room
      */
     public boolean movePlayer(Player player, int nmoves, Room room) {
+        if (nmoves > 0 && nmoves <= GameEngine.MAX_ROLL && occupancy.hasOthers(player)
+                && getReachability().from(player, occupancy).canEnter(room, nmoves))
+            return walkInto(player, nmoves, room);
+        if (distances == null)
+            return movePlayerAlongPath(player, nmoves, room);
 
         // choose the best door to start from
         if (player.getRoom() != null) {
-            Door startingDoor = player.getRoom().selectBestDoorToDoor(room);
+            Door startingDoor = player.getRoom().selectBestDoorToDoor(room, distances);
             player.move(startingDoor.getPos());
         }
 
-        // setup A* instructions
-        Door closestDoor = room.getDoor(player.getPosition());
-        Node start = new Node(null, player.getPosition());
-        Node end = new Node(null, closestDoor.getPos());
-        start.setGoal(end);
-        end.setGoal(end);
-
-        // compute A* algorithm
-        Node path = Astar(start, end);
-        List<Position> pathToFollow = new ArrayList<>();
-        addPath(pathToFollow, path);
+        // the door we can walk to in the fewest steps
+        Door closestDoor = room.getDoor(player.getPosition(), distances);
+        if (closestDoor == null)
+            throw new IllegalArgumentException("Path finder has failed");
 
         // remove player from the current room as they have chosen to move elsewhere
         player.leaveRoom();
 
-        // make the player follow the A* path
-        int i = pathToFollow.size()-1;
+        // make the player follow the distance field towards the door
         while (nmoves != 0) {
 
             // we must ensure the player enters the correct room, once they do, we can then update
@@ -199,57 +266,266 @@ public class Game {
                 return true;
             }
 
-            //safe guard against out-of-bounds
-            if (i < 0) break;
+            Position next = distances.nextStep(closestDoor, player.getPosition());
+            if (next == null) break;
+
+            // someone is in our way, so the rest of the way is searched for round them
+            if (occupancy.isOccupied(next))
+                return walkRound(player, nmoves, closestDoor);
 
             // move the player
-            player.move(pathToFollow.get(i));
-            i--;
+            player.move(next);
             nmoves--;
         }
         return false;
     }
 
     /**
-     * Helper method for adding our shortest path to the list in
-     * which we will use to move our player
+     * Walks the player into the room by the shortest way round the tokens, from their
+     * square or whichever door of their room is nearest. The room must be close enough
+     * to walk into this turn, so the search never goes far.
+     */
+    private boolean walkInto(Player player, int nmoves, Room room) {
+        int[] doors = cells(room);
+        int[] starts = player.getRoom() != null ? cells(player.getRoom()) : new int[]{board.cell(player.getPosition())};
+        int from = -1;
+        int to = -1;
+        int length = PathFinder.NO_PATH;
+        for (int start : starts) {
+            int check = pathFinder.findNearest(start, doors, null, occupancy);
+            if (check != PathFinder.NO_PATH && (length == PathFinder.NO_PATH || check < length)) {
+                length = check;
+                from = start;
+                to = doors[pathFinder.getTarget()];
+            }
+        }
+        if (length == PathFinder.NO_PATH)
+            throw new IllegalArgumentException("Path finder has failed");
+        if (path.length < length)
+            path = new int[length];
+        pathFinder.findPath(from, to, path, occupancy);
+
+        if (player.getRoom() != null)
+            player.move(board.position(from));
+        player.leaveRoom();
+        routes.remove(player);
+        follow(player, length, nmoves, board.doorAt(to));
+        return player.getRoom() != null;
+    }
+
+    private int[] cells(Room room) {
+        int[] cells = new int[room.getDoors().size()];
+        int n = 0;
+        for (Door d : room.getDoors())
+            cells[n++] = board.cell(d.getPos());
+        return cells;
+    }
+
+    /**
+     * Walks the player along the rest of the distance field's path to the door, round the tokens on it
      */
-    private void addPath(List<Position> positions, Node path) {
-        while (path.parent != null) {
-            positions.add(new Position(path.getPos().x, path.getPos().y));
-            path = path.parent;
+    private boolean walkRound(Player player, int nmoves, Door door) {
+        int length = 0;
+        for (Position p = distances.nextStep(door, player.getPosition()); p != null; p = distances.nextStep(door, p)) {
+            if (length == path.length)
+                path = Arrays.copyOf(path, Math.max(16, 2 * length));
+            path[length++] = board.cell(p);
         }
+        length = avoidPlayers(board.cell(player.getPosition()), length, nmoves);
+        follow(player, length, nmoves, door);
+        return player.getRoom() != null;
     }
 
     /**
-     * Algorithm for Astar search which will return a node containing
-     * the shortest path to our destination. Should never return null.
-     *
-     * @param start Source node
-     * @param end Sink node
-     * @return Astar node containing our selected path
+     * Moves the player as movePlayer does, but finds the doors and the path to
+     * follow with hierarchical searches. The rest of the path is kept for the
+     * players next turn, and only searched for again if they head somewhere else
+     * or come to the end of the steps that were filled in. The hierarchical paths
+     * are as short as the flat search's, see HierarchicalPathFinder.
      */
-    private Node Astar(Node start, Node end) {
-        Queue<Node> order = new PriorityQueue<>();
-        Set<Node> visited = new HashSet<>();
-
-        order.add(start); // add our start node to the queue
-
-        while (!order.isEmpty()) {
-            // do Astar LOGIC
-            Node n = order.poll();
-            visited.add(n);
-            if (n.equals(end)) return n; // found our path
-            else {
-                for (Position p : n.getPos().getNeighbours()) {
-                    Node neighbour = new Node(n, p);
-                    neighbour.setGoal(end);
-                    if (!visited.contains(neighbour) && isRoom(p))
-                        order.add(neighbour);
+    private boolean movePlayerAlongPath(Player player, int nmoves, Room room) {
+        int[] doors = cells(room);
+
+        // choose the door of our room with the shortest walk to the other room
+        if (player.getRoom() != null) {
+            int closest = Integer.MAX_VALUE;
+            Door startingDoor = null;
+            for (Door myDoor : player.getRoom().getDoors()) {
+                int check = hierarchical.findNearest(board.cell(myDoor.getPos()), doors, null);
+                if (check != PathFinder.NO_PATH && check < closest) {
+                    closest = check;
+                    startingDoor = myDoor;
                 }
             }
+            if (startingDoor == null)
+                throw new IllegalArgumentException("Selecting Best Door To Door failed :(!");
+            player.move(startingDoor.getPos());
+        }
+
+        // carry on along the path of our last turn if it goes as far as this turn can take us
+        int steps = nmoves < 0 ? board.size() : Math.min(nmoves, board.size());
+        int from = board.cell(player.getPosition());
+        Route route = routes.get(player);
+        if (route == null || route.door.getRoom() != room || route.from != from
+                || !route.complete && route.path.length < steps + REJOIN) {
+            // only the first few turns of the path are filled in
+            int[] cells = new int[Math.min(board.size(), Math.max(FILLED, steps + REJOIN))];
+            int length = hierarchical.findNearest(from, doors, cells);
+            if (length == PathFinder.NO_PATH)
+                throw new IllegalArgumentException("Path finder has failed");
+            route = new Route(board.doorAt(doors[hierarchical.getTarget()]), from,
+                    length < cells.length ? Arrays.copyOf(cells, length) : cells, length <= cells.length);
         }
-        throw new IllegalArgumentException("Path finder has failed");
+        int length = route.path.length;
+        if (path.length < length)
+            path = new int[length];
+        System.arraycopy(route.path, 0, path, 0, length);
+
+        player.leaveRoom();
+
+        length = avoidPlayers(from, length, nmoves);
+        int taken = follow(player, length, nmoves, route.door);
+
+        // keep the rest of the path for next turn
+        if (player.getRoom() != null || taken == length)
+            routes.remove(player);
+        else
+            routes.put(player, new Route(route.door, board.cell(player.getPosition()), Arrays.copyOfRange(path, taken, length), route.complete));
+        return player.getRoom() != null;
+    }
+
+    /**
+     * Walks the player along the path, into the room if they reach its door with a step to spare
+     *
+     * @return the number of steps taken
+     */
+    private int follow(Player player, int length, int nmoves, Door door) {
+        int i = 0;
+        while (nmoves != 0) {
+            // we must ensure the player enters the correct room, once they do, we can then update
+            // their new position.
+            if (player.getPosition().equals(door.getPos())) {
+                player.enterRoom(door.getRoom());
+                break;
+            }
+            if (i >= length) break;
+
+            // move the player
+            player.move(board.position(path[i++]));
+            nmoves--;
+        }
+        return i;
+    }
+
+    /**
+     * Checks the steps of the path we can take this turn for other tokens. A path
+     * with none on it is followed as it is. Otherwise we search round them, from
+     * where we are to a free square a little past the last one, and carry on along
+     * the path from there. If there is no way round we stop short of the first token.
+     *
+     * @return the length of the path to follow, which is written over the old one
+     */
+    private int avoidPlayers(int from, int length, int nmoves) {
+        int steps = nmoves < 0 ? length : Math.min(nmoves, length);
+        int first = -1;
+        int last = -1;
+        for (int i = 0; i < steps; i++) {
+            if (occupancy.isOccupied(path[i])) {
+                if (first < 0)
+                    first = i;
+                last = i;
+            }
+        }
+        if (first < 0)
+            return length;
+
+        int rejoin = Math.min(length - 1, last + REJOIN);
+        while (rejoin < length - 1 && occupancy.isOccupied(path[rejoin]))
+            rejoin++;
+        if (occupancy.isOccupied(path[rejoin]))
+            return first; // someone is standing at the end of the path
+        int d = pathFinder.findPath(from, path[rejoin], detour, occupancy);
+        if (d == PathFinder.NO_PATH)
+            return first;
+        if (d > detour.length) {
+            detour = new int[Math.max(d, 2 * detour.length)];
+            pathFinder.findPath(from, path[rejoin], detour, occupancy);
+        }
+
+        // the way round, then the rest of the path after where it joins it again
+        int rest = length - rejoin - 1;
+        if (path.length < d + rest)
+            path = Arrays.copyOf(path, d + rest);
+        System.arraycopy(path, rejoin + 1, path, d, rest);
+        System.arraycopy(detour, 0, path, 0, d);
+        return d + rest;
+    }
+
+    /**
+     * Return the walking distances from every square to every door on the board,
+     * or null if the board is too big to have them
+     */
+    public DistanceField getDistances() {
+        return this.distances;
+    }
+
+    /**
+     * Return the squares the tokens of the game are on
+     */
+    public Occupancy getOccupancy() {
+        return this.occupancy;
+    }
+
+    /**
+     * Return the A* search for this board
+     */
+    public PathFinder getPathFinder() {
+        return this.pathFinder;
+    }
+
+    /**
+     * Return the hierarchical search players are moved with, or null if the board has distance fields
+     */
+    public HierarchicalPathFinder getHierarchicalPathFinder() {
+        return this.hierarchical;
+    }
+
+    /**
+     * Return where players can get to on each roll of the dice
+     */
+    public Reachability getReachability() {
+        if (reachability == null) {
+            BoardLayout layout = board.getLayout();
+            reachability = layout == null ? new Reachability(board) : layout.reachability(board);
+        }
+        return this.reachability;
+    }
+
+    /**
+     * Return the table of where players can get to on each roll, or null if the board is too big for one
+     */
+    public MoveTable getMoveTable() {
+        if (moveTable == null && board.getLayout() != null && MoveTable.fits(board))
+            moveTable = board.getLayout().moveTable(board);
+        return this.moveTable;
+    }
+
+    /**
+     * Return the search for how far every room is from a player
+     */
+    public RoomSearch getRoomSearch() {
+        if (roomSearch == null)
+            roomSearch = new RoomSearch(board);
+        return this.roomSearch;
+    }
+
+    /**
+     * Return how many turns on average it takes to get into each room from every square and room
+     */
+    public TurnPlanner getTurnPlanner() {
+        if (turnPlanner == null)
+            turnPlanner = new TurnPlanner(board, getRoomSearch());
+        return this.turnPlanner;
     }
 
     /**
@@ -260,10 +536,17 @@ public class Game {
         card.dealCards(players);
     }
 
+    /**
+     * Deals the cards as they were dealt in a recorded game
+     */
+    void dealCards(List<Player> players, int[] hands, int solution) {
+        card.dealCards(players, hands, solution);
+    }
+
     /**
      * Return the solution list
      */
-    public Set<Card> getSolution() {
+    public CardSet getSolution() {
         return card.getSolution();
     }
 
@@ -275,4 +558,21 @@ public class Game {
         return board.toString();
     }
 
+    /**
+     * The path a player is walking to a door, from the square they stopped on
+     */
+    private static class Route {
+        final Door door;
+        final int from;
+        final int[] path;
+        final boolean complete; // the path goes all the way to the door, rather than its first few turns
+
+        Route(Door door, int from, int[] path, boolean complete) {
+            this.door = door;
+            this.from = from;
+            this.path = path;
+            this.complete = complete;
+        }
+    }
+
 }
@@ -0,0 +1,565 @@
+package GameControl;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * The GameEngine runs the turns of a game of Cluedo without any user interface.
+ * Players are added, the game is started, and then the current player's
+ * Commands are executed one at a time. Every command returns the Events it
+ * caused, which front ends such as the TextClient show to the players.
+ * <p>
+ * Commands that are not allowed at the time they are given throw an
+ * IllegalArgumentException and leave the game unchanged.
+ */
+public class GameEngine {
+
+    // each turn's roll of the dice is one of these, all as likely
+    public static final int MIN_ROLL = 2;
+    public static final int MAX_ROLL = 11;
+
+    private final Game game;
+    private final Random dice;
+
+    private final List<Player> players = new ArrayList<>();
+    private final List<Player> excludedPlayers = new ArrayList<>();
+
+    private int current = -1; // index of the player who's turn it is
+    private int turn = 0;
+    private int roll;
+    private boolean started = false;
+    private boolean suggesting = false; // the current player is in a room and may make a suggestion
+    private boolean over = false;
+    private Player winner;
+    private CardSet guess; // the cards of the last suggestion
+
+    private Journal journal; // where everything that happens is recorded, if anywhere
+
+    public GameEngine(Game game) {
+        this(game, new Random());
+    }
+
+    /**
+     * @param dice where the dice rolls come from
+     */
+    public GameEngine(Game game, Random dice) {
+        this.game = game;
+        this.dice = dice;
+    }
+
+    /*********************************/
+    /*          SETTING UP           */
+    /*********************************/
+
+    /**
+     * Records the deal and every event of the game in the journal, set before the game starts
+     */
+    public void setJournal(Journal journal) {
+        if (started)
+            throw new IllegalArgumentException("The journal must be set before the game starts");
+        this.journal = journal;
+    }
+
+    /**
+     * Adds a player to the game, each player must play a different token
+     *
+     * @return the new player
+     */
+    public Player addPlayer(String name, Player.Token token) {
+        if (started)
+            throw new IllegalArgumentException("Players cannot join a game that has started");
+        if (token == null || getPlayer(token) != null)
+            throw new IllegalArgumentException("Token " + token + " has already been taken");
+        Player player = game.createPlayer(name, token, players.size() + 1);
+        game.getOccupancy().add(player);
+        players.add(player);
+        return player;
+    }
+
+    /**
+     * Deals the cards and starts the first players turn
+     */
+    public List<Event> start() {
+        if (started)
+            throw new IllegalArgumentException("The game has already started");
+        if (players.size() < 2)
+            throw new IllegalArgumentException("At least two players are needed to play");
+        started = true;
+        game.dealCards(players);
+        learnHands();
+        if (journal != null)
+            journal.startGame(players, game.getSolution());
+
+        List<Event> events = new ArrayList<>();
+        nextTurn(events);
+        record(events);
+        return events;
+    }
+
+    /**
+     * Starts the game with the cards dealt as they were in a recorded game, the
+     * first turn is started by replaying its events
+     *
+     * @param hands    the mask of the card ids in each player's hand
+     * @param solution the mask of the card ids in the envelope
+     */
+    void start(int[] hands, int solution) {
+        if (started)
+            throw new IllegalArgumentException("The game has already started");
+        started = true;
+        game.dealCards(players, hands, solution);
+        learnHands();
+    }
+
+    /**
+     * Puts the turn back as it was when a Snapshot was taken, the cards must have been dealt
+     */
+    void restore(int current, int turn, int roll, boolean suggesting, boolean over, Player winner,
+                 List<Player> excluded) {
+        this.started = true;
+        this.current = current;
+        this.turn = turn;
+        this.roll = roll;
+        this.suggesting = suggesting;
+        this.over = over;
+        this.winner = winner;
+        this.excludedPlayers.clear();
+        this.excludedPlayers.addAll(excluded);
+    }
+
+    /**
+     * The hand sizes are known to everyone, each player also knows their own hand
+     */
+    private void learnHands() {
+        int[] handSizes = new int[players.size()];
+        for (int i = 0; i < players.size(); i++)
+            handSizes[i] = players.get(i).getHand().size();
+        for (int i = 0; i < players.size(); i++)
+            players.get(i).setKnowledge(new Knowledge(handSizes, i, players.get(i).getHand()));
+    }
+
+    /*********************************/
+    /*          PLAYING              */
+    /*********************************/
+
+    /**
+     * Carry out a command for the current player
+     *
+     * @return the events the command caused, in the order they happened
+     */
+    public List<Event> execute(Command command) {
+        if (!started || over)
+            throw new IllegalArgumentException("The game is not being played");
+        Player player = getCurrentPlayer();
+        List<Event> events = new ArrayList<>();
+
+        switch (command.getType()) {
+            case MOVE:
+                move(player, command.getRoom(), events);
+                break;
+            case PASSAGE:
+                usePassage(player, events);
+                break;
+            case STAY:
+                stay(player, events);
+                break;
+            case SUGGEST:
+                suggest(player, command.getCharacter(), command.getWeapon(), events);
+                break;
+            case ACCUSE:
+                accuse(player, command.getCharacter(), command.getWeapon(), command.getRoom(), events);
+                break;
+            case END:
+                endTurn(events);
+                break;
+        }
+        record(events);
+        return events;
+    }
+
+    private void record(List<Event> events) {
+        if (journal != null)
+            journal.append(events);
+    }
+
+    /**
+     * Changes the game as the event did when it happened, without rolling any dice
+     * or checking any rules. Events are replayed in the order they happened
+     *
+     * @param position where the player of the event moved to, for the events that move a player
+     */
+    void replay(Event event, Position position) {
+        Player player = event.getPlayer();
+        switch (event.getType()) {
+            case TURN_STARTED:
+                current = players.indexOf(player);
+                turn = event.getValue();
+                break;
+            case DICE_ROLLED:
+                roll = event.getValue();
+                break;
+            case MOVED:
+                player.leaveRoom();
+                player.move(position);
+                break;
+            case ENTERED_ROOM:
+                // a player who walked in is on a door, a secret passage does not move them
+                if (!position.equals(player.getPosition()))
+                    player.leaveRoom();
+                player.move(position);
+                player.enterRoom(event.getRoom());
+                suggesting = true;
+                break;
+            case STAYED:
+                suggesting = true;
+                break;
+            case PLACED_IN_ROOM:
+                player.move(position);
+                player.enterRoom(event.getRoom());
+                player.setWasMoved();
+                break;
+            case SUGGESTED:
+                guess = new CardSet(event.getRoom(), event.getCharacter(), event.getWeapon());
+                break;
+            case CANNOT_ANSWER:
+                learnCannotAnswer(players.indexOf(player));
+                break;
+            case CARD_REVEALED:
+                event.getOther().addCardToInventory(event.getCard());
+                learnShown(guess, event.getOther(), players.indexOf(player), event.getCard());
+                break;
+            case ELIMINATED:
+                excludedPlayers.add(player);
+                break;
+            case TURN_ENDED:
+                suggesting = false;
+                break;
+            case GAME_OVER:
+                winner = player;
+                over = true;
+                suggesting = false;
+                break;
+            default:
+                break;
+        }
+    }
+
+    private void move(Player player, Room room, List<Event> events) {
+        checkStartOfTurn();
+        if (room == null)
+            throw new IllegalArgumentException("Choose a room to move towards");
+        if (room.equals(player.getRoom()))
+            throw new IllegalArgumentException("You are already in the " + room + ", choose another room or end your turn!");
+
+        if (game.movePlayer(player, roll, room)) {
+            events.add(Event.of(Event.Type.ENTERED_ROOM, player, room));
+            suggesting = true;
+        } else {
+            events.add(Event.of(Event.Type.MOVED, player, room));
+            endTurn(events);
+        }
+    }
+
+    private void usePassage(Player player, List<Event> events) {
+        checkStartOfTurn();
+        if (!canUsePassage())
+            throw new IllegalArgumentException("There is no secret passage here");
+        Room room = player.getRoom().getSecretPassage();
+        player.enterRoom(room);
+        events.add(Event.of(Event.Type.ENTERED_ROOM, player, room));
+        suggesting = true;
+    }
+
+    private void stay(Player player, List<Event> events) {
+        checkStartOfTurn();
+        if (!canStay())
+            throw new IllegalArgumentException("You were not moved into a room");
+        events.add(Event.of(Event.Type.STAYED, player, player.getRoom()));
+        suggesting = true;
+    }
+
+    /**
+     * The logic behind suggesting a killer in the room the player is in. The accused
+     * character is moved into the room, then each player, starting to the left, is asked
+     * to reveal a card of the suggestion until one can
+     */
+    private void suggest(Player player, Card character, Card weapon, List<Event> events) {
+        if (!suggesting)
+            throw new IllegalArgumentException("You can only make a suggestion after entering a room");
+        checkCard(character, Character.class);
+        checkCard(weapon, Weapon.class);
+        Room room = player.getRoom();
+
+        // moves our accused player into the room, they then remain in the room until there turn
+        Player accusedPlayer = getPlayer(tokenOf(character));
+        if (accusedPlayer != null && player != accusedPlayer) {
+            moveAccused(accusedPlayer, room);
+            events.add(Event.of(Event.Type.PLACED_IN_ROOM, accusedPlayer, player, room));
+        }
+        events.add(Event.guess(Event.Type.SUGGESTED, player, character, weapon, room));
+
+        // now we check each player beginning to the left has a card
+        guess = new CardSet(room, character, weapon);
+        int start = players.indexOf(player);
+        if (!revealCard(player, start + 1, players.size(), events)
+                && !revealCard(player, 0, start, events))
+            events.add(Event.of(Event.Type.NO_CARD_REVEALED, player));
+
+        endTurn(events);
+    }
+
+    /**
+     * Asks every player from start to end to reveal a card if they have it
+     *
+     * @return true once a card has been revealed
+     */
+    private boolean revealCard(Player player, int start, int end, List<Event> events) {
+        for (int i = start; i < end; i++) {
+            Player leftPlayer = players.get(i);
+            if (leftPlayer != player && leftPlayer.checkCards(guess)) {
+                // force leftPlayer to reveal a card to current player
+                Card reveal = leftPlayer.pickRandomCardToReveal(guess);
+                player.addCardToInventory(reveal);
+                events.add(Event.reveal(leftPlayer, player, reveal));
+                learnShown(guess, player, i, reveal);
+                return true;
+            } else {
+                events.add(Event.of(Event.Type.CANNOT_ANSWER, leftPlayer, player, null));
+                learnCannotAnswer(i);
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Everyone sees that the player could not show a card of the guess
+     */
+    private void learnCannotAnswer(int owner) {
+        for (Player p : players)
+            p.getKnowledge().setHasnt(owner, guess.getMask());
+    }
+
+    /**
+     * Everyone sees which player showed a card, only the player who asked sees which card
+     */
+    private void learnShown(CardSet guess, Player asker, int owner, Card shown) {
+        for (Player p : players) {
+            if (p == asker)
+                p.getKnowledge().setHas(owner, 1 << shown.getId());
+            else if (p != players.get(owner))
+                p.getKnowledge().setShownOneOf(owner, guess.getMask());
+        }
+    }
+
+    /**
+     * Moves the player into the room, they sit on the first of its doors
+     * that no one is standing in
+     */
+    private void moveAccused(Player player, Room room) {
+        Occupancy occupancy = game.getOccupancy();
+        Door door = null;
+        int best = Integer.MAX_VALUE;
+        for (Door d : room.getDoors()) {
+            // free doors first, then the doors in the order they are on the board
+            int order = (occupancy.isOccupied(d.getPos()) ? 1 << 30 : 0) | d.getIndex();
+            if (order < best) {
+                best = order;
+                door = d;
+            }
+        }
+        player.move(door.getPos());
+        player.enterRoom(room);
+        player.setWasMoved();
+    }
+
+    /**
+     * The logic for accusing, this is where a player wins the game or is eliminated
+     */
+    private void accuse(Player player, Card character, Card weapon, Room room, List<Event> events) {
+        if (suggesting)
+            throw new IllegalArgumentException("Make your suggestion or end your turn");
+        checkCard(character, Character.class);
+        checkCard(weapon, Weapon.class);
+        checkCard(room, Room.class);
+        events.add(Event.guess(Event.Type.ACCUSED, player, character, weapon, room));
+
+        if (game.getSolution().containsAll(new CardSet(character, weapon, room))) {
+            events.add(Event.of(Event.Type.WON, player));
+            gameOver(player, events);
+            return;
+        }
+
+        events.add(Event.of(Event.Type.ELIMINATED, player));
+        excludedPlayers.add(player);
+        if (players.size() - excludedPlayers.size() < 2)
+            gameOver(null, events);
+        else
+            endTurn(events);
+    }
+
+    private void gameOver(Player winner, List<Event> events) {
+        this.winner = winner;
+        this.over = true;
+        this.suggesting = false;
+        events.add(Event.of(Event.Type.GAME_OVER, winner));
+    }
+
+    private void endTurn(List<Event> events) {
+        events.add(Event.of(Event.Type.TURN_ENDED, getCurrentPlayer()));
+        suggesting = false;
+        nextTurn(events);
+    }
+
+    /**
+     * Pass the turn to the next player who has not been eliminated and roll the dice for them
+     */
+    private void nextTurn(List<Event> events) {
+        int next = current;
+        do {
+            next = (next + 1) % players.size();
+            if (next == 0)
+                events.add(Event.of(Event.Type.ROUND_STARTED, null, turn + 1));
+        } while (excludedPlayers.contains(players.get(next)));
+
+        current = next;
+        turn++;
+        roll = dice.nextInt(MAX_ROLL - MIN_ROLL + 1) + MIN_ROLL;
+        Player player = players.get(current);
+        events.add(Event.of(Event.Type.TURN_STARTED, player, turn));
+        events.add(Event.of(Event.Type.DICE_ROLLED, player, roll));
+    }
+
+    private void checkStartOfTurn() {
+        if (suggesting)
+            throw new IllegalArgumentException("Make your suggestion or end your turn");
+    }
+
+    private void checkCard(Card card, Class<? extends Card> type) {
+        if (!type.isInstance(card) || card.getId() < 0)
+            throw new IllegalArgumentException(card + " is not a " + type.getSimpleName() + " card");
+    }
+
+    /*********************************/
+    /*          GETTERS              */
+    /*********************************/
+
+    public Game getGame() {
+        return game;
+    }
+
+    public List<Player> getPlayers() {
+        return Collections.unmodifiableList(players);
+    }
+
+    public List<Player> getExcludedPlayers() {
+        return Collections.unmodifiableList(excludedPlayers);
+    }
+
+    public boolean isExcluded(Player player) {
+        return excludedPlayers.contains(player);
+    }
+
+    /**
+     * @return the player who's turn it is, null before the game starts
+     */
+    public Player getCurrentPlayer() {
+        return current < 0 ? null : players.get(current);
+    }
+
+    /**
+     * The dice roll of the current turn
+     */
+    public int getRoll() {
+        return roll;
+    }
+
+    public int getTurn() {
+        return turn;
+    }
+
+    /**
+     * Whether the cards have been dealt and the first turn started
+     */
+    public boolean isStarted() {
+        return started;
+    }
+
+    public boolean isOver() {
+        return over;
+    }
+
+    /**
+     * @return the player who made the right accusation, or null
+     */
+    public Player getWinner() {
+        return winner;
+    }
+
+    /**
+     * Whether the current player has entered a room and can make a suggestion
+     */
+    public boolean canSuggest() {
+        return suggesting;
+    }
+
+    /**
+     * Whether the current player starts their turn in a room with a secret passage
+     */
+    public boolean canUsePassage() {
+        Player player = getCurrentPlayer();
+        return !suggesting && player != null && player.getRoom() != null && player.getRoom().hasSecretPassage();
+    }
+
+    /**
+     * Whether the current player was moved into their room by another player and may stay there
+     */
+    public boolean canStay() {
+        Player player = getCurrentPlayer();
+        return !suggesting && player != null && player.getRoom() != null && player.getWasMoved();
+    }
+
+    /**
+     * The rooms the current player can walk into with this turn's roll, round the
+     * tokens on the board, as a mask of card ids
+     */
+    public int getReachableRooms() {
+        Player player = getCurrentPlayer();
+        if (suggesting || player == null)
+            return 0;
+        int rooms;
+        MoveTable table = game.getMoveTable();
+        if (table == null)
+            rooms = game.getReachability().from(player).getRooms(roll);
+        else if (player.getRoom() != null)
+            rooms = table.getRooms(player.getRoom(), roll);
+        else
+            rooms = table.getRooms(game.getBoard().cell(player.getPosition()), roll);
+
+        // the rooms of an empty board, less those the other tokens stand in the way of
+        Occupancy occupancy = game.getOccupancy();
+        if (rooms == 0 || !occupancy.hasOthers(player))
+            return rooms;
+        return rooms & game.getReachability().from(player, occupancy).getRooms(roll);
+    }
+
+    /**
+     * Returns the player corresponding to the token otherwise null
+     */
+    public Player getPlayer(Player.Token token) {
+        for (Player p : players) {
+            if (p.getToken() == token) {
+                return p;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * The token that plays the character of the card
+     */
+    public static Player.Token tokenOf(Card character) {
+        return CardIndex.tokenOf(character.getId());
+    }
+}
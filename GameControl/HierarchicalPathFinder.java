@@ -0,0 +1,697 @@
+package GameControl;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * HierarchicalPathFinder is the HPA* search we use on boards too big for
+ * distance fields. The board is cut into square clusters. Every square with a
+ * walkable square next to it in another cluster is a node, and so is every
+ * door. The walking distance between every two nodes of a cluster, without
+ * leaving the cluster, is worked out the first time a search comes to the
+ * cluster and kept in a byte, which is why a cluster is at most 16 squares
+ * across.
+ * <p>
+ * A shortest path goes from cluster to cluster between squares that are nodes
+ * and takes the shortest walk within each cluster in between, so the shortest
+ * path over the nodes is as short as the flat search's. A search walks the
+ * start's cluster and the targets' clusters to find their nodes, then searches
+ * the nodes that are stepped onto from another cluster, going from each one
+ * to every node of its cluster and across to the next. A step across that
+ * looks longer than the best path so far is left until the search gets that
+ * far, so around the rooms, where many ways are equally short, few of the
+ * steps are ever weighed.
+ * <p>
+ * Only the steps of the path that are asked for are filled in, each stretch
+ * within a cluster with a walk of that cluster, so filling in a turn's steps
+ * costs the same however long the path is.
+ * <p>
+ * Squares are referred to by their cell, cell = x * columns + y. One
+ * HierarchicalPathFinder can be shared between threads.
+ */
+public class HierarchicalPathFinder {
+
+    public static final int NO_PATH = PathFinder.NO_PATH;
+
+    // the most squares across a cluster, for the walks within one to fit in a byte
+    public static final int MAX_SIZE = 16;
+
+    // the cost between two nodes of a cluster that cannot walk to each other within it
+    private static final int NONE = 0xFF;
+
+    private final int rows;
+    private final int cols;
+    private final BoardGraph graph;
+    private final CompiledBoard board; // for the positions of squares
+    private final int size; // of a cluster, across
+    private final int clusterCols;
+
+    // the nodes, grouped by cluster: the nodes of cluster c are clusterFirst[c] to clusterFirst[c + 1] - 1
+    private final int[] clusterFirst;
+    private final int[] nodeCell;
+
+    // the walks between the nodes of each cluster, a row for each node, made when first needed
+    private final AtomicReferenceArray<byte[]> costs;
+
+    // the nodes across the edge of the cluster from each node: crossFirst[n] to crossFirst[n + 1] - 1
+    private final int[] crossFirst;
+    private final int[] crossTarget;
+
+    // what the search needs to know of a node to weigh the steps across from it, packed so it
+    // is one read: where it is within its cluster, x * MAX_SIZE + y, in the low 8 bits, the
+    // number of steps across in the next 2, and the way each goes, an index into STEP_X and STEP_Y,
+    // in 2 bits each after that. A square has at most two sides on the edge of its cluster.
+    private final int[] nodeSteps;
+    private static final int[] STEP_X = {0, 0, -1, 1};
+    private static final int[] STEP_Y = {-1, 1, 0, 0};
+
+    private final ThreadLocal<Scratch> scratch = new ThreadLocal<Scratch>() {
+        @Override
+        protected Scratch initialValue() {
+            return new Scratch(nodeCell.length, size);
+        }
+    };
+
+    public HierarchicalPathFinder(CompiledBoard board) {
+        this(board, MAX_SIZE);
+    }
+
+    /**
+     * @param size how many squares across a cluster is
+     */
+    public HierarchicalPathFinder(CompiledBoard board, int size) {
+        if (size < 2 || size > MAX_SIZE)
+            throw new IllegalArgumentException("Clusters must be from 2 to " + MAX_SIZE + " squares across");
+        this.board = board;
+        this.rows = board.rows();
+        this.cols = board.cols();
+        this.size = size;
+        this.graph = board.getGraph();
+        this.clusterCols = (cols + size - 1) / size;
+        int clusters = (rows + size - 1) / size * clusterCols;
+
+        // mark the squares that are nodes
+        long[] isNode = new long[(rows * cols + 63) >>> 6];
+        for (int cell = 0; cell < rows * cols; cell++) {
+            int x = cell / cols;
+            int y = cell % cols;
+            if (y % size == size - 1 && y + 1 < cols && crosses(cell, cell + 1)) {
+                mark(isNode, cell);
+                mark(isNode, cell + 1);
+            }
+            if (x % size == size - 1 && x + 1 < rows && crosses(cell, cell + cols)) {
+                mark(isNode, cell);
+                mark(isNode, cell + cols);
+            }
+        }
+        for (Door door : board.getDoors())
+            mark(isNode, board.cell(door.getPos()));
+
+        // number them cluster by cluster
+        clusterFirst = new int[clusters + 1];
+        int nodes = 0;
+        for (int cell = 0; cell < rows * cols; cell++)
+            if (marked(isNode, cell)) {
+                clusterFirst[clusterOf(cell) + 1]++;
+                nodes++;
+            }
+        for (int c = 0; c < clusters; c++)
+            clusterFirst[c + 1] += clusterFirst[c];
+        nodeCell = new int[nodes];
+        int[] next = Arrays.copyOf(clusterFirst, clusters);
+        for (int cell = 0; cell < rows * cols; cell++)
+            if (marked(isNode, cell))
+                nodeCell[next[clusterOf(cell)]++] = cell;
+
+        // the steps across the edges of the clusters
+        crossFirst = new int[nodes + 1];
+        nodeSteps = new int[nodes];
+        IntList across = new IntList();
+        for (int n = 0; n < nodes; n++) {
+            int cell = nodeCell[n];
+            int x = cell / cols;
+            int y = cell % cols;
+            nodeSteps[n] = x % size * MAX_SIZE + y % size;
+            if (y > 0) addCrossing(across, n, cell - 1, 0);
+            if (y + 1 < cols) addCrossing(across, n, cell + 1, 1);
+            if (x > 0) addCrossing(across, n, cell - cols, 2);
+            if (x + 1 < rows) addCrossing(across, n, cell + cols, 3);
+            crossFirst[n + 1] = across.size;
+        }
+        crossTarget = Arrays.copyOf(across.values, across.size);
+
+        costs = new AtomicReferenceArray<>(clusters);
+    }
+
+    /**
+     * The walks between the nodes of the cluster, cost[n * count + m] from its nth node
+     * to its mth, worked out by walking the cluster from each node if no search has yet
+     */
+    private byte[] costs(int cluster, Walk walk) {
+        byte[] cost = costs.get(cluster);
+        if (cost != null)
+            return cost;
+        int first = clusterFirst[cluster];
+        int count = clusterFirst[cluster + 1] - first;
+        cost = new byte[count * count];
+        for (int n = 0; n < count; n++) {
+            walkCluster(walk, nodeCell[first + n]);
+            for (int m = 0; m < count; m++) {
+                int d = walk.distance(nodeCell[first + m]);
+                cost[n * count + m] = (byte) (d == NO_PATH ? NONE : d);
+            }
+        }
+        // another thread may have got there first, the walks are the same either way
+        costs.compareAndSet(cluster, null, cost);
+        return costs.get(cluster);
+    }
+
+    private boolean crosses(int a, int b) {
+        return graph.isWalkable(a) && graph.isWalkable(b);
+    }
+
+    private void addCrossing(IntList across, int node, int next, int step) {
+        int cell = nodeCell[node];
+        if (clusterOf(next) != clusterOf(cell) && crosses(cell, next)) {
+            int count = nodeSteps[node] >>> 8 & 3;
+            nodeSteps[node] += (1 << 8) + (step << (10 + 2 * count));
+            across.add(node(next));
+        }
+    }
+
+    private static void mark(long[] bits, int cell) {
+        bits[cell >>> 6] |= 1L << cell;
+    }
+
+    private static boolean marked(long[] bits, int cell) {
+        return (bits[cell >>> 6] & 1L << cell) != 0;
+    }
+
+    private int clusterOf(int cell) {
+        return cell / cols / size * clusterCols + cell % cols / size;
+    }
+
+    /**
+     * The node on the square, or -1 if it is not one
+     */
+    private int node(int cell) {
+        int cluster = clusterOf(cell);
+        int n = Arrays.binarySearch(nodeCell, clusterFirst[cluster], clusterFirst[cluster + 1], cell);
+        return n >= 0 ? n : -1;
+    }
+
+    /*********************************/
+    /*          SEARCHING            */
+    /*********************************/
+
+    /**
+     * Search for the shortest path between two squares, as PathFinder.findPath does
+     *
+     * @param path where to write the path, may be null if only the length is wanted, if the
+     *             path is longer than the array only its first steps are written
+     * @return the number of steps in the path, or NO_PATH if the goal cannot be reached
+     */
+    public int findPath(int from, int to, int[] path) {
+        return findNearest(from, new int[]{to}, path);
+    }
+
+    /**
+     * Search for the shortest path to whichever of the squares is closest, the
+     * index of the one found is then given by getTarget
+     *
+     * @return the number of steps in the path, or NO_PATH if none of the squares can be reached
+     */
+    public int findNearest(int from, int[] targets, int[] path) {
+        if (!contains(from))
+            throw new IllegalArgumentException("Path finder was given a square that is not on the board");
+        boolean reachable = false;
+        for (int target : targets) {
+            if (!contains(target))
+                throw new IllegalArgumentException("Path finder was given a square that is not on the board");
+            reachable |= target == from || graph.connected(from, target);
+        }
+
+        Scratch s = scratch.get();
+        s.target = -1;
+        // nothing to search for when none of the targets are in the same part of the board
+        if (!reachable) {
+            s.expanded = 0;
+            return NO_PATH;
+        }
+        try {
+            int length = search(s, from, targets);
+            if (length != NO_PATH && path != null)
+                fill(s, from, targets[s.target], path);
+            return length;
+        } finally {
+            s.reset();
+        }
+    }
+
+    /**
+     * The index in the targets of the square the last search on this thread found
+     */
+    public int getTarget() {
+        return scratch.get().target;
+    }
+
+    /**
+     * The number of nodes the last search on this thread took off the open list
+     */
+    public int getExpandedNodes() {
+        return scratch.get().expanded;
+    }
+
+    /**
+     * The number of nodes in the graph, the squares either side of the crossings and the doors
+     */
+    public int getNodes() {
+        return nodeCell.length;
+    }
+
+    public int cell(Position p) {
+        return p.x * cols + p.y;
+    }
+
+    public Position position(int cell) {
+        return board.position(cell);
+    }
+
+    private boolean contains(int cell) {
+        return cell >= 0 && cell < rows * cols;
+    }
+
+    /**
+     * The steps to the box around the targets, which is never more than the steps to the nearest of them
+     */
+    private int heuristic(Scratch s, int cell) {
+        return heuristic(s, cell / cols, cell % cols);
+    }
+
+    private static int heuristic(Scratch s, int x, int y) {
+        return Math.max(0, s.top - x) + Math.max(0, x - s.bottom) + Math.max(0, s.left - y) + Math.max(0, y - s.right);
+    }
+
+    /**
+     * A* over the nodes stepped onto from another cluster, from the start's
+     * cluster to the targets, which are reached from the nodes of their clusters
+     */
+    private int search(Scratch s, int from, int[] targets) {
+        s.expanded = 0;
+        int startCluster = clusterOf(from);
+
+        // targets we can walk to without leaving the cluster
+        walkCluster(s.start, from);
+        for (int t = 0; t < targets.length; t++) {
+            int d = clusterOf(targets[t]) == startCluster ? s.start.distance(targets[t]) : NO_PATH;
+            if (d != NO_PATH && d < s.best) {
+                s.best = d;
+                s.target = t;
+            }
+        }
+
+        // the walks from each target to the nodes of its cluster, the targets that are nodes need none
+        s.top = s.left = Integer.MAX_VALUE;
+        s.bottom = s.right = Integer.MIN_VALUE;
+        for (int t = 0; t < targets.length; t++) {
+            int x = targets[t] / cols;
+            int y = targets[t] % cols;
+            s.top = Math.min(s.top, x);
+            s.bottom = Math.max(s.bottom, x);
+            s.left = Math.min(s.left, y);
+            s.right = Math.max(s.right, y);
+
+            int node = node(targets[t]);
+            if (node >= 0) {
+                s.goal(node, t, 0);
+                continue;
+            }
+            int cluster = clusterOf(targets[t]);
+            walkCluster(s.leg, targets[t]);
+            for (int n = clusterFirst[cluster]; n < clusterFirst[cluster + 1]; n++) {
+                int d = s.leg.distance(nodeCell[n]);
+                if (d != NO_PATH)
+                    s.goal(n, t, d);
+            }
+        }
+
+        s.open(heuristic(s, from));
+        for (int n = clusterFirst[startCluster]; n < clusterFirst[startCluster + 1]; n++) {
+            int d = s.start.distance(nodeCell[n]);
+            if (d == NO_PATH)
+                continue;
+            reach(s, n, d, -1);
+            leave(s, n, d, -1, Integer.MAX_VALUE, from / cols / size * size, from % cols / size * size);
+        }
+
+        while (s.waiting > 0) {
+            int f = s.lowest();
+            if (f >= s.best)
+                break;
+            int node = s.pop();
+            if (s.f[node] != f)
+                continue; // an older entry for a node we have since reached more cheaply, or expanded
+            s.expanded++;
+            int g = s.cost[node];
+
+            // walk to each node of the cluster, this one included, and leave it
+            int cluster = clusterOf(nodeCell[node]);
+            int first = clusterFirst[cluster];
+            int count = clusterFirst[cluster + 1] - first;
+            int x0 = cluster / clusterCols * size;
+            int y0 = cluster % clusterCols * size;
+            byte[] cost = costs(cluster, s.leg);
+            boolean goals = s.isGoalCluster(cluster);
+            int later = Integer.MAX_VALUE;
+            for (int m = 0, row = (node - first) * count; m < count; m++) {
+                int walk = cost[row + m] & 0xFF;
+                if (walk == NONE)
+                    continue;
+                if (goals)
+                    reach(s, first + m, g + walk, node);
+                later = Math.min(later, leave(s, first + m, g + walk, node, f, x0, y0));
+            }
+            // the node goes back on the open list for the moves that were left for later
+            s.f[node] = later;
+            if (later != Integer.MAX_VALUE)
+                s.push(node, later);
+        }
+        return s.best == Integer.MAX_VALUE ? NO_PATH : s.best;
+    }
+
+    /**
+     * Reaching a node of a target's cluster g steps into the path, from the node
+     * the path came into the cluster on or from the start, and walking on to the target
+     */
+    private void reach(Scratch s, int node, int g, int from) {
+        if (s.goalCost[node] != Integer.MAX_VALUE && g + s.goalCost[node] < s.best) {
+            s.best = g + s.goalCost[node];
+            s.target = s.goalTarget[node];
+            s.last = from;
+        }
+    }
+
+    /**
+     * Reaching a node of a cluster g steps into the path, from the node the path
+     * came into the cluster on or from the start, and stepping across to the next
+     * cluster. Steps that make the path look longer than f are left for later, as
+     * most of them never need taking.
+     *
+     * @param x0 the top of the node's cluster
+     * @param y0 the left of the node's cluster
+     * @return the least f of the steps left for later, or MAX_VALUE if there are none
+     */
+    private int leave(Scratch s, int node, int g, int from, int f, int x0, int y0) {
+        int steps = nodeSteps[node];
+        int x = x0 + (steps & 0xFF) / MAX_SIZE;
+        int y = y0 + (steps & 0xFF) % MAX_SIZE;
+        int later = Integer.MAX_VALUE;
+        for (int k = 0; k < (steps >>> 8 & 3); k++) {
+            int step = steps >>> (10 + 2 * k) & 3;
+            int estimate = g + 1 + heuristic(s, x + STEP_X[step], y + STEP_Y[step]);
+            if (estimate > f) {
+                later = Math.min(later, estimate);
+                continue;
+            }
+            int next = crossTarget[crossFirst[node] + k];
+            if (s.touch(next, g + 1, from)) {
+                s.f[next] = estimate;
+                s.push(next, estimate);
+            }
+        }
+        return later;
+    }
+
+    /**
+     * Fills in the steps of the path the last search found, as far as the array goes
+     */
+    private void fill(Scratch s, int from, int to, int[] path) {
+        IntList entered = s.entered;
+        for (int node = s.last; node >= 0; node = s.parent[node])
+            entered.add(node);
+        int here = from;
+        int steps = 0;
+        for (int i = entered.size - 1; i >= 0 && steps < path.length; i--) {
+            int cell = nodeCell[entered.get(i)];
+            steps = walkTo(s.leg, here, across(cell, clusterOf(here)), path, steps);
+            if (steps < path.length)
+                path[steps++] = cell;
+            here = cell;
+        }
+        if (steps < path.length)
+            walkTo(s.leg, here, to, path, steps);
+    }
+
+    /**
+     * The square next to the cell that is in the cluster
+     */
+    private int across(int cell, int cluster) {
+        int x = cell / cols;
+        int y = cell % cols;
+        if (y > 0 && clusterOf(cell - 1) == cluster) return cell - 1;
+        if (y + 1 < cols && clusterOf(cell + 1) == cluster) return cell + 1;
+        if (x > 0 && clusterOf(cell - cols) == cluster) return cell - cols;
+        return cell + cols;
+    }
+
+    /**
+     * Writes the steps of the shortest walk between two squares of a cluster into the path
+     *
+     * @return the number of steps of the path written so far
+     */
+    private int walkTo(Walk walk, int from, int to, int[] path, int steps) {
+        walkCluster(walk, to);
+        int here = from;
+        for (int d = walk.distance(from); d > 0 && steps < path.length; d--) {
+            int x = here / cols;
+            int y = here % cols;
+            if (y > 0 && walk.distance(here - 1) == d - 1) here--;
+            else if (y + 1 < cols && walk.distance(here + 1) == d - 1) here++;
+            else if (x > 0 && walk.distance(here - cols) == d - 1) here -= cols;
+            else here += cols;
+            path[steps++] = here;
+        }
+        return steps;
+    }
+
+    /**
+     * Breadth first search out from the square without leaving its cluster
+     */
+    private void walkCluster(Walk walk, int source) {
+        int x0 = source / cols / size * size;
+        int y0 = source % cols / size * size;
+        walk.x0 = x0;
+        walk.y0 = y0;
+        walk.height = Math.min(size, rows - x0);
+        walk.width = Math.min(size, cols - y0);
+        Arrays.fill(walk.distance, NO_PATH);
+
+        int head = 0;
+        int tail = 0;
+        int local = walk.local(source);
+        walk.distance[local] = 0;
+        walk.queue[tail++] = local;
+        while (head < tail) {
+            int here = walk.queue[head++];
+            int lx = here / size;
+            int ly = here % size;
+            int cell = (x0 + lx) * cols + y0 + ly;
+            if (ly > 0) tail = walk.visit(here, here - 1, cell - 1, graph, tail);
+            if (ly < walk.width - 1) tail = walk.visit(here, here + 1, cell + 1, graph, tail);
+            if (lx > 0) tail = walk.visit(here, here - size, cell - cols, graph, tail);
+            if (lx < walk.height - 1) tail = walk.visit(here, here + size, cell + cols, graph, tail);
+        }
+    }
+
+    /**
+     * A breadth first search of one cluster, the squares are numbered within the cluster
+     */
+    private final class Walk {
+        final int[] distance;
+        final int[] queue;
+        int x0;
+        int y0;
+        int height;
+        int width;
+
+        Walk(int size) {
+            distance = new int[size * size];
+            queue = new int[size * size];
+        }
+
+        int local(int cell) {
+            return (cell / cols - x0) * size + cell % cols - y0;
+        }
+
+        int visit(int here, int next, int cell, BoardGraph graph, int tail) {
+            if (graph.isWalkable(cell) && distance[next] == NO_PATH) {
+                distance[next] = distance[here] + 1;
+                queue[tail++] = next;
+            }
+            return tail;
+        }
+
+        /**
+         * The distance to a square of the cluster, NO_PATH if it is in another cluster or cannot be reached
+         */
+        int distance(int cell) {
+            int x = cell / cols - x0;
+            int y = cell % cols - y0;
+            if (x < 0 || y < 0 || x >= height || y >= width)
+                return NO_PATH;
+            return distance[x * size + y];
+        }
+    }
+
+    /**
+     * The working memory for one thread, the node costs are put back after each search
+     */
+    private final class Scratch {
+        final int[] cost;
+        final int[] parent;
+        final int[] f; // the f the node is on the open list with
+        final IntList touched = new IntList();
+        final Walk start;
+        final Walk leg;
+
+        // the steps from each node to the nearest target in its cluster, and which target that is
+        final int[] goalCost;
+        final int[] goalTarget;
+        final IntList goals = new IntList();
+        final long[] goalClusters = new long[(clusterFirst.length - 1 + 63) >>> 6];
+
+        // the box around the targets
+        int top;
+        int bottom;
+        int left;
+        int right;
+
+        // the open list, a stack of nodes for each f from the first, as f only goes up
+        IntList[] open = new IntList[64];
+        int first; // the f of open[0]
+        int at; // where the lowest f with nodes waiting is
+        int used; // how far into the open list nodes have been put
+        int waiting;
+
+        final IntList entered = new IntList(); // the nodes the path found comes into clusters on, from the last
+        int last = -1; // the node the path found comes into the target's cluster on, -1 if it starts there
+        int best = Integer.MAX_VALUE;
+        int target;
+        int expanded;
+
+        Scratch(int nodes, int clusterSize) {
+            cost = new int[nodes];
+            parent = new int[nodes];
+            f = new int[nodes];
+            goalCost = new int[nodes];
+            goalTarget = new int[nodes];
+            Arrays.fill(cost, Integer.MAX_VALUE);
+            Arrays.fill(goalCost, Integer.MAX_VALUE);
+            start = new Walk(clusterSize);
+            leg = new Walk(clusterSize);
+        }
+
+        /**
+         * @return whether the cost is an improvement
+         */
+        boolean touch(int node, int g, int from) {
+            if (g >= cost[node])
+                return false;
+            if (cost[node] == Integer.MAX_VALUE)
+                touched.add(node);
+            cost[node] = g;
+            parent[node] = from;
+            return true;
+        }
+
+        void goal(int node, int target, int steps) {
+            if (goalCost[node] == Integer.MAX_VALUE) {
+                goals.add(node);
+                int cluster = clusterOf(nodeCell[node]);
+                goalClusters[cluster >>> 6] |= 1L << cluster;
+            }
+            if (steps < goalCost[node]) {
+                goalCost[node] = steps;
+                goalTarget[node] = target;
+            }
+        }
+
+        boolean isGoalCluster(int cluster) {
+            return (goalClusters[cluster >>> 6] & 1L << cluster) != 0;
+        }
+
+        void open(int f) {
+            first = f;
+            at = 0;
+        }
+
+        void push(int node, int f) {
+            int i = f - first;
+            if (i >= open.length)
+                open = Arrays.copyOf(open, Math.max(2 * open.length, i + 1));
+            if (open[i] == null)
+                open[i] = new IntList();
+            open[i].add(node);
+            used = Math.max(used, i + 1);
+            waiting++;
+        }
+
+        /**
+         * The lowest f of the nodes waiting, there must be some
+         */
+        int lowest() {
+            while (open[at] == null || open[at].size == 0)
+                at++;
+            return first + at;
+        }
+
+        /**
+         * Takes the node put on the open list last of those with the lowest f, as it is most
+         * likely the deepest, and lowest must have been called since the last push
+         */
+        int pop() {
+            waiting--;
+            return open[at].values[--open[at].size];
+        }
+
+        void reset() {
+            for (int i = 0; i < touched.size; i++) {
+                int node = touched.get(i);
+                cost[node] = Integer.MAX_VALUE;
+            }
+            touched.size = 0;
+            for (int i = 0; i < goals.size; i++) {
+                int node = goals.get(i);
+                goalCost[node] = Integer.MAX_VALUE;
+                goalClusters[clusterOf(nodeCell[node]) >>> 6] = 0;
+            }
+            goals.size = 0;
+            entered.size = 0;
+            for (int i = 0; i < used; i++)
+                if (open[i] != null)
+                    open[i].size = 0;
+            used = 0;
+            waiting = 0;
+            last = -1;
+            best = Integer.MAX_VALUE;
+        }
+    }
+
+    /**
+     * A growing list of ints
+     */
+    private static final class IntList {
+        int[] values = new int[8];
+        int size;
+
+        void add(int value) {
+            if (size == values.length)
+                values = Arrays.copyOf(values, size * 2);
+            values[size++] = value;
+        }
+
+        int get(int i) {
+            return values[i];
+        }
+    }
+}
@@ -0,0 +1,168 @@
+package GameControl;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+/**
+ * The Journal records games as they are played to a file, so they can be read
+ * back with a Replayer to check what happened or to rebuild a game part way
+ * through. A GameEngine given a journal records the deal when it starts and the
+ * events of every command after.
+ * <p>
+ * The file is a short header followed by records of 12 bytes:
+ * <pre>
+ * kind      1 byte   the Event.Type ordinal + 1, or GAME or PLAYER, 0 past the end
+ * player    1 byte   index of the player in the game, 255 for none
+ * other     1 byte   index of the other player, or the length of a PLAYER's name
+ * character 1 byte   card ids, 255 for none
+ * weapon    1 byte
+ * room      1 byte
+ * card      1 byte
+ * extra     1 byte   the number of players of a GAME, the token of a PLAYER
+ * value     4 bytes  the value of the event, where a player moved to as x &lt;&lt; 16 | y,
+ *                    the solution of a GAME or the hand of a PLAYER as masks of card ids
+ * </pre>
+ * A game starts with a GAME record and a PLAYER record for each player, each
+ * followed by their name padded out to whole records.
+ * <p>
+ * The file is mapped into memory a megabyte at a time, so recording an event
+ * only copies it into memory and never waits for the disk. The part of the last
+ * megabyte that has not been written is left as zeros, which marks the end. A
+ * journal is written by one game at a time, on the thread playing it.
+ */
+public class Journal implements Closeable {
+
+    static final int MAGIC = 0x434C444A; // CLDJ
+    static final int VERSION = 1;
+    static final int HEADER = 8;
+    static final int RECORD = 12;
+
+    static final int GAME = 0x40;
+    static final int PLAYER = 0x41;
+    static final int NONE = 0xFF;
+
+    // how much of the file is mapped at once
+    private static final int CHUNK = 1 << 20;
+
+    private final FileChannel channel;
+    private MappedByteBuffer buffer;
+    private long mapped; // where in the file the buffer starts
+    private long records;
+
+    private List<Player> players; // of the game being recorded
+
+    /**
+     * Opens the journal, adding to the end of it if it already has games in it
+     */
+    public Journal(Path file) throws IOException {
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        if (channel.size() == 0) {
+            map(0);
+            buffer.putInt(MAGIC).putInt(VERSION);
+        } else {
+            records = new Replayer(channel).count();
+            map(HEADER + records * RECORD);
+        }
+    }
+
+    /**
+     * The number of records written, the next record has this number
+     */
+    public long getRecords() {
+        return records;
+    }
+
+    /**
+     * Records the players and the deal of a new game
+     */
+    void startGame(List<Player> players, CardSet solution) {
+        this.players = players;
+        put(GAME, NONE, NONE, NONE, NONE, NONE, NONE, players.size(), solution.getMask());
+        for (int i = 0; i < players.size(); i++) {
+            Player p = players.get(i);
+            byte[] name = p.getName().getBytes(StandardCharsets.UTF_8);
+            int length = Math.min(name.length, 255);
+            put(PLAYER, i, length, NONE, NONE, NONE, NONE, p.getToken().ordinal(), p.getHand().getMask());
+            int slots = (length + RECORD - 1) / RECORD;
+            ensure(slots * RECORD);
+            buffer.put(name, 0, length);
+            buffer.position(buffer.position() + slots * RECORD - length);
+            records += slots;
+        }
+    }
+
+    /**
+     * Records the events of a command
+     */
+    void append(List<Event> events) {
+        for (Event e : events) {
+            int value = e.getValue();
+            switch (e.getType()) {
+                case MOVED:
+                case ENTERED_ROOM:
+                case PLACED_IN_ROOM:
+                    // the events of a command move a player at most once, so where they are now is where they went
+                    Position p = e.getPlayer().getPosition();
+                    value = p.x << 16 | p.y;
+                    break;
+                default:
+                    break;
+            }
+            put(e.getType().ordinal() + 1, index(e.getPlayer()), index(e.getOther()), id(e.getCharacter()),
+                    id(e.getWeapon()), id(e.getRoom()), id(e.getCard()), 0, value);
+        }
+    }
+
+    private int index(Player p) {
+        return p == null ? NONE : players.indexOf(p);
+    }
+
+    private static int id(Card c) {
+        return c == null ? NONE : c.getId();
+    }
+
+    private void put(int kind, int player, int other, int character, int weapon, int room, int card, int extra, int value) {
+        ensure(RECORD);
+        buffer.put((byte) kind).put((byte) player).put((byte) other).put((byte) character)
+                .put((byte) weapon).put((byte) room).put((byte) card).put((byte) extra).putInt(value);
+        records++;
+    }
+
+    /**
+     * Maps the next chunk of the file once there is not room for the bytes in this one
+     */
+    private void ensure(int bytes) {
+        if (buffer.remaining() < bytes)
+            map(mapped + buffer.position());
+    }
+
+    private void map(long position) {
+        try {
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, position, CHUNK);
+            buffer.order(ByteOrder.BIG_ENDIAN);
+            mapped = position;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Makes sure everything recorded is on the disk
+     */
+    public void force() {
+        buffer.force();
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
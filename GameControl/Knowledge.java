@@ -0,0 +1,318 @@
+package GameControl;
+
+import java.util.Arrays;
+
+/**
+ * Knowledge is what one player knows about where every card is. For each owner,
+ * the players in seating order followed by the solution envelope, it keeps two
+ * bit planes of card ids: the cards the owner is known to have and the cards the
+ * owner is known not to have. Any card in neither is unknown.
+ * <p>
+ * When a card is shown to somebody else we only learn that the player showing it
+ * has one of the suggested cards, these are kept as constraints until enough is
+ * known to settle them. Every update propagates its consequences straight away:
+ * a card has only one owner, each player holds exactly their hand size, and the
+ * envelope holds exactly one card of each category.
+ */
+public class Knowledge {
+
+    public static final int UNKNOWN = 0;
+    public static final int HAS = 1;
+    public static final int HASNT = 2;
+
+    private static final int ALL_CARDS = Card.CHARACTERS | Card.WEAPONS | Card.ROOMS;
+    private static final int[] CATEGORIES = {Card.CHARACTERS, Card.WEAPONS, Card.ROOMS};
+
+    private final int players;
+    private final int[] handSizes;
+    private final int[] has;
+    private final int[] hasnt;
+
+    // "owner has at least one of cards" constraints that are not yet settled
+    private int[] constraintOwners = new int[8];
+    private int[] constraintCards = new int[8];
+    private int constraints;
+
+    /**
+     * @param handSizes the number of cards each player was dealt, in seating order
+     */
+    public Knowledge(int[] handSizes) {
+        this.players = handSizes.length;
+        this.handSizes = handSizes.clone();
+        this.has = new int[players + 1];
+        this.hasnt = new int[players + 1];
+    }
+
+    /**
+     * Sets up the knowledge of a player, who knows their own hand
+     *
+     * @param self the seat of the player this knowledge belongs to
+     */
+    public Knowledge(int[] handSizes, int self, CardSet hand) {
+        this(handSizes);
+        if (hand.size() != handSizes[self])
+            throw new IllegalArgumentException("Hand does not match the hand size of player " + self);
+        setHas(self, hand.getMask());
+        setHasnt(self, ALL_CARDS & ~hand.getMask());
+    }
+
+    /**
+     * A copy of other which can be added to without changing it
+     */
+    public Knowledge(Knowledge other) {
+        this.players = other.players;
+        this.handSizes = other.handSizes;
+        this.has = other.has.clone();
+        this.hasnt = other.hasnt.clone();
+        this.constraintOwners = other.constraintOwners.clone();
+        this.constraintCards = other.constraintCards.clone();
+        this.constraints = other.constraints;
+    }
+
+    /**
+     * Knowledge as it was saved in a Snapshot, which has already had everything
+     * propagated so is taken as it is
+     */
+    Knowledge(int[] handSizes, int[] has, int[] hasnt, int[] constraintOwners, int[] constraintCards) {
+        this.players = handSizes.length;
+        this.handSizes = handSizes;
+        this.has = has;
+        this.hasnt = hasnt;
+        this.constraints = constraintOwners.length;
+        this.constraintOwners = Arrays.copyOf(constraintOwners, Math.max(8, constraints));
+        this.constraintCards = Arrays.copyOf(constraintCards, Math.max(8, constraints));
+    }
+
+    /*********************************/
+    /*          OBSERVING            */
+    /*********************************/
+
+    /**
+     * The owner is known to hold these cards
+     */
+    public void setHas(int owner, int cards) {
+        if ((has[owner] | cards) != has[owner]) {
+            has[owner] |= cards;
+            propagate();
+        }
+    }
+
+    /**
+     * The owner is known not to hold any of these cards, such as a player who
+     * could not answer a suggestion
+     */
+    public void setHasnt(int owner, int cards) {
+        if ((hasnt[owner] | cards) != hasnt[owner]) {
+            hasnt[owner] |= cards;
+            propagate();
+        }
+    }
+
+    /**
+     * The owner showed somebody else one of these cards, we just do not know which
+     */
+    public void setShownOneOf(int owner, int cards) {
+        if (constraints == constraintOwners.length) {
+            constraintOwners = Arrays.copyOf(constraintOwners, constraints * 2);
+            constraintCards = Arrays.copyOf(constraintCards, constraints * 2);
+        }
+        constraintOwners[constraints] = owner;
+        constraintCards[constraints] = cards;
+        constraints++;
+        propagate();
+    }
+
+    /**
+     * Apply everything that follows from what we know until nothing more changes
+     */
+    private void propagate() {
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+
+            // a card has one owner, so every other owner does not have it
+            int owned = 0;
+            for (int o = 0; o <= players; o++)
+                owned |= has[o];
+            for (int o = 0; o <= players; o++) {
+                int others = owned & ~has[o];
+                if ((hasnt[o] | others) != hasnt[o]) {
+                    hasnt[o] |= others;
+                    changed = true;
+                }
+            }
+
+            // a card every owner but one does not have must belong to that owner
+            for (int o = 0; o <= players; o++) {
+                int elsewhere = ALL_CARDS;
+                for (int other = 0; other <= players; other++)
+                    if (other != o) elsewhere &= hasnt[other];
+                int forced = elsewhere & ~hasnt[o] & ~has[o];
+                if (forced != 0) {
+                    has[o] |= forced;
+                    changed = true;
+                }
+            }
+
+            // players hold exactly their hand size
+            for (int o = 0; o < players; o++)
+                changed |= fill(o, ALL_CARDS, handSizes[o]);
+
+            // the envelope holds exactly one card of every category
+            for (int category : CATEGORIES)
+                changed |= fill(players, category, 1);
+
+            changed |= settleConstraints();
+        }
+    }
+
+    /**
+     * When an owner has all the cards they can hold out of a set, they have none
+     * of the rest, and when only that many cards are left possible they have them all
+     */
+    private boolean fill(int owner, int cards, int count) {
+        int known = Integer.bitCount(has[owner] & cards);
+        int possible = cards & ~hasnt[owner];
+        if (known == count && (possible & ~has[owner]) != 0) {
+            hasnt[owner] |= possible & ~has[owner];
+            return true;
+        }
+        if (Integer.bitCount(possible) == count && (possible & ~has[owner]) != 0) {
+            has[owner] |= possible;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Drops constraints that are now satisfied and turns those down to one
+     * possible card into a known card
+     */
+    private boolean settleConstraints() {
+        boolean changed = false;
+        for (int i = 0; i < constraints; i++) {
+            int owner = constraintOwners[i];
+            int cards = constraintCards[i];
+            int possible = cards & ~hasnt[owner];
+            boolean settled = (cards & has[owner]) != 0;
+            if (!settled && Integer.bitCount(possible) == 1) {
+                has[owner] |= possible;
+                settled = changed = true;
+            }
+            if (settled) {
+                constraints--;
+                constraintOwners[i] = constraintOwners[constraints];
+                constraintCards[i] = constraintCards[constraints];
+                i--;
+            }
+        }
+        return changed;
+    }
+
+    /*********************************/
+    /*          QUERIES              */
+    /*********************************/
+
+    /**
+     * Checks that there could still be a deal that agrees with everything we know.
+     * A false answer always means there is none, but a true answer only means
+     * none of the rules have been broken yet, the DeductionSolver finds out for sure
+     */
+    public boolean isConsistent() {
+        int nowhere = ALL_CARDS;
+        for (int o = 0; o <= players; o++) {
+            if ((has[o] & hasnt[o]) != 0) return false;
+            nowhere &= hasnt[o];
+        }
+        if (nowhere != 0) return false;
+        for (int o = 0; o < players; o++)
+            if (Integer.bitCount(has[o]) > handSizes[o] || Integer.bitCount(ALL_CARDS & ~hasnt[o]) < handSizes[o])
+                return false;
+        for (int category : CATEGORIES)
+            if (Integer.bitCount(has[players] & category) > 1 || (category & ~hasnt[players]) == 0)
+                return false;
+        for (int i = 0; i < constraints; i++)
+            if ((constraintCards[i] & ~hasnt[constraintOwners[i]]) == 0)
+                return false;
+        return true;
+    }
+
+    /**
+     * The cards we do not know the owner of yet
+     */
+    public int getUnplaced() {
+        int placed = 0;
+        for (int o = 0; o <= players; o++)
+            placed |= has[o];
+        return ALL_CARDS & ~placed;
+    }
+
+    /**
+     * @return the owner known to have the card, or -1 if we do not know
+     */
+    public int ownerOf(int card) {
+        for (int o = 0; o <= players; o++)
+            if ((has[o] & (1 << card)) != 0)
+                return o;
+        return -1;
+    }
+
+    /**
+     * The number of players, the envelope is the owner after the last player
+     */
+    public int getPlayers() {
+        return players;
+    }
+
+    public int getEnvelope() {
+        return players;
+    }
+
+    public int getHandSize(int owner) {
+        return handSizes[owner];
+    }
+
+    /**
+     * @return HAS, HASNT or UNKNOWN
+     */
+    public int state(int card, int owner) {
+        int bit = 1 << card;
+        if ((has[owner] & bit) != 0) return HAS;
+        if ((hasnt[owner] & bit) != 0) return HASNT;
+        return UNKNOWN;
+    }
+
+    /**
+     * The cards the owner is known to have
+     */
+    public int getHas(int owner) {
+        return has[owner];
+    }
+
+    /**
+     * The cards the owner is known not to have
+     */
+    public int getHasnt(int owner) {
+        return hasnt[owner];
+    }
+
+    /**
+     * The cards that could still be in the envelope
+     */
+    public int getPossibleSolution() {
+        return ALL_CARDS & ~hasnt[players];
+    }
+
+    public int getConstraintCount() {
+        return constraints;
+    }
+
+    public int getConstraintOwner(int i) {
+        return constraintOwners[i];
+    }
+
+    public int getConstraintCards(int i) {
+        return constraintCards[i];
+    }
+
+}
@@ -0,0 +1,223 @@
+package GameControl;
+
+import java.util.Arrays;
+
+/**
+ * A MoveTable holds the answer to "where can I go?" for every square a player
+ * can stand on, every room they can be in and every roll of the dice, so asking
+ * it is an array read rather than a search. For each it has the rooms that can
+ * be entered, as nine bits with one for each room card, and for each room the
+ * square the roll takes the player to that is nearest it. For the rooms they can
+ * enter that square is the door they go in by.
+ * <p>
+ * A table only depends on the layout of the board. The table of cluedoBoardDraw.txt
+ * is made once and kept in a file by the MoveTableCompiler, other boards make
+ * their own the first time they are asked.
+ * <p>
+ * Squares are indexed row by row, cell = x * columns + y.
+ */
+public class MoveTable {
+
+    public static final int NO_CELL = 0xFFFF;
+
+    private static final int MIN_ROLL = GameEngine.MIN_ROLL;
+    private static final int MAX_ROLL = GameEngine.MAX_ROLL;
+    private static final int ROLLS = MAX_ROLL - MIN_ROLL + 1;
+    private static final int FIRST_ROOM = Integer.numberOfTrailingZeros(Card.ROOMS);
+    private static final int ROOMS = Integer.bitCount(Card.ROOMS);
+    // each answer is the mask of rooms followed by the square nearest each room
+    private static final int ENTRY = 1 + ROOMS;
+    private static final char NO_ROW = 0xFFFF;
+
+    private final char[] rowOf; // the row of the table for each square, NO_ROW for those we cannot stand on
+    private final int squares; // the rows for the squares come first, then one for each room card
+    private final char[] entries;
+
+    // the room masks again, by square rather than row and sixteen to a square, so asking is one array read
+    private final char[] rooms;
+
+    /**
+     * Works the table out for the board
+     */
+    public MoveTable(CompiledBoard board) {
+        this.rowOf = rows(board);
+        this.squares = count(rowOf);
+        this.entries = new char[(squares + ROOMS) * ROLLS * ENTRY];
+        // the rows of room cards that are not on the board are left with nowhere to go
+        Arrays.fill(entries, (char) NO_CELL);
+        for (int at = 0; at < entries.length; at += ENTRY)
+            entries[at] = 0;
+
+        int[][] distances = new int[ROOMS][];
+        for (Room room : board.getRooms())
+            distances[room.getId() - FIRST_ROOM] = distances(board, room);
+
+        Reachability reachability = new Reachability(board);
+        for (int cell = 0; cell < rowOf.length; cell++) {
+            if (rowOf[cell] != NO_ROW)
+                fill(rowOf[cell], reachability.from(cell), distances);
+        }
+        for (Room room : board.getRooms())
+            fill(squares + room.getId() - FIRST_ROOM, reachability.from(room), distances);
+        this.rooms = masks();
+    }
+
+    /**
+     * A table that has already been worked out for the board, as getEntries gave it
+     */
+    public MoveTable(CompiledBoard board, char[] entries) {
+        this.rowOf = rows(board);
+        this.squares = count(rowOf);
+        if (entries.length != (squares + ROOMS) * ROLLS * ENTRY)
+            throw new IllegalArgumentException("The move table is not the right size for the board");
+        this.entries = entries.clone();
+        this.rooms = masks();
+    }
+
+    private char[] masks() {
+        char[] masks = new char[(rowOf.length + ROOMS) << 4];
+        for (int cell = 0; cell < rowOf.length + ROOMS; cell++) {
+            int row = cell < rowOf.length ? rowOf[cell] : squares + cell - rowOf.length;
+            if (row == NO_ROW)
+                continue;
+            for (int roll = MIN_ROLL; roll <= MAX_ROLL; roll++)
+                masks[cell << 4 | roll] = entries[index(row, roll)];
+        }
+        return masks;
+    }
+
+    /**
+     * Checks whether the board is small enough for every square to fit in a table entry
+     */
+    public static boolean fits(CompiledBoard board) {
+        return board.size() <= NO_CELL;
+    }
+
+    private static char[] rows(CompiledBoard board) {
+        if (!fits(board))
+            throw new IllegalArgumentException("The board is too big for a move table");
+        char[] rows = new char[board.size()];
+        char row = 0;
+        for (int cell = 0; cell < rows.length; cell++)
+            rows[cell] = board.isWalkable(cell) ? row++ : NO_ROW;
+        return rows;
+    }
+
+    private static int count(char[] rows) {
+        int n = 0;
+        for (char row : rows) {
+            if (row != NO_ROW)
+                n++;
+        }
+        return n;
+    }
+
+    /**
+     * Steps from every square to the nearest door of the room, -1 where it cannot be walked to
+     */
+    private static int[] distances(CompiledBoard board, Room room) {
+        int[] doors = new int[room.getDoors().size()];
+        int n = 0;
+        for (Door door : room.getDoors())
+            doors[n++] = board.cell(door.getPos());
+        return board.getGraph().distances(doors);
+    }
+
+    /**
+     * The answers for one row. The squares of the reach come nearest first, so
+     * the nearest square to each room is kept as the roll grows.
+     */
+    private void fill(int row, Reachability.Reach reach, int[][] distances) {
+        int[] nearest = new int[ROOMS];
+        int[] landing = new int[ROOMS];
+        Arrays.fill(nearest, Integer.MAX_VALUE);
+        Arrays.fill(landing, NO_CELL);
+        int i = 0;
+        for (int roll = MIN_ROLL; roll <= MAX_ROLL; roll++) {
+            for (int n = reach.getCells(roll); i < n; i++) {
+                int cell = reach.getCell(i);
+                for (int room = 0; room < ROOMS; room++) {
+                    int d = distances[room] == null ? -1 : distances[room][cell];
+                    if (d >= 0 && d < nearest[room]) {
+                        nearest[room] = d;
+                        landing[room] = cell;
+                    }
+                }
+            }
+            int at = index(row, roll);
+            int rooms = reach.getRooms(roll) >>> FIRST_ROOM;
+            entries[at] = (char) rooms;
+            for (int room = 0; room < ROOMS; room++) {
+                // a room we are leaving is not somewhere we can go
+                boolean own = row >= squares && row - squares == room;
+                entries[at + 1 + room] = own ? NO_CELL : (char) landing[room];
+            }
+        }
+    }
+
+    private int index(int row, int roll) {
+        return (row * ROLLS + roll - MIN_ROLL) * ENTRY;
+    }
+
+    private int row(int cell) {
+        char row = cell >= 0 && cell < rowOf.length ? rowOf[cell] : NO_ROW;
+        if (row == NO_ROW)
+            throw new IllegalArgumentException("A player cannot stand on cell " + cell);
+        return row;
+    }
+
+    private int row(Room room) {
+        int id = room.getId() - FIRST_ROOM;
+        if (id < 0 || id >= ROOMS)
+            throw new IllegalArgumentException(room + " is not a room");
+        return squares + id;
+    }
+
+    private static int checkRoll(int roll) {
+        if (roll < MIN_ROLL || roll > MAX_ROLL)
+            throw new IllegalArgumentException("A roll of " + roll + " is not between " + MIN_ROLL + " and " + MAX_ROLL);
+        return roll;
+    }
+
+    /*********************************/
+    /*          LOOKING UP           */
+    /*********************************/
+
+    /**
+     * @return the card ids of the rooms a player on the square can enter with the roll, as a mask,
+     * none for squares that cannot be stood on
+     */
+    public int getRooms(int cell, int roll) {
+        if (cell < 0 || cell >= rowOf.length)
+            throw new IllegalArgumentException("There is no cell " + cell + " on the board");
+        return rooms[cell << 4 | checkRoll(roll)] << FIRST_ROOM;
+    }
+
+    /**
+     * @return the card ids of the rooms a player in the room can enter with the roll, as a mask
+     */
+    public int getRooms(Room from, int roll) {
+        return rooms[rowOf.length + row(from) - squares << 4 | checkRoll(roll)] << FIRST_ROOM;
+    }
+
+    /**
+     * @return the square nearest the room a player on the square can get to with the roll, or NO_CELL if there is none
+     */
+    public int getLanding(int cell, int roll, Room room) {
+        return entries[index(row(cell), checkRoll(roll)) + 1 + row(room) - squares];
+    }
+
+    /**
+     * @return the square nearest the room a player in the room can get to with the roll, or NO_CELL if there is none
+     */
+    public int getLanding(Room from, int roll, Room room) {
+        return entries[index(row(from), checkRoll(roll)) + 1 + row(room) - squares];
+    }
+
+    /**
+     * The table as it is written out, the answers for each square then each room in turn
+     */
+    public char[] getEntries() {
+        return entries.clone();
+    }
+}
@@ -0,0 +1,91 @@
+package GameControl;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Occupancy is the squares of a game that have a token standing on them, one
+ * bit a square. It is kept up to date by the players themselves as they move,
+ * enter and leave rooms, so asking whether a square is taken is one array read.
+ * Tokens in a room sit on one of its doors but take up no square, so they never
+ * get in anyone's way.
+ * <p>
+ * Squares are indexed row by row, cell = x * columns + y.
+ */
+public class Occupancy {
+
+    private final int cols;
+    private final long[] bits;
+    private final List<Player> players = new ArrayList<>();
+
+    public Occupancy(CompiledBoard board) {
+        this.cols = board.cols();
+        this.bits = new long[(board.size() + 63) >>> 6];
+    }
+
+    /**
+     * Puts the players token on the board, from then on it is kept up to date as they move
+     */
+    public void add(Player player) {
+        if (players.contains(player))
+            throw new IllegalArgumentException(player + " is already on the board");
+        players.add(player);
+        player.setOccupancy(this);
+        if (player.getRoom() == null)
+            arrived(player.getPosition());
+    }
+
+    public boolean isOccupied(int cell) {
+        return (bits[cell >>> 6] & 1L << cell) != 0;
+    }
+
+    public boolean isOccupied(Position p) {
+        return isOccupied(cell(p));
+    }
+
+    /**
+     * Whether a token other than the player's stands on a square, and so can be in their way
+     */
+    public boolean hasOthers(Player player) {
+        for (Player other : players) {
+            if (other != player && other.getRoom() == null)
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * @return the number of squares with a token on them
+     */
+    public int count() {
+        int n = 0;
+        for (long word : bits)
+            n += Long.bitCount(word);
+        return n;
+    }
+
+    /**
+     * A token has stepped onto the square
+     */
+    void arrived(Position p) {
+        int cell = cell(p);
+        bits[cell >>> 6] |= 1L << cell;
+    }
+
+    /**
+     * A token has stepped off the square, or gone into a room from it. The square
+     * is only free if no other token is left on it.
+     */
+    void left(Position p) {
+        for (Player other : players) {
+            if (other.getRoom() == null && p.equals(other.getPosition()))
+                return;
+        }
+        int cell = cell(p);
+        bits[cell >>> 6] &= ~(1L << cell);
+    }
+
+    private int cell(Position p) {
+        return p.x * cols + p.y;
+    }
+}
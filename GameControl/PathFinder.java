@@ -0,0 +1,387 @@
+package GameControl;
+
+import java.util.Arrays;
+
+/**
+ * PathFinder is our A* search. Squares are referred to by their int cell index
+ * (cell = x * columns + y) and all the working memory, the open list heap, the
+ * path costs and the visited bitmap, is kept in arrays that belong to the
+ * calling thread and are reused for every search, so a search allocates nothing.
+ * On big boards the costs and bitmaps are kept in pages of the board that are
+ * only made when a search first comes to them, so a thread only holds memory for
+ * the parts of the board its searches go to, and drops it after a search that
+ * went over much of the board.
+ * <p>
+ * Nodes are ordered by f = g + h where h is the manhattan distance to the goal,
+ * or to the box around the goals when there are several, which never over
+ * estimates on our grid, so the paths returned are shortest paths.
+ * One PathFinder can be shared between threads.
+ */
+public class PathFinder {
+
+    public static final int NO_PATH = -1;
+
+    // up to this many goals the heuristic is the distance to the nearest, past it to the box around them
+    private static final int FEW_GOALS = 8;
+
+    private final int rows;
+    private final int cols;
+    private final BoardGraph graph;
+    private final CompiledBoard board; // for the positions of squares
+
+    private final ThreadLocal<Scratch> scratch = new ThreadLocal<Scratch>() {
+        @Override
+        protected Scratch initialValue() {
+            return new Scratch(rows * cols);
+        }
+    };
+
+    public PathFinder(CompiledBoard board) {
+        this.board = board;
+        this.rows = board.rows();
+        this.cols = board.cols();
+        this.graph = board.getGraph();
+    }
+
+    /**
+     * Search for the shortest path between two squares. The cells of the path are
+     * written into the given array, starting with the first step and ending on the
+     * goal, the start square itself is not included.
+     *
+     * @param from the cell we start on
+     * @param to   the cell we want to get to
+     * @param path where to write the path, may be null if only the length is wanted, if the
+     *             path is longer than the array only its first steps are written
+     * @return the number of steps in the path, or NO_PATH if the goal cannot be reached
+     */
+    public int findPath(int from, int to, int[] path) {
+        return findPath(from, to, path, null);
+    }
+
+    /**
+     * Search for the shortest path between two squares that does not cross a
+     * square with a token on it, the goal included
+     *
+     * @param occupied the tokens to walk round, may be null to walk through them
+     */
+    public int findPath(int from, int to, int[] path, Occupancy occupied) {
+        Scratch s = scratch.get();
+        s.goal[0] = to;
+        return findNearest(s, from, s.goal, path, occupied);
+    }
+
+    /**
+     * Search for the shortest path to whichever of the squares is nearest, round the
+     * tokens as findPath does, the index of the one found is then given by getTarget
+     *
+     * @return the number of steps in the path, or NO_PATH if none of the squares can be reached
+     */
+    public int findNearest(int from, int[] targets, int[] path, Occupancy occupied) {
+        return findNearest(scratch.get(), from, targets, path, occupied);
+    }
+
+    private int findNearest(Scratch s, int from, int[] targets, int[] path, Occupancy occupied) {
+        if (!contains(from))
+            throw new IllegalArgumentException("Path finder was given a square that is not on the board");
+        boolean reachable = false;
+        for (int target : targets) {
+            if (!contains(target))
+                throw new IllegalArgumentException("Path finder was given a square that is not on the board");
+            reachable |= target == from || graph.connected(from, target);
+        }
+
+        s.target = -1;
+        // squares in separate parts of the board are turned away without a search
+        if (!reachable) {
+            s.expanded = 0;
+            return NO_PATH;
+        }
+        s.targets = targets;
+        s.top = s.left = Integer.MAX_VALUE;
+        s.bottom = s.right = Integer.MIN_VALUE;
+        for (int target : targets) {
+            s.mark(target);
+            s.top = Math.min(s.top, target / cols);
+            s.bottom = Math.max(s.bottom, target / cols);
+            s.left = Math.min(s.left, target % cols);
+            s.right = Math.max(s.right, target % cols);
+        }
+        try {
+            int goal = search(s, from, occupied);
+            if (goal == NO_PATH)
+                return NO_PATH;
+            int t = 0;
+            while (targets[t] != goal)
+                t++;
+            s.target = t;
+
+            int length = s.cost(goal);
+            if (path != null) {
+                for (int cell = goal, i = length - 1; i >= 0; cell = s.parent(cell), i--)
+                    if (i < path.length)
+                        path[i] = cell;
+            }
+            return length;
+        } finally {
+            for (int target : targets)
+                s.unmark(target);
+            s.reset();
+        }
+    }
+
+    /**
+     * The index in the targets of the square the last search on this thread found
+     */
+    public int getTarget() {
+        return scratch.get().target;
+    }
+
+    /**
+     * The number of nodes the last search on this thread took off the open list
+     */
+    public int getExpandedNodes() {
+        return scratch.get().expanded;
+    }
+
+    public int cell(Position p) {
+        return p.x * cols + p.y;
+    }
+
+    public Position position(int cell) {
+        return board.position(cell);
+    }
+
+    /**
+     * Return the number of squares on the board
+     */
+    public int size() {
+        return rows * cols;
+    }
+
+    private boolean contains(int cell) {
+        return cell >= 0 && cell < rows * cols;
+    }
+
+    /**
+     * The manhattan distance to the nearest goal, or when there are many to the box around them
+     */
+    private int heuristic(Scratch s, int cell) {
+        int x = cell / cols;
+        int y = cell % cols;
+        if (s.targets.length > FEW_GOALS)
+            return Math.max(0, s.top - x) + Math.max(0, x - s.bottom) + Math.max(0, s.left - y) + Math.max(0, y - s.right);
+        int h = Integer.MAX_VALUE;
+        for (int goal : s.targets)
+            h = Math.min(h, Math.abs(x - goal / cols) + Math.abs(y - goal % cols));
+        return h;
+    }
+
+    /**
+     * The A* logic itself, returns the first of the goals taken off the open list
+     */
+    private int search(Scratch s, int start, Occupancy occupied) {
+        s.expanded = 0;
+        s.touch(start, 0, start);
+        s.push(start, heuristic(s, start), 0);
+
+        while (s.size > 0) {
+            int cell = s.pop();
+            if (s.isClosed(cell))
+                continue; // an older entry for a square we have since reached more cheaply
+            s.close(cell);
+            s.expanded++;
+            if (s.isGoal(cell))
+                return cell;
+
+            int g = s.cost(cell) + 1;
+            for (int e = graph.first(cell), end = graph.first(cell + 1); e < end; e++) {
+                int next = graph.target(e);
+                if (occupied == null || !occupied.isOccupied(next))
+                    relax(s, cell, next, g);
+            }
+        }
+        return NO_PATH;
+    }
+
+    private void relax(Scratch s, int parent, int next, int g) {
+        if (s.isClosed(next) || g >= s.cost(next))
+            return;
+        s.touch(next, g, parent);
+        s.push(next, g + heuristic(s, next), g);
+    }
+
+    /**
+     * The working memory for one thread. Costs start at MAX_VALUE, each search
+     * remembers the squares it touched and puts them back afterwards so the
+     * arrays never need clearing in full.
+     */
+    private static class Scratch {
+        // a small board is one page, a big one is cut into pages of this many squares
+        static final int PAGE_BITS = 10;
+        static final int ONE_PAGE = 1 << 16;
+        // the most pages kept after a search, about 8MB on a big board
+        static final int KEEP_PAGES = 1 << 10;
+
+        final Page[] pages;
+        final int bits;
+        final int mask;
+        final int cells;
+        int made;
+
+        int[] touched;
+        int touchedCount;
+
+        // binary heap of cells, ordered by f then by the larger g
+        int[] heap;
+        long[] keys;
+        int size;
+
+        // the goals, and the box around them
+        final int[] goal = new int[1]; // the goal of a search for one square
+        int[] targets;
+        int top;
+        int bottom;
+        int left;
+        int right;
+        int target;
+        int expanded;
+
+        Scratch(int cells) {
+            this.cells = cells;
+            this.bits = cells <= ONE_PAGE ? 31 : PAGE_BITS;
+            this.mask = bits == 31 ? Integer.MAX_VALUE : (1 << bits) - 1;
+            this.pages = new Page[(int) (((long) cells + mask) >>> bits)];
+            // a search seldom touches the whole of a large board, so these grow as needed
+            touched = new int[Math.min(cells, 1 << 12)];
+            heap = new int[Math.max(16, Math.min(cells, 1 << 12))];
+            keys = new long[heap.length];
+        }
+
+        /**
+         * The page of the square, made if no search has come to it yet
+         */
+        Page page(int cell) {
+            Page page = pages[cell >>> bits];
+            if (page == null) {
+                int first = cell & ~mask;
+                page = pages[cell >>> bits] = new Page(Math.min(mask, cells - first - 1) + 1);
+                made++;
+            }
+            return page;
+        }
+
+        int cost(int cell) {
+            Page page = pages[cell >>> bits];
+            return page == null ? Integer.MAX_VALUE : page.cost[cell & mask];
+        }
+
+        int parent(int cell) {
+            return pages[cell >>> bits].parent[cell & mask];
+        }
+
+        void touch(int cell, int g, int from) {
+            Page page = page(cell);
+            int i = cell & mask;
+            if (page.cost[i] == Integer.MAX_VALUE) {
+                if (touchedCount == touched.length)
+                    touched = Arrays.copyOf(touched, touchedCount * 2);
+                touched[touchedCount++] = cell;
+            }
+            page.cost[i] = g;
+            page.parent[i] = from;
+        }
+
+        boolean isClosed(int cell) {
+            Page page = pages[cell >>> bits];
+            return page != null && (page.closed[(cell & mask) >>> 6] & (1L << cell)) != 0;
+        }
+
+        void close(int cell) {
+            pages[cell >>> bits].closed[(cell & mask) >>> 6] |= 1L << cell;
+        }
+
+        boolean isGoal(int cell) {
+            Page page = pages[cell >>> bits];
+            return page != null && (page.goals[(cell & mask) >>> 6] & (1L << cell)) != 0;
+        }
+
+        void mark(int goal) {
+            page(goal).goals[(goal & mask) >>> 6] |= 1L << goal;
+        }
+
+        void unmark(int goal) {
+            pages[goal >>> bits].goals[(goal & mask) >>> 6] = 0;
+        }
+
+        void push(int cell, int f, int g) {
+            if (size == heap.length) {
+                heap = Arrays.copyOf(heap, size * 2);
+                keys = Arrays.copyOf(keys, size * 2);
+            }
+            // ties on f are broken towards the deeper node, which is closer to the goal
+            long key = ((long) f << 32) | (Integer.MAX_VALUE - g);
+            int i = size++;
+            while (i > 0) {
+                int up = (i - 1) >>> 1;
+                if (keys[up] <= key) break;
+                heap[i] = heap[up];
+                keys[i] = keys[up];
+                i = up;
+            }
+            heap[i] = cell;
+            keys[i] = key;
+        }
+
+        int pop() {
+            int top = heap[0];
+            int cell = heap[--size];
+            long key = keys[size];
+            int i = 0;
+            while (true) {
+                int child = 2 * i + 1;
+                if (child >= size) break;
+                if (child + 1 < size && keys[child + 1] < keys[child]) child++;
+                if (keys[child] >= key) break;
+                heap[i] = heap[child];
+                keys[i] = keys[child];
+                i = child;
+            }
+            heap[i] = cell;
+            keys[i] = key;
+            return top;
+        }
+
+        void reset() {
+            for (int i = 0; i < touchedCount; i++) {
+                int cell = touched[i];
+                Page page = pages[cell >>> bits];
+                page.cost[cell & mask] = Integer.MAX_VALUE;
+                page.closed[(cell & mask) >>> 6] = 0;
+            }
+            touchedCount = 0;
+            size = 0;
+            if (made > KEEP_PAGES) {
+                Arrays.fill(pages, null);
+                made = 0;
+            }
+        }
+    }
+
+    /**
+     * The costs, parents and bitmaps of a run of squares
+     */
+    private static class Page {
+        final int[] cost;
+        final int[] parent;
+        final long[] closed;
+        final long[] goals;
+
+        Page(int cells) {
+            cost = new int[cells];
+            parent = new int[cells];
+            closed = new long[(cells + 63) >>> 6];
+            goals = new long[(cells + 63) >>> 6];
+            Arrays.fill(cost, Integer.MAX_VALUE);
+        }
+    }
+}
@@ -2,9 +2,7 @@ package GameControl;
 
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashSet;
 import java.util.List;
-import java.util.Set;
 
 /**
  * Each player is a character in the game of cluedo. A player will
@@ -19,20 +17,24 @@ public class Player {
     public final int playerNumber;
     // the players position on the board
     private Position position;
-    private List<Card> hand; // our given cards at the beginning the ones we show to other players
-    private Set<Card> inventory; //all cards seen and owned by current player
+    private CardSet hand; // our given cards at the beginning the ones we show to other players
+    private List<Card> dealt; // our hand in the order it was dealt to us
+    private CardSet inventory; //all cards seen and owned by current player
     private Token token; // the token a player will play during the game
     private String name;
     private Room room; // the current room the player is in
     private boolean wasMoved = false; // the player was moved to a room
+    private Knowledge knowledge; // what we know about who holds every card, once the game starts
+    private Occupancy occupancy; // the squares taken by the tokens of our game, once we are on its board
 
     public Player(String name, Token token, Position position, int playerNumber) {
         this.name = name;
         this.token = token;
         this.position = position;
         this.playerNumber = playerNumber;
-        hand = new ArrayList<>();
-        inventory = new HashSet<>();
+        hand = new CardSet();
+        dealt = new ArrayList<>();
+        inventory = new CardSet();
     }
 
     /********************
@@ -55,17 +57,35 @@ public class Player {
         return this.token;
     }
 
-    public Collection<Card> getHand() {
+    public CardSet getHand() {
         return this.hand;
     }
 
+    public CardSet getInventory() {
+        return this.inventory;
+    }
+
+    /**
+     * Everything the player has learnt about where the cards are, null before the cards are dealt
+     */
+    public Knowledge getKnowledge() {
+        return this.knowledge;
+    }
+
+    void setKnowledge(Knowledge knowledge) {
+        this.knowledge = knowledge;
+    }
+
     /**
      * A player enters a room
      *
      * @param r
      */
     public void enterRoom(Room r) {
+        boolean walking = this.room == null;
         this.room = r;
+        if (occupancy != null && walking && r != null)
+            occupancy.left(position);
     }
 
     /**
@@ -86,19 +106,46 @@ public class Player {
      * A player leaves the room, and they were not moved
      */
     public void leaveRoom() {
+        boolean inRoom = this.room != null;
         this.room = null;
         this.wasMoved = false;
+        if (occupancy != null && inRoom)
+            occupancy.arrived(position);
     }
 
     /**
-     * List all cards currently in your inventory (these are the cards which have been revealed
-     * to you throughout the game) in String format, Order the cards into
-     * their appropriate category
+     * List what we are certain of for every card, who holds it or whether it is
+     * in the solution, worked out from everything we have seen with the
+     * DeductionSolver. Cards we cannot be sure of are marked with a ?
      *
-     * @return
+     * @param deck    the cards of the game
+     * @param players the players in seating order
      */
-    public String printDetectiveNotepad() {
-        return printPlayersSelectedCards(this.inventory, null);
+    public String printDetectiveNotepad(Card deck, List<Player> players) {
+        Knowledge solved = DeductionSolver.solve(this.knowledge);
+        String characters = "";
+        String weapons = "";
+        String rooms = "";
+        for (int id = 0; id < Card.DECK_SIZE; id++) {
+            int owner = solved.ownerOf(id);
+            String line = String.format("%-16s", deck.getCard(id));
+            if (owner == solved.getEnvelope())
+                line += "SOLUTION";
+            else if (owner >= 0)
+                line += players.get(owner).getName();
+            else if (solved.state(id, solved.getEnvelope()) == Knowledge.HASNT)
+                line += "? (not the solution)";
+            else
+                line += "?";
+
+            if ((Card.CHARACTERS & (1 << id)) != 0)
+                characters += line + "\n";
+            else if ((Card.WEAPONS & (1 << id)) != 0)
+                weapons += line + "\n";
+            else
+                rooms += line + "\n";
+        }
+        return String.format("\nCharacters:\n%1s\nWeapons:\n%1s\nRooms:\n%1s", characters, weapons, rooms);
     }
 
     /**
@@ -154,21 +201,18 @@ public class Player {
      * @param card
      */
     public void addCardToHand(Card card) {
-        hand.add(card);
+        if (hand.add(card))
+            dealt.add(card);
     }
 
     /**
-     * Check our inventory for at least one card within the given list
+     * Check our hand for at least one card within the given guess
      *
-     * @param guess = list of cards
+     * @param guess = set of cards
      * @return
      */
-    public boolean checkCards(ArrayList<Card> guess) {
-        for (Card c : guess) {
-            if (hand.contains(c))
-                return true;
-        }
-        return false;
+    public boolean checkCards(CardSet guess) {
+        return hand.intersects(guess);
     }
 
     /**
@@ -177,9 +221,9 @@ public class Player {
      *
      * @return
      */
-    public Card pickRandomCardToReveal(List<Card> guess) {
-        for (Card c : this.hand) {
-            if (guess.contains(c))
+    public Card pickRandomCardToReveal(CardSet guess) {
+        for (Card c : this.dealt) {
+            if ((guess.getMask() & 1 << c.getId()) != 0)
                 return c;
         }
         throw new IllegalArgumentException("Revealing card has returned null. Bad behaviour");
@@ -191,7 +235,19 @@ public class Player {
      * @param p the updated position
      */
     public void move(Position p) {
+        Position from = this.position;
         this.position = p;
+        if (occupancy != null && room == null) {
+            occupancy.left(from);
+            occupancy.arrived(p);
+        }
+    }
+
+    /**
+     * The squares our token is kept on as we move
+     */
+    void setOccupancy(Occupancy occupancy) {
+        this.occupancy = occupancy;
     }
 
     public String toString() {
@@ -1,42 +1,77 @@
 package GameControl;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 
 /**
  * This class is used to define a position on the board.
  * <p>
+ * A board has one Position for each of its squares, which every game on it
+ * shares, so board.position gives the same object for the same square and moving
+ * around the board makes no new ones. Those positions also know which of their
+ * neighbours can be walked on.
+ * <p>
  * Created by Jack on 20/07/2016.
  */
 public class Position {
 
+    // the four directions we can step in, up, down, left then right
+    private static final int[] DX = {0, 0, -1, 1};
+    private static final int[] DY = {-1, 1, 0, 0};
+
     public final int x;
     public final int y;
 
+    // the walkable squares next to this one, only kept by the positions of a board
+    private List<Position> neighbours;
+
     public Position(int x, int y) {
         this.x = x;
         this.y = y;
     }
 
     /**
-     * Create a List of positions in all the possible directions
-     * we can travel
-     *
-     * @return List of positions
+     * Makes the positions of every square of the layout, each with its neighbours
      */
-    public List<Position> getNeighbours() {
-        List<Position> children = new ArrayList<>();
-        Position up = new Position(x, y - 1);
-        Position down = new Position(x, y + 1);
-        Position left = new Position(x - 1, y);
-        Position right = new Position(x + 1, y);
+    static Position[] intern(BoardLayout layout) {
+        int rows = layout.rows();
+        int cols = layout.cols();
+        Position[] positions = new Position[layout.size()];
+        for (int cell = 0; cell < positions.length; cell++)
+            positions[cell] = new Position(cell / cols, cell % cols);
 
-        if (up.isFree()) children.add(up);
-        if (down.isFree()) children.add(down);
-        if (left.isFree()) children.add(left);
-        if (right.isFree()) children.add(right);
+        Position[] found = new Position[DX.length];
+        for (Position p : positions) {
+            int n = 0;
+            for (int d = 0; d < DX.length; d++) {
+                int x = p.x + DX[d];
+                int y = p.y + DY[d];
+                if (x >= 0 && y >= 0 && x < rows && y < cols && CompiledBoard.isWalkable(layout.kind(x * cols + y)))
+                    found[n++] = positions[x * cols + y];
+            }
+            p.neighbours = n == 0 ? Collections.<Position>emptyList()
+                    : Collections.unmodifiableList(Arrays.asList(Arrays.copyOf(found, n)));
+        }
+        return positions;
+    }
 
-        return children;
+    /**
+     * The squares next to this one that are on the board and can be walked on,
+     * up, down, left then right
+     *
+     * @return List of positions, which cannot be changed
+     */
+    public List<Position> getNeighbours(CompiledBoard board) {
+        if (neighbours != null && board.position(x, y) == this)
+            return neighbours;
+        List<Position> children = new ArrayList<>();
+        for (int d = 0; d < DX.length; d++) {
+            if (board.inBounds(x + DX[d], y + DY[d]) && board.isWalkable(board.cell(x + DX[d], y + DY[d])))
+                children.add(board.position(x + DX[d], y + DY[d]));
+        }
+        return Collections.unmodifiableList(children);
     }
 
     /**
@@ -50,16 +85,18 @@ public class Position {
     }
 
     /**
-     * Check if we are within our bounding box
+     * Check if we are within the bounds of the board, whatever its size
      *
      * @return
      */
-    public boolean isFree() {
-        return !(this.x < 0 || this.y > 24 || this.x > 24 || this.y < 0);
+    public boolean isFree(CompiledBoard board) {
+        return board.inBounds(x, y);
     }
 
     @Override
     public boolean equals(Object o) {
+        if (o == this)
+            return true;
         if (o instanceof Position) {
             Position p = (Position) o;
             return this.x == p.x && this.y == p.y;
@@ -0,0 +1,302 @@
+package GameControl;
+
+import java.util.Arrays;
+
+/**
+ * Reachability works out everywhere a player can get to on a roll of the dice:
+ * every square they can walk to in up to that many steps, and every room they
+ * can enter through a door this turn. Stepping through a door into its room
+ * takes a step of its own, as it does when movePlayer walks a player there.
+ * <p>
+ * The search is a breadth first search a whole layer at a time, with the squares
+ * held as bits of a window around the start which is only as big as the highest
+ * roll can reach, so it costs the same on a board of any size. The answer for a
+ * square covers every roll at once, and is kept so each square is only searched
+ * the first time a player rolls on it.
+ * <p>
+ * Squares are indexed row by row, cell = x * columns + y.
+ */
+public class Reachability {
+
+    private static final int MAX_ROLL = GameEngine.MAX_ROLL;
+
+    // the most squares we keep answers for, bigger boards search on every roll
+    private static final int MAX_CACHED = 1 << 20;
+
+    private final CompiledBoard board;
+    private final int rows;
+    private final int cols;
+
+    // filled in as they are asked for, two games racing for a square only search it twice
+    private final Reach[] byCell;
+    private final Reach[] byRoom = new Reach[Card.DECK_SIZE];
+
+    public Reachability(CompiledBoard board) {
+        this.board = board;
+        this.rows = board.rows();
+        this.cols = board.cols();
+        this.byCell = board.size() <= MAX_CACHED ? new Reach[board.size()] : null;
+    }
+
+    /**
+     * Where a player standing on the square can get to
+     */
+    public Reach from(int cell) {
+        if (cell < 0 || cell >= board.size() || !board.isWalkable(cell))
+            throw new IllegalArgumentException("A player cannot stand on cell " + cell);
+        Reach reach = byCell == null ? null : byCell[cell];
+        if (reach == null) {
+            reach = search(new int[]{cell}, -1, null);
+            if (byCell != null)
+                byCell[cell] = reach;
+        }
+        return reach;
+    }
+
+    /**
+     * Where a player in the room can get to, leaving by whichever door they like.
+     * The room itself is never one they can enter, they must stay instead.
+     */
+    public Reach from(Room room) {
+        int id = room.getId();
+        if (id < 0 || id >= Card.DECK_SIZE || room.getDoors().isEmpty())
+            throw new IllegalArgumentException("The " + room + " is not a room on the board");
+        Reach reach = byRoom[id];
+        if (reach == null) {
+            reach = search(doors(room), id, null);
+            byRoom[id] = reach;
+        }
+        return reach;
+    }
+
+    /**
+     * Where the player can get to from their room or square
+     */
+    public Reach from(Player player) {
+        return player.getRoom() != null ? from(player.getRoom()) : from(board.cell(player.getPosition()));
+    }
+
+    /**
+     * Where the player can get to from their room or square this turn, walking round
+     * the tokens on the board. The tokens move between turns, so this is searched
+     * every time it is asked for rather than kept.
+     */
+    public Reach from(Player player, Occupancy occupied) {
+        if (player.getRoom() == null)
+            return search(new int[]{board.cell(player.getPosition())}, -1, occupied);
+        return search(doors(player.getRoom()), player.getRoom().getId(), occupied);
+    }
+
+    private int[] doors(Room room) {
+        int[] doors = new int[room.getDoors().size()];
+        int n = 0;
+        for (Door door : room.getDoors())
+            doors[n++] = board.cell(door.getPos());
+        return doors;
+    }
+
+    /**
+     * The layered search. The window is the box around the sources grown by the
+     * highest roll, and each layer is the last layer shifted a square in every
+     * direction, less the squares we cannot walk on, have already been to or
+     * that a token stands on, if we are given the tokens.
+     */
+    private Reach search(int[] sources, int exclude, Occupancy occupied) {
+        int top = rows;
+        int bottom = -1;
+        int left = cols;
+        int right = -1;
+        for (int cell : sources) {
+            top = Math.min(top, cell / cols);
+            bottom = Math.max(bottom, cell / cols);
+            left = Math.min(left, cell % cols);
+            right = Math.max(right, cell % cols);
+        }
+        top = Math.max(0, top - MAX_ROLL);
+        bottom = Math.min(rows - 1, bottom + MAX_ROLL);
+        left = Math.max(0, left - MAX_ROLL);
+        right = Math.min(cols - 1, right + MAX_ROLL);
+        int width = right - left + 1;
+        int bits = (bottom - top + 1) * width;
+        int words = (bits + 63) >>> 6;
+
+        // the walkable squares, and the squares a step left or right can land on without leaving its row
+        BoardGraph graph = board.getGraph();
+        long[] walk = new long[words];
+        long[] notFirst = new long[words];
+        long[] notLast = new long[words];
+        for (int x = top, i = 0; x <= bottom; x++) {
+            for (int y = left; y <= right; y++, i++) {
+                if (graph.isWalkable(x * cols + y) && (occupied == null || !occupied.isOccupied(x * cols + y)))
+                    walk[i >>> 6] |= 1L << i;
+                if (y != left)
+                    notFirst[i >>> 6] |= 1L << i;
+                if (y != right)
+                    notLast[i >>> 6] |= 1L << i;
+            }
+        }
+
+        long[] seen = new long[words];
+        long[] frontier = new long[words];
+        long[] next = new long[words];
+        int[] cells = new int[Math.min(bits, 2 * (MAX_ROLL + 1) * (MAX_ROLL + 1) * sources.length)];
+        int[] ends = new int[MAX_ROLL + 1];
+        int[] steps = new int[Card.DECK_SIZE];
+        Arrays.fill(steps, -1);
+
+        int count = 0;
+        for (int cell : sources) {
+            int i = (cell / cols - top) * width + cell % cols - left;
+            if ((seen[i >>> 6] & 1L << i) == 0) {
+                seen[i >>> 6] |= 1L << i;
+                frontier[i >>> 6] |= 1L << i;
+                cells = add(cells, count++, cell);
+            }
+        }
+        for (int step = 0; ; step++) {
+            // the rooms whose doors are on this layer
+            for (int c = step == 0 ? 0 : ends[step - 1]; c < count; c++) {
+                Door door = board.doorAt(cells[c]);
+                int room = door == null ? -1 : door.getRoom().getId();
+                if (room >= 0 && room != exclude && steps[room] < 0)
+                    steps[room] = step;
+            }
+            ends[step] = count;
+            if (step == MAX_ROLL)
+                break;
+
+            boolean any = false;
+            for (int w = 0; w < words; w++) {
+                long f = frontier[w];
+                long l = w > 0 ? frontier[w - 1] : 0;
+                long r = w + 1 < words ? frontier[w + 1] : 0;
+                long step1 = (f << 1 | l >>> 63) & notFirst[w]
+                        | (f >>> 1 | r << 63) & notLast[w];
+                next[w] = step1 | shift(frontier, w, width) | shift(frontier, w, -width);
+                next[w] &= walk[w] & ~seen[w];
+                any |= next[w] != 0;
+            }
+            if (!any) {
+                Arrays.fill(ends, step + 1, ends.length, count);
+                break;
+            }
+            for (int w = 0; w < words; w++) {
+                long bitsLeft = next[w];
+                seen[w] |= bitsLeft;
+                while (bitsLeft != 0) {
+                    int i = w << 6 | Long.numberOfTrailingZeros(bitsLeft);
+                    bitsLeft &= bitsLeft - 1;
+                    cells = add(cells, count++, (top + i / width) * cols + left + i % width);
+                }
+            }
+            long[] swap = frontier;
+            frontier = next;
+            next = swap;
+        }
+        return new Reach(Arrays.copyOf(cells, count), ends, steps);
+    }
+
+    /**
+     * Word w of the bits moved up by n places, n may be negative to move them down
+     */
+    private static long shift(long[] bits, int w, int n) {
+        int from = n >= 0 ? w - (n >>> 6) : w + (-n >>> 6);
+        int s = Math.abs(n) & 63;
+        if (n >= 0) {
+            long hi = from >= 0 ? bits[from] : 0;
+            long lo = from - 1 >= 0 ? bits[from - 1] : 0;
+            return s == 0 ? hi : hi << s | lo >>> (64 - s);
+        }
+        long lo = from < bits.length ? bits[from] : 0;
+        long hi = from + 1 < bits.length ? bits[from + 1] : 0;
+        return s == 0 ? lo : lo >>> s | hi << (64 - s);
+    }
+
+    private static int[] add(int[] cells, int count, int cell) {
+        if (count == cells.length)
+            cells = Arrays.copyOf(cells, cells.length * 2);
+        cells[count] = cell;
+        return cells;
+    }
+
+    /**
+     * Everywhere a player can get to from one square or room on every roll. The
+     * squares are kept in the order they are reached, so the squares within a
+     * roll are the first few of them.
+     */
+    public static class Reach {
+
+        private final int[] cells;
+        private final int[] ends; // ends[n] is the number of squares within n steps
+        private final int[] steps; // the steps to the nearest door of each room, by card id, -1 for none
+        private final int[] rooms; // rooms[n] is the mask of rooms that can be entered on a roll of n
+
+        private Reach(int[] cells, int[] ends, int[] steps) {
+            this.cells = cells;
+            this.ends = ends;
+            this.steps = steps;
+            this.rooms = new int[MAX_ROLL + 1];
+            for (int id = 0; id < steps.length; id++) {
+                // stepping through the door takes one more step
+                for (int roll = steps[id] + 1; steps[id] >= 0 && roll <= MAX_ROLL; roll++)
+                    rooms[roll] |= 1 << id;
+            }
+        }
+
+        /**
+         * @return the card ids of the rooms that can be entered this turn, as a mask
+         */
+        public int getRooms(int roll) {
+            return rooms[check(roll)];
+        }
+
+        /**
+         * @return the number of squares that can be walked to in up to roll steps
+         */
+        public int getCells(int roll) {
+            return ends[check(roll)];
+        }
+
+        /**
+         * The squares in the order they are reached, the first getCells(roll) are the ones within the roll
+         */
+        public int getCell(int i) {
+            return cells[i];
+        }
+
+        /**
+         * @return the number of steps to the square
+         */
+        public int getSteps(int i) {
+            int n = 0;
+            while (ends[n] <= i)
+                n++;
+            return n;
+        }
+
+        /**
+         * @return the steps to the nearest door of the room, or -1 if it is further than the highest roll
+         */
+        public int getStepsToRoom(Room room) {
+            return steps[room.getId()];
+        }
+
+        public boolean canReach(int cell, int roll) {
+            for (int i = 0, n = getCells(roll); i < n; i++) {
+                if (cells[i] == cell)
+                    return true;
+            }
+            return false;
+        }
+
+        public boolean canEnter(Room room, int roll) {
+            return (getRooms(roll) & 1 << room.getId()) != 0;
+        }
+
+        private static int check(int roll) {
+            if (roll < 0 || roll > MAX_ROLL)
+                throw new IllegalArgumentException("A roll of " + roll + " is not between 0 and " + MAX_ROLL);
+            return roll;
+        }
+    }
+}
@@ -0,0 +1,314 @@
+package GameControl;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static GameControl.Journal.*;
+
+/**
+ * The Replayer reads back the games recorded in a Journal. It is a cursor over
+ * the records of the file: next moves on to the start of the next game or the
+ * next event, and the getters read the record it is on. Nothing is made for an
+ * event, so every event in a journal can be streamed through quickly.
+ * <p>
+ * A game can be rebuilt as it was at any record, with rebuild.
+ */
+public class Replayer {
+
+    private static final Event.Type[] TYPES = Event.Type.values();
+
+    private final MappedByteBuffer buffer;
+    private final int limit;
+
+    private int position; // of the record we are on, -1 before the first
+    private int next; // of the record after it
+    private int kind;
+
+    // the game of the record we are on
+    private int solution;
+    private Player.Token[] tokens = new Player.Token[0];
+    private String[] names = new String[0];
+    private int[] hands = new int[0];
+
+    /**
+     * Opens a journal to read
+     */
+    public Replayer(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            this.buffer = map(channel);
+        }
+        this.limit = buffer.limit();
+        checkHeader();
+        rewind();
+    }
+
+    /**
+     * Reads a journal that is open to be written, the mapping stays when the channel is closed
+     */
+    Replayer(FileChannel channel) throws IOException {
+        this.buffer = map(channel);
+        this.limit = buffer.limit();
+        checkHeader();
+        rewind();
+    }
+
+    private static MappedByteBuffer map(FileChannel channel) throws IOException {
+        if (channel.size() > Integer.MAX_VALUE)
+            throw new IllegalArgumentException("Journals over 2GB cannot be read");
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        buffer.order(ByteOrder.BIG_ENDIAN);
+        return buffer;
+    }
+
+    private void checkHeader() {
+        if (limit < HEADER || buffer.getInt(0) != MAGIC)
+            throw new IllegalArgumentException("This file is not a journal");
+        if (buffer.getInt(4) != VERSION)
+            throw new IllegalArgumentException("Journal version " + buffer.getInt(4) + " cannot be read");
+    }
+
+    /**
+     * Goes back to before the first record
+     */
+    public void rewind() {
+        position = -1;
+        next = HEADER;
+        kind = 0;
+    }
+
+    /**
+     * Moves on to the next game or event
+     *
+     * @return false at the end of the journal
+     */
+    public boolean next() {
+        if (next + RECORD > limit || buffer.get(next) == 0)
+            return false;
+        position = next;
+        next += RECORD;
+        kind = buffer.get(position) & 0xFF;
+        if (kind == GAME)
+            readGame();
+        else if (kind > TYPES.length)
+            throw new IllegalArgumentException("The journal is damaged at record " + getRecord());
+        return true;
+    }
+
+    /**
+     * Reads the players of the game that starts at this record
+     */
+    private void readGame() {
+        int players = field(7);
+        solution = buffer.getInt(position + 8);
+        tokens = new Player.Token[players];
+        names = new String[players];
+        hands = new int[players];
+        for (int i = 0; i < players; i++) {
+            if (next + RECORD > limit || (buffer.get(next) & 0xFF) != PLAYER)
+                throw new IllegalArgumentException("The journal is damaged at record " + (next - HEADER) / RECORD);
+            tokens[i] = Player.Token.values()[buffer.get(next + 7)];
+            hands[i] = buffer.getInt(next + 8);
+            int length = buffer.get(next + 2) & 0xFF;
+            byte[] name = new byte[length];
+            for (int b = 0; b < length; b++)
+                name[b] = buffer.get(next + RECORD + b);
+            names[i] = new String(name, StandardCharsets.UTF_8);
+            next += RECORD * (1 + (length + RECORD - 1) / RECORD);
+        }
+    }
+
+    /**
+     * The number of records in the journal, which leaves the replayer rewound
+     */
+    public long count() {
+        rewind();
+        while (next())
+            ;
+        long count = (next - HEADER) / RECORD;
+        rewind();
+        return count;
+    }
+
+    /*********************************/
+    /*          THE RECORD           */
+    /*********************************/
+
+    /**
+     * The number of the record we are on, as counted by the Journal
+     */
+    public long getRecord() {
+        return (position - HEADER) / RECORD;
+    }
+
+    /**
+     * Whether the record starts a game
+     */
+    public boolean isGame() {
+        return kind == GAME;
+    }
+
+    /**
+     * The type of the event, null at the start of a game
+     */
+    public Event.Type getType() {
+        return kind == GAME ? null : TYPES[kind - 1];
+    }
+
+    /**
+     * The index of the player of the event, -1 for none
+     */
+    public int getPlayer() {
+        return index(1);
+    }
+
+    public int getOther() {
+        return index(2);
+    }
+
+    /**
+     * The ids of the cards of the event, -1 for none
+     */
+    public int getCharacter() {
+        return index(3);
+    }
+
+    public int getWeapon() {
+        return index(4);
+    }
+
+    public int getRoom() {
+        return index(5);
+    }
+
+    public int getCard() {
+        return index(6);
+    }
+
+    public int getValue() {
+        return buffer.getInt(position + 8);
+    }
+
+    /**
+     * Where the player moved to, for the events that move a player
+     */
+    public int getX() {
+        return getValue() >>> 16;
+    }
+
+    public int getY() {
+        return getValue() & 0xFFFF;
+    }
+
+    private int field(int offset) {
+        return buffer.get(position + offset) & 0xFF;
+    }
+
+    private int index(int offset) {
+        int value = field(offset);
+        return value == NONE ? -1 : value;
+    }
+
+    /*********************************/
+    /*          THE GAME             */
+    /*********************************/
+
+    /**
+     * The number of players in the game of the record
+     */
+    public int getPlayers() {
+        return tokens.length;
+    }
+
+    public String getName(int player) {
+        return names[player];
+    }
+
+    public Player.Token getToken(int player) {
+        return tokens[player];
+    }
+
+    /**
+     * The mask of the ids of the cards the player was dealt
+     */
+    public int getHand(int player) {
+        return hands[player];
+    }
+
+    /**
+     * The mask of the ids of the cards in the envelope
+     */
+    public int getSolution() {
+        return solution;
+    }
+
+    /*********************************/
+    /*          REBUILDING           */
+    /*********************************/
+
+    /**
+     * Rebuilds the game as it was just after a record, with its players, their
+     * cards, where they are and what they know
+     *
+     * @param record the number of the record, as counted by the Journal
+     * @return the engine of the game, which can go on being played
+     */
+    public GameEngine rebuild(long record) {
+        // find the start of the game, then only that game is built
+        rewind();
+        int start = -1;
+        while (next() && getRecord() <= record)
+            if (isGame())
+                start = position;
+        if (start < 0)
+            throw new IllegalArgumentException("No game had started by record " + record);
+
+        next = start;
+        GameEngine engine = null;
+        while (next() && getRecord() <= record) {
+            if (isGame())
+                engine = startGame();
+            else
+                replay(engine);
+        }
+        return engine;
+    }
+
+    private GameEngine startGame() {
+        GameEngine engine = new GameEngine(new Game());
+        for (int i = 0; i < getPlayers(); i++)
+            engine.addPlayer(names[i], tokens[i]);
+        engine.start(hands, solution);
+        return engine;
+    }
+
+    private void replay(GameEngine engine) {
+        Card deck = engine.getGame().getCard();
+        Player player = player(engine, getPlayer());
+        Event event = Event.of(getType(), player, player(engine, getOther()), card(deck, getCharacter()),
+                card(deck, getWeapon()), (Room) card(deck, getRoom()), card(deck, getCard()), getValue());
+        Position moved = null;
+        switch (event.getType()) {
+            case MOVED:
+            case ENTERED_ROOM:
+            case PLACED_IN_ROOM:
+                moved = engine.getGame().getBoard().position(getX(), getY());
+                break;
+            default:
+                break;
+        }
+        engine.replay(event, moved);
+    }
+
+    private static Player player(GameEngine engine, int index) {
+        return index < 0 ? null : engine.getPlayers().get(index);
+    }
+
+    private static Card card(Card deck, int id) {
+        return id < 0 ? null : deck.getCard(id);
+    }
+}
@@ -1,6 +1,6 @@
 package GameControl;
 
-import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.Set;
 
 /**
@@ -19,8 +19,8 @@ public class Room extends Card implements Board {
     private int width;
     private int height;
 
-    // Setting multiple doors for a room
-    private Set<Door> doors = new HashSet<>();
+    // Setting multiple doors for a room, kept in the order they appear on the board
+    private Set<Door> doors = new LinkedHashSet<>();
 
     // some rooms have secret passages
     private Room secretPassage;
@@ -29,21 +29,33 @@ public class Room extends Card implements Board {
         super(name);
     }
 
-    public boolean hasSecretPassage(Game game) {
-        switch (getName()) {
+    /**
+     * The name of the room at the other end of the named room's secret passage,
+     * or null if it has none
+     */
+    static String secretPassageOf(String name) {
+        switch (name) {
             case "Kitchen":
-                secretPassage = game.getRoom("Study");
-                break;
+                return "Study";
             case "Lounge":
-                secretPassage = game.getRoom("Conservatory");
-                break;
+                return "Conservatory";
             case "Study":
-                secretPassage = game.getRoom("Kitchen");
-                break;
+                return "Kitchen";
             case "Conservatory":
-                secretPassage = game.getRoom("Lounge");
-                break;
+                return "Lounge";
+            default:
+                return null;
         }
+    }
+
+    /**
+     * Joins the room to the room at the other end of its secret passage, once when the game is made
+     */
+    void setSecretPassage(Room room) {
+        this.secretPassage = room;
+    }
+
+    public boolean hasSecretPassage() {
         return secretPassage != null;
     }
 
@@ -105,6 +117,49 @@ public class Room extends Card implements Board {
         return door;
     }
 
+    /**
+     * Choose the door of this room that has the shortest walk to one of the
+     * other rooms doors
+     *
+     * @param distances the walking distances of the board this room is on
+     * @return this rooms closest door to the other room
+     */
+    public Door selectBestDoorToDoor(Room room, DistanceField distances) {
+        int closest = Integer.MAX_VALUE;
+        Door door = null;
+        for (Door myDoor : doors)
+            for (Door other : room.doors) {
+                int check = distances.distance(other, myDoor.getPos());
+                if (check != DistanceField.UNREACHABLE && check < closest) {
+                    closest = check;
+                    door = myDoor;
+                }
+            }
+        if (door != null)
+            return door;
+        else
+            throw new IllegalArgumentException("Selecting Best Door To Door failed :(!");
+    }
+
+    /**
+     * Return the door with the shortest walk from the current position
+     *
+     * @param distances the walking distances of the board this room is on
+     * @return the closest door, or null if none of the doors can be reached
+     */
+    public Door getDoor(Position p, DistanceField distances) {
+        int closer = Integer.MAX_VALUE;
+        Door door = null;
+        for (Door d : doors) {
+            int check = distances.distance(d, p);
+            if (check != DistanceField.UNREACHABLE && check < closer) {
+                closer = check;
+                door = d;
+            }
+        }
+        return door;
+    }
+
     @Override
     public char printArray() {
         switch (getName()) {
@@ -126,12 +181,6 @@ public class Room extends Card implements Board {
                 return 'F';
             case "Conservatory":
                 return 'C';
-            case "INSIDE":
-                return ' ';
-            case "BLOCKED":
-            case "Solution":
-                return '#';
-
         }
         return ' ';
     }
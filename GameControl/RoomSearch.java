@@ -0,0 +1,200 @@
+package GameControl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * RoomSearch finds how far a player has to walk to every room on the board at
+ * once, with a single breadth first search out from where they are. The first
+ * door of a room the search comes to is its nearest door, and the search stops
+ * as soon as it has come to a door of every room. A player in a room with a
+ * secret passage can take it rather than walk, so the room at the other end is
+ * no steps away.
+ * <p>
+ * The working memory of a search belongs to the calling thread and is reused,
+ * so one RoomSearch can be shared between threads.
+ */
+public class RoomSearch {
+
+    public static final int UNREACHABLE = -1;
+
+    private final CompiledBoard board;
+    private final BoardGraph graph;
+    private final int rooms; // the rooms with a door on the board
+
+    private final ThreadLocal<Scratch> scratch = new ThreadLocal<Scratch>() {
+        @Override
+        protected Scratch initialValue() {
+            return new Scratch(board.size());
+        }
+    };
+
+    public RoomSearch(CompiledBoard board) {
+        this.board = board;
+        this.graph = board.getGraph();
+        int n = 0;
+        for (Room room : board.getRooms()) {
+            if (!room.getDoors().isEmpty())
+                n++;
+        }
+        this.rooms = n;
+    }
+
+    /**
+     * How far the player has to go to every room from their room or square
+     */
+    public Distances from(Player player) {
+        return player.getRoom() != null ? from(player.getRoom()) : from(player.getPosition());
+    }
+
+    /**
+     * How far every room is from the square
+     */
+    public Distances from(Position p) {
+        if (!board.inBounds(p.x, p.y) || !board.isWalkable(board.cell(p)))
+            throw new IllegalArgumentException("A player cannot stand on " + p.x + ", " + p.y);
+        return search(new int[]{board.cell(p)}, null);
+    }
+
+    /**
+     * How far every other room is from the room, leaving by whichever door is
+     * nearest or by its secret passage
+     */
+    public Distances from(Room room) {
+        if (room.getDoors().isEmpty())
+            throw new IllegalArgumentException("The " + room + " is not a room on the board");
+        int[] doors = new int[room.getDoors().size()];
+        int n = 0;
+        for (Door door : room.getDoors())
+            doors[n++] = board.cell(door.getPos());
+        Distances distances = search(doors, room);
+        if (room.getSecretPassage() != null)
+            distances.passage(room.getSecretPassage());
+        return distances;
+    }
+
+    /**
+     * The search itself, a layer of squares a step further out at a time
+     */
+    private Distances search(int[] sources, Room exclude) {
+        Scratch s = scratch.get();
+        Distances distances = new Distances();
+        int wanted = exclude == null ? rooms : rooms - 1;
+        int found = 0;
+        for (int cell : sources)
+            s.visit(cell);
+        try {
+            for (int head = 0, step = 0; head < s.tail && found < wanted; step++) {
+                for (int end = s.tail; head < end; head++) {
+                    int cell = s.queue[head];
+                    Door door = board.doorAt(cell);
+                    if (door != null && door.getRoom() != exclude && distances.walk(door, step))
+                        found++;
+                    for (int e = graph.first(cell), last = graph.first(cell + 1); e < last; e++)
+                        s.visit(graph.target(e));
+                }
+            }
+            return distances;
+        } finally {
+            s.reset();
+        }
+    }
+
+    /**
+     * How far a player has to go to each room, and the door they go in by
+     */
+    public static class Distances {
+
+        private final int[] steps = new int[Card.DECK_SIZE]; // by card id
+        private final Door[] doors = new Door[Card.DECK_SIZE];
+        private final List<Room> nearest = new ArrayList<>();
+        private Room passage;
+
+        private Distances() {
+            Arrays.fill(steps, UNREACHABLE);
+        }
+
+        /**
+         * @return true the first time the search comes to a door of its room
+         */
+        private boolean walk(Door door, int step) {
+            int id = door.getRoom().getId();
+            if (steps[id] != UNREACHABLE)
+                return false;
+            steps[id] = step;
+            doors[id] = door;
+            nearest.add(door.getRoom());
+            return true;
+        }
+
+        private void passage(Room room) {
+            nearest.remove(room);
+            nearest.add(0, room);
+            steps[room.getId()] = 0;
+            doors[room.getId()] = null;
+            passage = room;
+        }
+
+        /**
+         * @return the steps to the nearest door of the room, one more takes the player in,
+         * or UNREACHABLE if they cannot get there
+         */
+        public int getSteps(Room room) {
+            return steps[room.getId()];
+        }
+
+        /**
+         * @return the nearest door of the room, or null if the player cannot get there or takes the secret passage
+         */
+        public Door getDoor(Room room) {
+            return doors[room.getId()];
+        }
+
+        /**
+         * Whether the player gets to the room by its secret passage
+         */
+        public boolean byPassage(Room room) {
+            return room == passage;
+        }
+
+        /**
+         * The rooms the player can get to, nearest first
+         */
+        public List<Room> getRooms() {
+            return Collections.unmodifiableList(nearest);
+        }
+    }
+
+    /**
+     * The working memory for one thread, the squares seen so far and the queue
+     * of them. The squares are unmarked from the queue afterwards, so the marks
+     * never need clearing in full.
+     */
+    private static class Scratch {
+        final long[] seen;
+        int[] queue;
+        int tail;
+
+        Scratch(int cells) {
+            seen = new long[(cells + 63) >>> 6];
+            queue = new int[Math.min(cells, 1 << 12)];
+        }
+
+        void visit(int cell) {
+            if ((seen[cell >>> 6] & 1L << cell) != 0)
+                return;
+            seen[cell >>> 6] |= 1L << cell;
+            if (tail == queue.length)
+                queue = Arrays.copyOf(queue, tail * 2);
+            queue[tail++] = cell;
+        }
+
+        void reset() {
+            for (int i = 0; i < tail; i++)
+                seen[queue[i] >>> 6] = 0;
+            tail = 0;
+        }
+    }
+}
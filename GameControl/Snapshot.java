@@ -0,0 +1,228 @@
+package GameControl;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * A Snapshot is the whole state of a game packed into a few bytes, so a game
+ * can be saved every turn and carried on later or on another server. Cards are
+ * written as their ids or as masks of ids, and squares as their cell on the
+ * board, so a game of three players takes about fifty bytes before what each
+ * player knows, which is saved after it.
+ * <pre>
+ * header    'C' 'S' version flags(started, over, suggesting)
+ * game      players current turn(2) roll winner excluded(mask) character weapon room
+ * player    token|wasMoved cell(varint) room hand(3) inventory(3) name(length, UTF-8)
+ * knowledge for each owner has(3) hasnt(3), then constraints(varint) and each owner cards(3)
+ * </pre>
+ * Indexes and ids that are not set are written as 255. The dice are not saved,
+ * a restored game rolls with the Random it is given.
+ */
+public class Snapshot {
+
+    public static final int VERSION = 1;
+
+    private static final int STARTED = 1;
+    private static final int OVER = 2;
+    private static final int SUGGESTING = 4;
+    private static final int WAS_MOVED = 0x80;
+    private static final int NONE = 0xFF;
+
+    /**
+     * Packs the state of the game into bytes
+     */
+    public static byte[] save(GameEngine engine) {
+        List<Player> players = engine.getPlayers();
+        int n = players.size();
+        CompiledBoard board = engine.getGame().getBoard();
+
+        int size = 20;
+        for (Player p : players)
+            size += 16 + 256 + (n + 1) * 6 + 5 + (p.getKnowledge() == null ? 0 : p.getKnowledge().getConstraintCount() * 4);
+        ByteBuffer out = ByteBuffer.allocate(size);
+
+        int flags = (engine.isStarted() ? STARTED : 0) | (engine.isOver() ? OVER : 0) | (engine.canSuggest() ? SUGGESTING : 0);
+        out.put((byte) 'C').put((byte) 'S').put((byte) VERSION).put((byte) flags);
+
+        int excluded = 0;
+        for (Player p : engine.getExcludedPlayers())
+            excluded |= 1 << players.indexOf(p);
+        out.put((byte) n).put((byte) index(players, engine.getCurrentPlayer())).putShort((short) engine.getTurn())
+                .put((byte) engine.getRoll()).put((byte) index(players, engine.getWinner())).put((byte) excluded);
+        int solution = engine.getGame().getSolution().getMask();
+        putCard(out, solution & Card.CHARACTERS);
+        putCard(out, solution & Card.WEAPONS);
+        putCard(out, solution & Card.ROOMS);
+
+        for (Player p : players) {
+            out.put((byte) (p.getToken().ordinal() | (p.getWasMoved() ? WAS_MOVED : 0)));
+            putVarint(out, board.cell(p.getPosition()));
+            out.put((byte) (p.getRoom() == null ? NONE : p.getRoom().getId()));
+            putMask(out, p.getHand().getMask());
+            putMask(out, p.getInventory().getMask());
+            byte[] name = p.getName().getBytes(StandardCharsets.UTF_8);
+            int length = Math.min(name.length, 255);
+            out.put((byte) length).put(name, 0, length);
+        }
+
+        if (engine.isStarted()) {
+            for (Player p : players) {
+                Knowledge knowledge = p.getKnowledge();
+                for (int owner = 0; owner <= n; owner++) {
+                    putMask(out, knowledge.getHas(owner));
+                    putMask(out, knowledge.getHasnt(owner));
+                }
+                putVarint(out, knowledge.getConstraintCount());
+                for (int i = 0; i < knowledge.getConstraintCount(); i++) {
+                    out.put((byte) knowledge.getConstraintOwner(i));
+                    putMask(out, knowledge.getConstraintCards(i));
+                }
+            }
+        }
+        byte[] bytes = new byte[out.position()];
+        out.flip();
+        out.get(bytes);
+        return bytes;
+    }
+
+    /**
+     * Restores a game on a new Game, which reads in the board
+     */
+    public static GameEngine restore(byte[] snapshot) {
+        return restore(snapshot, new Game(), new Random());
+    }
+
+    /**
+     * Restores a game
+     *
+     * @param game a game that has not been played, which is dealt the cards of the snapshot
+     * @param dice where the dice rolls of the restored game come from
+     */
+    public static GameEngine restore(byte[] snapshot, Game game, Random dice) {
+        try {
+            return read(ByteBuffer.wrap(snapshot), game, dice);
+        } catch (BufferUnderflowException | IndexOutOfBoundsException e) {
+            throw new IllegalArgumentException("The snapshot is damaged");
+        }
+    }
+
+    private static GameEngine read(ByteBuffer in, Game game, Random dice) {
+        if (in.remaining() < 4 || in.get() != 'C' || in.get() != 'S')
+            throw new IllegalArgumentException("This is not a snapshot of a game");
+        int version = in.get();
+        if (version != VERSION)
+            throw new IllegalArgumentException("Snapshot version " + version + " cannot be restored");
+        int flags = in.get();
+
+        int n = in.get();
+        int current = in.get() & 0xFF;
+        int turn = in.getShort() & 0xFFFF;
+        int roll = in.get();
+        int winner = in.get() & 0xFF;
+        int excluded = in.get();
+        int solution = getCard(in) | getCard(in) | getCard(in);
+
+        GameEngine engine = new GameEngine(game, dice);
+        CompiledBoard board = game.getBoard();
+        Card deck = game.getCard();
+        int[] hands = new int[n];
+        for (int i = 0; i < n; i++) {
+            int token = in.get() & 0xFF;
+            int cell = getVarint(in);
+            int room = in.get() & 0xFF;
+            hands[i] = getMask(in);
+            int inventory = getMask(in);
+            byte[] name = new byte[in.get() & 0xFF];
+            in.get(name);
+
+            Player p = engine.addPlayer(new String(name, StandardCharsets.UTF_8), Player.Token.values()[token & ~WAS_MOVED]);
+            p.move(board.position(cell));
+            if (room != NONE)
+                p.enterRoom((Room) deck.getCard(room));
+            if ((token & WAS_MOVED) != 0)
+                p.setWasMoved();
+            for (int id = 0; id < Card.DECK_SIZE; id++)
+                if ((inventory & 1 << id) != 0)
+                    p.addCardToInventory(deck.getCard(id));
+        }
+        if ((flags & STARTED) == 0)
+            return engine;
+
+        List<Player> players = engine.getPlayers();
+        game.dealCards(players, hands, solution);
+        int[] handSizes = new int[n];
+        for (int i = 0; i < n; i++)
+            handSizes[i] = Integer.bitCount(hands[i]);
+        for (Player p : players) {
+            int[] has = new int[n + 1];
+            int[] hasnt = new int[n + 1];
+            for (int owner = 0; owner <= n; owner++) {
+                has[owner] = getMask(in);
+                hasnt[owner] = getMask(in);
+            }
+            int[] owners = new int[getVarint(in)];
+            int[] cards = new int[owners.length];
+            for (int i = 0; i < owners.length; i++) {
+                owners[i] = in.get();
+                cards[i] = getMask(in);
+            }
+            p.setKnowledge(new Knowledge(handSizes, has, hasnt, owners, cards));
+        }
+
+        List<Player> out = new ArrayList<>();
+        for (int i = 0; i < n; i++)
+            if ((excluded & 1 << i) != 0)
+                out.add(players.get(i));
+        engine.restore(current == NONE ? -1 : current, turn, roll, (flags & SUGGESTING) != 0, (flags & OVER) != 0,
+                winner == NONE ? null : players.get(winner), out);
+        return engine;
+    }
+
+    private static int index(List<Player> players, Player p) {
+        return p == null ? NONE : players.indexOf(p);
+    }
+
+    /**
+     * The id of the only card in the mask
+     */
+    private static void putCard(ByteBuffer out, int mask) {
+        out.put((byte) (mask == 0 ? NONE : Integer.numberOfTrailingZeros(mask)));
+    }
+
+    private static int getCard(ByteBuffer in) {
+        int id = in.get() & 0xFF;
+        return id == NONE ? 0 : 1 << id;
+    }
+
+    // masks of card ids fit in three bytes
+    private static void putMask(ByteBuffer out, int mask) {
+        out.put((byte) (mask >>> 16)).putShort((short) mask);
+    }
+
+    private static int getMask(ByteBuffer in) {
+        return (in.get() & 0xFF) << 16 | in.getShort() & 0xFFFF;
+    }
+
+    // seven bits a byte, the high bit set on every byte but the last
+    private static void putVarint(ByteBuffer out, int value) {
+        while ((value & ~0x7F) != 0) {
+            out.put((byte) (value & 0x7F | 0x80));
+            value >>>= 7;
+        }
+        out.put((byte) value);
+    }
+
+    private static int getVarint(ByteBuffer in) {
+        int value = 0;
+        for (int shift = 0; ; shift += 7) {
+            int b = in.get();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0)
+                return value;
+        }
+    }
+}
@@ -0,0 +1,804 @@
+package GameControl;
+
+import java.util.Arrays;
+
+/**
+ * SolutionProbabilities weighs each of the 6 x 6 x 9 envelopes that could be the
+ * solution by the number of deals of the other cards that agree with a player's
+ * Knowledge, which gives the chance of every envelope and of every card being in it.
+ * <p>
+ * The deals are counted rather than listed. Cards whose owner is known are left
+ * out, so only the unknown cards are dealt into what is left of each hand. How the
+ * cards of one category can be dealt is summed up as the number of ways for every
+ * vector of how many of those cards each player gets, one set of counts for each
+ * card of the category that could be in the envelope. Each character's weight is its
+ * counts against every way of dealing the weapons and rooms into the rest of the
+ * hands, and each weapon's the same way round, which is one pass over the pairs of
+ * character and weapon vectors. The rooms and whole envelopes take a pass for every
+ * pair of characters and weapons, so they are only weighed when one is asked for.
+ * <p>
+ * "Shown one of" constraints are counted by inclusion-exclusion, one term for
+ * every subset of them. A term that no deal agrees with is skipped along with
+ * every term that forbids more than it does. When the only news since the last
+ * update is new constraints, just the terms that take them in are counted and
+ * added to the weights already there. The counts are kept by what is known of each
+ * category, so a turn that tells us nothing new about a category reuses them.
+ * Up to MAX_CONSTRAINTS constraints are counted, which covers all but about one
+ * turn in seventy of a game of six Bots. Past that the ones with the fewest cards
+ * left are used and the weights are an estimate, see isExact.
+ */
+public class SolutionProbabilities {
+
+    public static final int MAX_CONSTRAINTS = 8;
+
+    private static final int[] CATEGORIES = {Card.CHARACTERS, Card.WEAPONS, Card.ROOMS};
+    private static final int ENVELOPES = 6 * 6 * 9;
+    private static final int ENVELOPE = 1 << 6; // the owner bit of the envelope in a key
+
+    private final int players;
+    private final int[] handSizes;
+
+    // vectors of cards per player in mixed radix, which are also packed into 6 bits a
+    // player so vectors can be added and checked against what is left of the hands at once
+    private final int[] strides;
+    private final long[] packed;
+    private final long high;
+
+    // what is left of each hand once the known cards are taken out
+    private final int[] caps;
+    private long capsKey;
+    private int full;
+    private long bias;
+
+    // counts by what is known of the cards and what is left of the hands
+    private final LongCache<Sparse[]> categories = new LongCache<>();
+    private final LongCache<Sparse[]> bases = new LongCache<>();
+    private final LongCache<Sparse[]> pairs = new LongCache<>();
+
+    // counts being added up, and which of them are not zero
+    private final long[] scratch;
+    private final int[] touched;
+    private int used;
+    private final long[] dense;
+    private final long[] byCharacter;
+    private final long[] byWeapon;
+    private final long[] weaponVectors;
+    private final long[] weaponSums;
+
+    // what the weights were last counted for
+    private int[] has;
+    private int[] hasnt;
+    private int[] chosenOwners = new int[0];
+    private int[] chosenCards = new int[0];
+    private int chosenAll;
+    private boolean[] dead = new boolean[1];
+
+    private final long[] cards = new long[Card.DECK_SIZE];
+    private long total;
+    private boolean exact;
+    private final long[] weights = new long[ENVELOPES];
+    private final long[] term = new long[ENVELOPES];
+    private boolean weighed;
+
+    public SolutionProbabilities(int[] handSizes) {
+        this.players = handSizes.length;
+        if (players > 6)
+            throw new IllegalArgumentException("Too many players: " + players);
+        this.handSizes = handSizes.clone();
+        this.caps = new int[players];
+        this.strides = new int[players];
+        int states = 1;
+        long top = 0;
+        for (int p = 0; p < players; p++) {
+            strides[p] = states;
+            states *= handSizes[p] + 1;
+            top |= 32L << (6 * p);
+        }
+        this.high = top;
+        this.packed = new long[states];
+        // counting up, carrying into the next player when a hand is full
+        for (int i = 1; i < states; i++) {
+            long vector = packed[i - 1];
+            int p = 0;
+            while (((vector >>> (6 * p)) & 63) == handSizes[p])
+                vector &= ~(63L << (6 * p++));
+            packed[i] = vector + (1L << (6 * p));
+        }
+        this.scratch = new long[states];
+        this.touched = new int[states];
+        this.dense = new long[states];
+        this.byCharacter = new long[states];
+        this.byWeapon = new long[states];
+        this.weaponVectors = new long[states];
+        this.weaponSums = new long[states];
+    }
+
+    /*********************************/
+    /*          UPDATING             */
+    /*********************************/
+
+    /**
+     * Weigh every card again for what is now known. When all that is new is
+     * constraints, only the terms they add are counted.
+     */
+    public void update(Knowledge knowledge) {
+        if (knowledge.getPlayers() != players)
+            throw new IllegalArgumentException("Knowledge is for " + knowledge.getPlayers() + " players, not " + players);
+
+        int[] chosen = chooseConstraints(knowledge);
+        exact = chosen.length == knowledge.getConstraintCount();
+
+        int[] owners = new int[chosen.length];
+        int[] constrained = new int[chosen.length];
+        for (int t = 0; t < chosen.length; t++) {
+            owners[t] = knowledge.getConstraintOwner(chosen[t]);
+            constrained[t] = knowledge.getConstraintCards(chosen[t]);
+        }
+        // the constraints counted last time go first, so the terms already counted are the low ones
+        int kept = sameCards(knowledge) ? keep(owners, constrained) : -1;
+        int counted = kept < 0 ? 0 : 1 << kept;
+        if (kept < 0) {
+            Arrays.fill(cards, 0);
+            total = 0;
+            has = new int[players + 1];
+            hasnt = new int[players + 1];
+            for (int o = 0; o <= players; o++) {
+                has[o] = knowledge.getHas(o);
+                hasnt[o] = knowledge.getHasnt(o);
+            }
+            setCaps();
+        }
+        chosenOwners = owners;
+        chosenCards = constrained;
+        chosenAll = 0;
+        for (int cards : constrained)
+            chosenAll |= cards;
+        dead = Arrays.copyOf(dead, 1 << owners.length);
+        weighed &= counted == dead.length;
+
+        for (int t = counted; t < dead.length; t++) {
+            // a term that forbids all a dead term does and more is dead too
+            dead[t] = false;
+            for (int bits = t; bits != 0 && !dead[t]; bits &= bits - 1)
+                dead[t] = dead[t & ~(bits & -bits)];
+            if (!dead[t])
+                dead[t] = !addCards(forbid(t), sign(t));
+        }
+    }
+
+    /**
+     * The constraints to count, those with the fewest possible cards tell us the most
+     */
+    private int[] chooseConstraints(Knowledge knowledge) {
+        Integer[] order = new Integer[knowledge.getConstraintCount()];
+        for (int i = 0; i < order.length; i++)
+            order[i] = i;
+        Arrays.sort(order, (a, b) -> Integer.compare(possibleCards(knowledge, a), possibleCards(knowledge, b)));
+        int[] chosen = new int[Math.min(order.length, MAX_CONSTRAINTS)];
+        for (int i = 0; i < chosen.length; i++)
+            chosen[i] = order[i];
+        return chosen;
+    }
+
+    private static int possibleCards(Knowledge knowledge, int constraint) {
+        return Integer.bitCount(knowledge.getConstraintCards(constraint)
+                & ~knowledge.getHasnt(knowledge.getConstraintOwner(constraint)));
+    }
+
+    /**
+     * Whether every owner is known to have and not have the same cards as last time
+     */
+    private boolean sameCards(Knowledge knowledge) {
+        if (has == null)
+            return false;
+        for (int o = 0; o <= players; o++)
+            if (has[o] != knowledge.getHas(o) || hasnt[o] != knowledge.getHasnt(o))
+                return false;
+        return true;
+    }
+
+    /**
+     * Puts the constraints counted last time first, in the same order
+     *
+     * @return how many there were, or -1 if one of them is no longer chosen
+     */
+    private int keep(int[] owners, int[] constrained) {
+        int n = chosenOwners.length;
+        for (int i = 0; i < n; i++) {
+            int at = i;
+            while (at < owners.length && (owners[at] != chosenOwners[i] || constrained[at] != chosenCards[i]))
+                at++;
+            if (at == owners.length)
+                return -1;
+            swap(owners, i, at);
+            swap(constrained, i, at);
+        }
+        return n;
+    }
+
+    private static void swap(int[] a, int i, int j) {
+        int t = a[i];
+        a[i] = a[j];
+        a[j] = t;
+    }
+
+    /**
+     * Works out what is left of every hand
+     */
+    private void setCaps() {
+        full = 0;
+        capsKey = 0;
+        bias = 0;
+        for (int p = 0; p < players; p++) {
+            caps[p] = Math.max(0, handSizes[p] - Integer.bitCount(has[p]));
+            full += caps[p] * strides[p];
+            capsKey |= (long) caps[p] << (6 * p);
+            bias |= (long) (31 - caps[p]) << (6 * p);
+        }
+    }
+
+    /**
+     * The cards the owners of the constraints in a term are forbidden on top of what they don't have
+     */
+    private int[] forbid(int t) {
+        int[] forbid = hasnt.clone();
+        for (int c = 0; c < chosenOwners.length; c++)
+            if ((t & (1 << c)) != 0)
+                forbid[chosenOwners[c]] |= chosenCards[c];
+        return forbid;
+    }
+
+    private static int sign(int t) {
+        return Integer.bitCount(t) % 2 == 0 ? 1 : -1;
+    }
+
+    /**
+     * Adds the deals with each card in the envelope, when no owner has the cards they are forbidden, to the cards' weights
+     *
+     * @return false if there are no such deals
+     */
+    private boolean addCards(int[] forbid, int sign) {
+        long characterKey = key(forbid, Card.CHARACTERS);
+        long weaponKey = key(forbid, Card.WEAPONS);
+        long roomKey = key(forbid, Card.ROOMS);
+        if (characterKey < 0 || weaponKey < 0 || roomKey < 0)
+            return false;
+        Sparse[] characters = categoryCounts(0, characterKey);
+        Sparse[] weapons = categoryCounts(1, weaponKey);
+        Sparse rooms = anyCounts(2, roomKey);
+        Sparse anyCharacter = characters[6], anyWeapon = weapons[6];
+        if (anyCharacter == null || anyWeapon == null || rooms == null)
+            return false;
+
+        // every way of dealing the characters and weapons together, against the rooms
+        // that fill the rest of the hands
+        spread(rooms);
+        int[] y = anyWeapon.index;
+        long[] weaponWays = anyWeapon.count;
+        for (int j = 0; j < anyWeapon.size; j++)
+            weaponVectors[j] = packed[y[j]];
+        for (int i = 0; i < anyCharacter.size; i++) {
+            int x = anyCharacter.index[i];
+            long vector = packed[x] + bias;
+            long ways = anyCharacter.count[i];
+            long sum = 0;
+            for (int j = 0; j < anyWeapon.size; j++) {
+                if (((vector + weaponVectors[j]) & high) != 0)
+                    continue;
+                long rest = dense[full - x - y[j]];
+                sum += weaponWays[j] * rest;
+                weaponSums[j] += ways * rest;
+            }
+            byCharacter[x] = sum;
+        }
+        for (int j = 0; j < anyWeapon.size; j++) {
+            byWeapon[y[j]] = weaponSums[j];
+            weaponSums[j] = 0;
+        }
+        unspread(rooms);
+
+        long deals = 0;
+        for (int c = 0; c < 6; c++) {
+            long d = dot(characters[c], byCharacter);
+            cards[c] += sign * d;
+            deals += d;
+        }
+        for (int w = 0; w < 6; w++)
+            cards[6 + w] += sign * dot(weapons[w], byWeapon);
+
+        for (int i = 0; i < anyCharacter.size; i++)
+            byCharacter[anyCharacter.index[i]] = 0;
+        for (int j = 0; j < anyWeapon.size; j++)
+            byWeapon[anyWeapon.index[j]] = 0;
+        total += sign * deals;
+        return deals != 0;
+    }
+
+    /**
+     * Everything we know about the unknown cards of a category, the players each
+     * could go to and ENVELOPE if it could be in the envelope, packed 7 bits a card.
+     * A card we know the player of is 0 and is not dealt, and the envelope's card,
+     * if we know it, can only go to the envelope.
+     *
+     * @return the key, or -1 if a card can go nowhere
+     */
+    private long key(int[] forbid, int category) {
+        int placed = 0;
+        for (int p = 0; p < players; p++)
+            placed |= has[p];
+        long key = 0;
+        int shift = 0;
+        for (int cards = category; cards != 0; cards &= cards - 1, shift += 7) {
+            int bit = cards & -cards;
+            if ((has[players] & bit) != 0)
+                key |= (long) ENVELOPE << shift;
+            if ((has[players] & bit) != 0 || (placed & bit) != 0)
+                continue;
+            long owners = (forbid[players] & bit) == 0 ? ENVELOPE : 0;
+            for (int p = 0; p < players; p++)
+                if (caps[p] > 0 && (forbid[p] & bit) == 0)
+                    owners |= 1L << p;
+            if (owners == 0)
+                return -1;
+            key |= owners << shift;
+        }
+        return key;
+    }
+
+    /**
+     * The counts for each card of the category being in the envelope, null where it
+     * cannot be, and after them the counts for any card of it being in the envelope
+     */
+    private Sparse[] categoryCounts(int category, long key) {
+        Sparse[] counts = categories.get(key, capsKey, category);
+        if (counts != null)
+            return counts;
+
+        int size = Integer.bitCount(CATEGORIES[category]);
+        int constrained = positions(category, chosenAll);
+        Sparse[] base = base(category, key, constrained);
+        counts = new Sparse[size + 1];
+        // a card no constraint is about was left out of the base, so the cards the constraints are about
+        // are dealt on top, and one of those in the envelope leaves all the others dealt
+        for (int envelope = 0; envelope < size; envelope++) {
+            if (base[envelope] == null)
+                continue;
+            int same = envelope - 1;
+            while (same >= 0 && base[same] != base[envelope])
+                same--;
+            counts[envelope] = same >= 0 ? counts[same] : dealAll(key, constrained, base[envelope], null);
+        }
+        if (base[size] != null)
+            dealAll(key, constrained, base[size], counts);
+        for (int envelope = 0; envelope < size; envelope++)
+            if (counts[envelope] != null)
+                for (int i = 0; i < counts[envelope].size; i++)
+                    add(counts[envelope].index[i], counts[envelope].count[i]);
+        counts[size] = collect();
+        categories.put(key, capsKey, category, counts);
+        return counts;
+    }
+
+    /**
+     * The counts of a category with the cards no chosen constraint is about dealt,
+     * leaving out each that could be in the envelope in turn, and after them the
+     * counts with all of them dealt. These are kept from turn to turn while nothing
+     * new is known about those cards.
+     */
+    private Sparse[] base(int category, long key, int constrained) {
+        int free = positions(category, -1) & ~constrained;
+        long freeKey = key & bits(free);
+        Sparse[] base = bases.get(freeKey, capsKey, category);
+        if (base == null) {
+            base = new Sparse[Integer.bitCount(CATEGORIES[category]) + 1];
+            base[base.length - 1] = dealAll(freeKey, free, Sparse.one(), base);
+            bases.put(freeKey, capsKey, category, base);
+        }
+        return base;
+    }
+
+    /**
+     * The counts of a category with any one of the cards that could be in the envelope left out
+     */
+    private Sparse anyCounts(int category, long key) {
+        Sparse[] counts = categories.get(key, capsKey, CATEGORIES.length + category);
+        if (counts == null) {
+            int constrained = positions(category, chosenAll);
+            int free = positions(category, -1) & ~constrained;
+            long freeKey = key & bits(free);
+            Sparse[] base = bases.get(freeKey, capsKey, CATEGORIES.length + category);
+            if (base == null) {
+                base = dealAny(freeKey, free, new Sparse[]{Sparse.one(), null});
+                bases.put(freeKey, capsKey, CATEGORIES.length + category, base);
+            }
+            counts = dealAny(key, constrained, base);
+            categories.put(key, capsKey, CATEGORIES.length + category, counts);
+        }
+        return counts[1];
+    }
+
+    /**
+     * The positions within a category of the cards of the mask
+     */
+    private static int positions(int category, int cards) {
+        return (cards & CATEGORIES[category]) >>> Integer.numberOfTrailingZeros(CATEGORIES[category]);
+    }
+
+    /**
+     * The bits of a key for the cards at the positions
+     */
+    private static long bits(int positions) {
+        long bits = 0;
+        for (int cards = positions; cards != 0; cards &= cards - 1)
+            bits |= 0x7FL << (7 * Integer.numberOfTrailingZeros(cards));
+        return bits;
+    }
+
+    /**
+     * Deals the cards at the positions given onto both the counts with every card
+     * dealt and those with one card left out for the envelope, which could be any
+     * card that can be in the envelope
+     *
+     * @return the two counts after the cards are dealt
+     */
+    private Sparse[] dealAny(long key, int positions, Sparse[] ways) {
+        Sparse all = ways[0], one = ways[1];
+        for (int cards = positions; cards != 0; cards &= cards - 1) {
+            long owners = owners(key, Integer.numberOfTrailingZeros(cards));
+            if (owners == 0)
+                continue;
+            one = deal(one, owners, (owners & ENVELOPE) != 0 ? all : null);
+            all = deal(all, owners, null);
+        }
+        return new Sparse[]{all, one};
+    }
+
+    /**
+     * Deals the cards at the positions given onto the counts. Where there is room,
+     * puts the counts with each card that could be in the envelope left out, which
+     * is the same for cards that could go to the same owners.
+     *
+     * @return the counts with all of them dealt, or null if there are none
+     */
+    private Sparse dealAll(long key, int positions, Sparse ways, Sparse[] leftOut) {
+        int[] order = new int[Integer.bitCount(positions)];
+        int m = 0;
+        for (int cards = positions; cards != 0 && ways != null; cards &= cards - 1) {
+            int card = Integer.numberOfTrailingZeros(cards);
+            if (leftOut != null && (owners(key, card) & ENVELOPE) != 0)
+                order[m++] = card;
+            else if (owners(key, card) != 0)
+                ways = deal(ways, owners(key, card), null);
+        }
+        // those that could be in the envelope are dealt last, by their owners, so each
+        // is left out of those after the ones before it are dealt
+        for (int i = 1; i < m; i++)
+            for (int j = i; j > 0 && owners(key, order[j - 1]) > owners(key, order[j]); j--)
+                swap(order, j - 1, j);
+        for (int i = 0; i < m && ways != null; i++) {
+            long mine = owners(key, order[i]);
+            if (i + 1 == m || owners(key, order[i + 1]) != mine) {
+                Sparse without = ways;
+                for (int j = i + 1; j < m && without != null; j++)
+                    without = deal(without, owners(key, order[j]), null);
+                for (int j = i; j >= 0 && owners(key, order[j]) == mine; j--)
+                    leftOut[order[j]] = without;
+            }
+            ways = deal(ways, mine, null);
+        }
+        return ways;
+    }
+
+    private static long owners(long key, int card) {
+        return (key >>> (7 * card)) & 0x7F;
+    }
+
+    /**
+     * Gives one more card to each of the players that could have it, and adds the
+     * counts of when it is not dealt, if there are any
+     *
+     * @return the new counts, or null if there are none
+     */
+    private Sparse deal(Sparse ways, long owners, Sparse notDealt) {
+        long to = owners & ~ENVELOPE;
+        if (ways != null)
+            for (int i = 0; i < ways.size; i++) {
+                int x = ways.index[i];
+                for (long left = to; left != 0; left &= left - 1) {
+                    int p = Long.numberOfTrailingZeros(left);
+                    if (((packed[x] >>> (6 * p)) & 63) < caps[p])
+                        add(x + strides[p], ways.count[i]);
+                }
+            }
+        if (notDealt != null)
+            for (int i = 0; i < notDealt.size; i++)
+                add(notDealt.index[i], notDealt.count[i]);
+        return collect();
+    }
+
+    /**
+     * Every way of putting two sets of counts together that fits in what is left of the hands
+     *
+     * @return the counts, or null if there are none
+     */
+    private Sparse convolve(Sparse a, Sparse b) {
+        if (a == null || b == null)
+            return null;
+        for (int i = 0; i < a.size; i++) {
+            int x = a.index[i];
+            long vector = packed[x] + bias;
+            long count = a.count[i];
+            for (int j = 0; j < b.size; j++) {
+                // no player may get more cards than their hand holds
+                if (((vector + packed[b.index[j]]) & high) == 0)
+                    add(x + b.index[j], count * b.count[j]);
+            }
+        }
+        return collect();
+    }
+
+    /**
+     * Spreads counts out so the rest of a hand can be looked up directly
+     */
+    private void spread(Sparse s) {
+        for (int i = 0; i < s.size; i++)
+            dense[s.index[i]] = s.count[i];
+    }
+
+    private void unspread(Sparse s) {
+        for (int i = 0; i < s.size; i++)
+            dense[s.index[i]] = 0;
+    }
+
+    /**
+     * The counts times the dense ones at the same vectors
+     */
+    private static long dot(Sparse s, long[] dense) {
+        if (s == null)
+            return 0;
+        long sum = 0;
+        for (int i = 0; i < s.size; i++)
+            sum += s.count[i] * dense[s.index[i]];
+        return sum;
+    }
+
+    /**
+     * The number of deals that fill every hand with these counts and the dense ones
+     */
+    private long fill(Sparse s, long[] dense) {
+        if (s == null)
+            return 0;
+        long sum = 0;
+        for (int i = 0; i < s.size; i++)
+            sum += s.count[i] * dense[full - s.index[i]];
+        return sum;
+    }
+
+    /**
+     * Adds to the count of a vector in the scratch counts, remembering which vectors were used
+     */
+    private void add(int index, long count) {
+        if (scratch[index] == 0)
+            touched[used++] = index;
+        scratch[index] += count;
+    }
+
+    /**
+     * Takes the scratch counts as a Sparse and clears them
+     *
+     * @return the counts, or null if there were none
+     */
+    private Sparse collect() {
+        if (used == 0)
+            return null;
+        Sparse s = new Sparse(used);
+        for (int i = 0; i < used; i++) {
+            s.index[i] = touched[i];
+            s.count[i] = scratch[touched[i]];
+            scratch[touched[i]] = 0;
+        }
+        used = 0;
+        return s;
+    }
+
+    /*********************************/
+    /*          ENVELOPES            */
+    /*********************************/
+
+    /**
+     * Weighs every envelope, and so every room, for the terms of the last update
+     */
+    private void weigh() {
+        if (weighed)
+            return;
+        Arrays.fill(weights, 0);
+        for (int t = 0; t < dead.length; t++)
+            if (!dead[t])
+                addDeals(forbid(t), sign(t));
+        for (int r = 0; r < 9; r++) {
+            cards[12 + r] = 0;
+            for (int cw = 0; cw < 36; cw++)
+                cards[12 + r] += weights[cw * 9 + r];
+        }
+        weighed = true;
+    }
+
+    /**
+     * Adds the deals for every envelope, when no owner has the cards they are forbidden, to the weights
+     */
+    private void addDeals(int[] forbid, int sign) {
+        long characterKey = key(forbid, Card.CHARACTERS);
+        long weaponKey = key(forbid, Card.WEAPONS);
+        long roomKey = key(forbid, Card.ROOMS);
+        if (characterKey < 0 || weaponKey < 0 || roomKey < 0)
+            return;
+        Sparse[] byCharacter = categoryCounts(0, characterKey);
+        Sparse[] byWeapon = categoryCounts(1, weaponKey);
+        Sparse[] byRoom = categoryCounts(2, roomKey);
+        Sparse[] byPair = pairCounts(characterKey, weaponKey, byCharacter, byWeapon);
+
+        Arrays.fill(term, 0);
+        for (int r = 0; r < 9; r++) {
+            if (byRoom[r] == null) continue;
+            spread(byRoom[r]);
+            for (int cw = 0; cw < byPair.length; cw++)
+                term[cw * 9 + r] = fill(byPair[cw], dense);
+            unspread(byRoom[r]);
+        }
+        for (int e = 0; e < ENVELOPES; e++)
+            weights[e] += sign * term[e];
+    }
+
+    /**
+     * The counts of characters and weapons together for every pair of envelope cards
+     */
+    private Sparse[] pairCounts(long characterKey, long weaponKey, Sparse[] byCharacter, Sparse[] byWeapon) {
+        Sparse[] counts = pairs.get(characterKey, weaponKey, capsKey);
+        if (counts != null)
+            return counts;
+
+        counts = new Sparse[6 * 6];
+        for (int c = 0; c < 6; c++)
+            for (int w = 0; w < 6; w++)
+                counts[c * 6 + w] = convolve(byCharacter[c], byWeapon[w]);
+        pairs.put(characterKey, weaponKey, capsKey, counts);
+        return counts;
+    }
+
+    /*********************************/
+    /*          QUERIES              */
+    /*********************************/
+
+    /**
+     * The number of deals of every card that agree with the knowledge
+     */
+    public long getTotal() {
+        return total;
+    }
+
+    /**
+     * Whether every constraint was counted, otherwise the weights are an estimate
+     */
+    public boolean isExact() {
+        return exact;
+    }
+
+    /**
+     * The number of deals with these cards in the envelope, an estimate unless isExact
+     */
+    public long getWeight(int character, int weapon, int room) {
+        weigh();
+        return weights[envelope(character, weapon, room)];
+    }
+
+    /**
+     * The chance these cards are the solution, an estimate unless isExact
+     */
+    public double probability(int character, int weapon, int room) {
+        weigh();
+        return total == 0 ? 0 : (double) weights[envelope(character, weapon, room)] / total;
+    }
+
+    /**
+     * The chance the card is in the solution, an estimate unless isExact
+     */
+    public double cardProbability(int card) {
+        if (card < 0 || card >= Card.DECK_SIZE)
+            throw new IllegalArgumentException("Not a card: " + card);
+        if ((Card.ROOMS & (1 << card)) != 0)
+            weigh();
+        return total == 0 ? 0 : (double) cards[card] / total;
+    }
+
+    /**
+     * @return the id of the card of the category most likely to be in the solution
+     */
+    public int mostLikely(int category) {
+        if ((category & Card.ROOMS) != 0)
+            weigh();
+        int best = -1;
+        long bestDeals = -1;
+        for (int cards = category; cards != 0; cards &= cards - 1) {
+            int card = Integer.numberOfTrailingZeros(cards);
+            if (this.cards[card] > bestDeals) {
+                best = card;
+                bestDeals = this.cards[card];
+            }
+        }
+        return best;
+    }
+
+    private static int envelope(int character, int weapon, int room) {
+        if ((Card.CHARACTERS & (1 << character)) == 0 || (Card.WEAPONS & (1 << weapon)) == 0
+                || (Card.ROOMS & (1 << room)) == 0)
+            throw new IllegalArgumentException("Not a character, weapon and room: " + character + ", " + weapon + ", " + room);
+        return character * 54 + (weapon - 6) * 9 + (room - 12);
+    }
+
+    /**
+     * The counts that are not zero and where they are
+     */
+    private static class Sparse {
+        final int[] index;
+        final long[] count;
+        final int size;
+
+        Sparse(int size) {
+            this.index = new int[size];
+            this.count = new long[size];
+            this.size = size;
+        }
+
+        /**
+         * One way of dealing no cards
+         */
+        static Sparse one() {
+            Sparse s = new Sparse(1);
+            s.count[0] = 1;
+            return s;
+        }
+    }
+
+    /**
+     * An open addressed table of values by three long keys. When the few slots a
+     * key may go in are all taken, the value in the first of them is dropped.
+     */
+    private static class LongCache<V> {
+        private static final int SLOTS = 1 << 10;
+        private static final int PROBES = 8;
+
+        private final long[] first = new long[SLOTS];
+        private final long[] second = new long[SLOTS];
+        private final long[] third = new long[SLOTS];
+        private final Object[] values = new Object[SLOTS];
+
+        @SuppressWarnings("unchecked")
+        V get(long a, long b, long c) {
+            int slot = slot(a, b, c);
+            for (int i = 0; i < PROBES && values[slot] != null; i++, slot = (slot + 1) & (SLOTS - 1))
+                if (first[slot] == a && second[slot] == b && third[slot] == c)
+                    return (V) values[slot];
+            return null;
+        }
+
+        void put(long a, long b, long c, V value) {
+            int start = slot(a, b, c), slot = start;
+            for (int i = 0; values[slot] != null; i++) {
+                if (i == PROBES - 1) {
+                    slot = start;
+                    break;
+                }
+                slot = (slot + 1) & (SLOTS - 1);
+            }
+            first[slot] = a;
+            second[slot] = b;
+            third[slot] = c;
+            values[slot] = value;
+        }
+
+        private static int slot(long a, long b, long c) {
+            long hash = ((a * 0x9E3779B97F4A7C15L ^ b) * 0x9E3779B97F4A7C15L ^ c) * 0x9E3779B97F4A7C15L;
+            return (int) (hash >>> 54);
+        }
+    }
+}
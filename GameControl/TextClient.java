@@ -6,18 +6,21 @@ import java.io.InputStreamReader;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
-import java.util.Random;
 
 /**
  * This class is the main access for the user to play the game Cluedo.
- * It controls players actions and contains some of the games logic
+ * It reads the players actions from the console, passes them to the
+ * GameEngine as commands and prints the events that come back
  * <p>
  * Created by Jack on 23/07/2016.
  */
 public class TextClient {
 
-    private static List<Player> players;
-    private static List<Player> excludedPlayers;
+    // whether the console understands ANSI escape codes, so the screen can be cleared and drawn on
+    private static final boolean ANSI = System.console() != null && System.getenv("TERM") != null
+            && !System.getenv("TERM").equals("dumb");
+
+    private static BoardRenderer renderer;
 
     /**
      * Get integer from System.in
@@ -69,9 +72,7 @@ public class TextClient {
      * <p>
      * Author: DJP
      */
-    private static List<Player> inputPlayers(int nplayers, Game game) {
-        List<Player> players = new ArrayList<>();
-
+    private static void inputPlayers(int nplayers, GameEngine engine) {
         // A player cannot have the same token as another player
         ArrayList<Player.Token> tokens = new ArrayList<>();
         Collections.addAll(tokens, Player.Token.values());
@@ -116,9 +117,8 @@ public class TextClient {
                 token = Player.Token.valueOf(tokenName);
             }
             tokens.remove(token);
-            players.add(game.createPlayer(name, token, i+1));
+            engine.addPlayer(name, token);
         }
-        return players;
     }
 
     /**
@@ -153,40 +153,38 @@ public class TextClient {
      * moved to a current location or whether the current room they are in (if they are in one) has a secret passage.
      * It then offers the player options on what they would like to do for their turn
      *
-     * @param player
-     * @param game
+     * @param engine
      */
-    private static void playerOptions(Player player, int nmove, Game game) {
-
-        // check to see if player is in a room at the beginning of their turn
-        Room room = player.getRoom();
-        if (room != null) {
-            // check to see player was moved to this room
-            if (player.getWasMoved()) {
-                // display a message to the player informing them of a secret passage
-                System.out.println("You were placed in the " + room.toString() + " by another palyer");
-                String input = inputString("Would you like to stay here? (y/n)");
-
-                if (input.toLowerCase().startsWith("y")) {
-                	printOptions("Notepad",player.printHandAndNotepad());
-                    suggestOptions(player, game, false);
-                    return; // end this players turn
-                } // else no player can choose other option
-            }
+    private static void playerOptions(GameEngine engine) {
+        Player player = engine.getCurrentPlayer();
+        Game game = engine.getGame();
+
+        // check to see player was moved to the room they are in
+        if (engine.canStay()) {
+            System.out.println("You were placed in the " + player.getRoom().toString() + " by another palyer");
+            String input = inputString("Would you like to stay here? (y/n)");
+
+            if (input.toLowerCase().startsWith("y")) {
+                printEvents(engine, engine.execute(Command.stay()));
+                printOptions("Notepad", player.printDetectiveNotepad(engine.getGame().getCard(), engine.getPlayers()));
+                suggestOptions(engine, false);
+                return; // end this players turn
+            } // else no player can choose other option
+        }
 
-            // check if the room contains a secret passage and see if the player would like to use it.
-            if (room.hasSecretPassage(game)) {
+        // check if the room contains a secret passage and see if the player would like to use it.
+        if (engine.canUsePassage()) {
 
-                // display a message to the player informing them of a secret passage
-                System.out.println("The " + room.toString() + " leads to " + room.getSecretPassage().getName());
-                String input = inputString("Would you like to go there now? (y/n)");
+            // display a message to the player informing them of a secret passage
+            Room room = player.getRoom();
+            System.out.println("The " + room.toString() + " leads to " + room.getSecretPassage().getName());
+            String input = inputString("Would you like to go there now? (y/n)");
 
-                if (input.toLowerCase().startsWith("y")) {
-                    player.enterRoom(room.getSecretPassage());
-                    suggestOptions(player, game, false);
-                    return; // end the players turn
-                } // else no, so list players options
-            }
+            if (input.toLowerCase().startsWith("y")) {
+                printEvents(engine, engine.execute(Command.passage()));
+                suggestOptions(engine, false);
+                return; // end the players turn
+            } // else no, so list players options
         }
 
         // run forever or until a player selects an appropriate option
@@ -195,14 +193,14 @@ public class TextClient {
             String option = inputString("[move/end/accuse/notepad/more]");
             switch (option.toLowerCase()) {
                 case "view":
-                    System.out.println(game.printBoard(player));
+                    showBoard(engine);
                     break; // loop again
 
                 // move [player can only move less or equal to the dice roll]
                 // player must choose a room they wish to move close towards
                 case "move":
-                    System.out.println(game.printBoard(player));
-                    moveCurrentPlayer(player, nmove, game);
+                    showBoard(engine);
+                    moveCurrentPlayer(engine);
                     return;
 
                 // print the cards that are in your hand
@@ -210,17 +208,17 @@ public class TextClient {
                     printOptions(option, player.printHand());
                     break; // loop again
 
-                // print the cards that have been revealed by other players and that
-                // are in your hand
+                // print who holds every card as far as we can be sure, from our hand,
+                // the cards revealed to us and the suggestions of the other players
                 case "notepad":
-                    printOptions(option, player.printHandAndNotepad());
+                    printOptions(option, player.printDetectiveNotepad(engine.getGame().getCard(), engine.getPlayers()));
                     break; // loop again
 
                 // accuse [if you unsuccessfully accuse you are eliminated from the game]
                 // player can accuse anyone anywhere on the board
                 case "accuse":
                     System.out.println("Player " + player.getName() + " accuses");
-                    suggestOptions(player, game, true);
+                    suggestOptions(engine, true);
                     return;
 
                 // display a detailed list of players options
@@ -231,6 +229,7 @@ public class TextClient {
                 // end this players turn
                 case "end":
                     clearScreen();
+                    printEvents(engine, engine.execute(Command.end()));
                     return;
 
                 // let the player retry any number of times!
@@ -252,18 +251,18 @@ public class TextClient {
      * towards. It then attempts to move the player to the room unless an invalid room name was entered, in
      * which case it will throw an error and ask the player to try again.
      *
-     * @param player
-     * @param nmove
-     * @param game
+     * @param engine
      */
-    private static void moveCurrentPlayer(Player player, int nmove, Game game) {
+    private static void moveCurrentPlayer(GameEngine engine) {
+        Player player = engine.getCurrentPlayer();
+        Game game = engine.getGame();
+        printReachableRooms(engine);
+        printRoomDistances(engine);
         while (true) {
             try {
                 String inputRoom = inputString("Choose a room to move towards");
 
-                Room room = decodeRoom(game, inputRoom.toLowerCase());
-                if (room == null)
-                    room = (Room)game.getRoom(inputRoom);
+                Room room = game.getRoom(inputRoom);
 
                 // check if players chosen room is the same as the current room they are in
                 if (room.equals(player.getRoom())) {
@@ -273,19 +272,17 @@ public class TextClient {
 
                     if (input.contains("move")) {
                         throw new IllegalArgumentException(" "); // rerun this method
-                    } else // ending his turn
+                    } else { // ending his turn
+                        printEvents(engine, engine.execute(Command.end()));
                         return;
-
+                    }
                 }
 
-                if (game.movePlayer(player, nmove, room)){
+                printEvents(engine, engine.execute(Command.move(room)));
+                if (engine.canSuggest()) {
                     // the player has entered a room
-                    System.out.println(player.toString()+" has just entered the "+room.getName());
-                    printOptions("Notepad",player.printHandAndNotepad());
-                    suggestOptions(player,game,false);
-                } else { // the player did not make it to their chosen room
-                    clearScreen();
-                    System.out.println("\n" + player.toString() + " has moved towards the " + room.toString());
+                    printOptions("Notepad",player.printDetectiveNotepad(engine.getGame().getCard(), engine.getPlayers()));
+                    suggestOptions(engine, false);
                 }
 
                 return;
@@ -296,40 +293,51 @@ public class TextClient {
         }
     }
 
-    private static Room decodeRoom(Game game, String input) {
-        String s = input.substring(0, 1);
-        switch (s) {
-            case "a":
-                return game.getRoom("Kitchen");
-            case "b":
-                return game.getRoom("Ball Room");
-            case "c":
-                return game.getRoom("Conservatory");
-            case "d":
-                return game.getRoom("Billiard Room");
-            case "e":
-                return game.getRoom("Library");
-            case "f":
-                return game.getRoom("Study");
-            case "g":
-                return game.getRoom("Hall");
-            case "h":
-                return game.getRoom("Lounge");
-            case "i":
-                return game.getRoom("Dining Room");
-            default:
-                return null;
+    /**
+     * List the rooms the player can walk into with their roll, they can still head for any other room
+     */
+    private static void printReachableRooms(GameEngine engine) {
+        int rooms = engine.getReachableRooms();
+        if (rooms == 0) {
+            System.out.println("You cannot reach a room with a roll of " + engine.getRoll() + " this turn");
+            return;
+        }
+        StringBuilder sb = new StringBuilder("You can enter:");
+        for (int id = 0; id < Card.DECK_SIZE; id++) {
+            if ((rooms & 1 << id) != 0)
+                sb.append(' ').append(engine.getGame().getCard().getCard(id));
+        }
+        System.out.println(sb);
+    }
+
+    /**
+     * List every room the player can get to, nearest first, with the steps it takes to walk in
+     */
+    private static void printRoomDistances(GameEngine engine) {
+        Player player = engine.getCurrentPlayer();
+        RoomSearch.Distances distances = engine.getGame().getRoomSearch().from(player);
+        if (distances.getRooms().isEmpty())
+            return;
+        StringBuilder sb = new StringBuilder("Nearest first:");
+        for (Room room : distances.getRooms()) {
+            sb.append(' ').append(room);
+            if (distances.byPassage(room))
+                sb.append(" (secret passage),");
+            else
+                sb.append(" (").append(distances.getSteps(room) + 1).append("),");
         }
+        sb.setLength(sb.length() - 1);
+        System.out.println(sb);
     }
 
     /**
      * The logic behind suggesting a killer in a specific room. We cover the basis that a
      * player can suggest or accuse anyone on the board.
      *
-     * @param player
-     * @param game
+     * @param engine
      */
-    private static void suggestOptions(Player player, Game game, boolean accusing) {
+    private static void suggestOptions(GameEngine engine, boolean accusing) {
+        Game game = engine.getGame();
         // player asks question
         while (true) {
             System.out.println("********************");
@@ -337,58 +345,20 @@ public class TextClient {
             try {
                 // get the cards corresponding to the input names
                 System.out.println("Make a suggestion/accusation");
-                Card room = player.getRoom();
                 String person = inputString("Was it character?");
                 Card character = game.getCharacter(person);
                 String tool = inputString("With the weapon");
                 Card weapon = game.getWeapon(tool);
 
-                ArrayList<Card> guess = new ArrayList<>();
-
                 // these are instructions for when we accuse
                 if (accusing) {
-                    try {
-                        String accuseRoom = inputString("In the room");
-                        Room r = (Room)game.getRoom(accuseRoom);
-                        accuseOptions(player, game, character, weapon, r);
-                        return;
-                    } catch (IllegalArgumentException e) {
-                        throw e; // repeat the loop again
-                    }
-                }
-
-                // moves our accused player into the room, they then remain in the room until there turn
-                Player accusedPlayer = getPlayer(Player.Token.valueOf(character.getName().replaceAll("\\s", "")));
-                if (accusedPlayer != null && player != accusedPlayer) { // move the players token/position to the corresponding room
-                    moveAccused(accusedPlayer, (Room) room);
-                }
-                // if no player has the token asked, continue with the game as there may be a less then 6 players
-
-                // this is used to determine our check left of play when revealing a card
-                guess.add(room);
-                guess.add(character);
-                guess.add(weapon);
-
-                // it is essentially the end of the players turn, hide their information
-                clearScreen();
-
-                // displays the information on the output of what the current player suggested
-                System.out.println();
-                System.out.println("Player " + player.getName() + " who is " + player.getToken().name() + " asks...");
-                System.out.printf("Was it %1s with the %1s in the %1s\n\n", character, weapon, room);
-
-                // now we check each player beginning to the left has a card
-                int start = players.indexOf(player);
-
-                // check left direction of player
-                if (revealCard(guess, player, start + 1, players.size()))
-                    return;
-                    // now check the other left of the player
-                else if (revealCard(guess, player, 0, start))
+                    String accuseRoom = inputString("In the room");
+                    Room r = (Room)game.getRoom(accuseRoom);
+                    printEvents(engine, engine.execute(Command.accuse(character, weapon, r)));
                     return;
-                else
-                    System.out.println("No player revealed a card, put on your poker face :)");
+                }
 
+                printEvents(engine, engine.execute(Command.suggest(character, weapon)));
                 return;
             } catch (IllegalArgumentException e) {
                 System.out.println(e.getMessage());
@@ -401,103 +371,98 @@ public class TextClient {
      * to see a previous players information
      */
     private static void clearScreen() {
+        if (ANSI) {
+            System.out.print(renderer.clearText());
+            return;
+        }
         for (int i = 0; i < 100; i++)
             System.out.println();
     }
 
     /**
-     * Moves the player to it's new location room, also updates the players location
-     *
-     * @param player
-     * @param room
-     */
-    private static void moveAccused(Player player, Room room) {
-        // because some rooms have multiple doors, it is best to sit a player at a door of
-        // whichever our room returns, (as our rooms are stored in a set)
-
-        Door door = room.getDoors().iterator().next();
-        // move the accused player to this doors location
-        player.move(door.getPos());
-        // update the room the player is currently in
-        player.enterRoom(room);
-        // set the player was moved
-        player.setWasMoved();
-
-    }
-
-    /**
-     * Returns the player corresponding to the token otherwise null
-     *
-     * @param token
-     * @return
+     * Shows the board with every player on it. On an ANSI console the board stays at
+     * the top of the screen, so only the squares that changed are drawn
      */
-    private static Player getPlayer(Player.Token token) {
-        for (Player p : players) {
-            if (p.getToken() == token) {
-                return p;
-            }
+    private static void showBoard(GameEngine engine) {
+        if (!ANSI) {
+            System.out.println(engine.getGame().printBoard(engine.getPlayers()));
+            return;
         }
-        return null;
+        System.out.print(renderer.update(engine.getPlayers()));
+        System.out.println(engine.getGame().printKey(engine.getPlayers()));
     }
 
     /**
-     * Asks every player from start to end to reveal a card if they have it
+     * Prints the events of a command to the console. Revealed cards are not printed,
+     * the player they were shown to can find them in their notepad
      *
-     * @param guess
-     * @param start
-     * @param end
-     * @return
+     * @param engine
+     * @param events
      */
-    private static boolean revealCard(ArrayList<Card> guess, Player player, int start, int end) {
-        for (int i = start; i < end; i++) {
-            Player leftPlayer = players.get(i);
-            if (leftPlayer.checkCards(guess) && leftPlayer != player) {
-                // force leftPlayer to reveal a card to current player
-                // then add it to the inventory then break method
-                Card reveal = leftPlayer.pickRandomCardToReveal(guess);
-                player.addCardToInventory(reveal);
-                System.out.println(leftPlayer.getName() + " revealed a card to " + player.getName());
-
-                // decide whether to give the other player the option of revealing a certain card
-                // or not
-                return true; //finished
-            } else
-                System.out.println(leftPlayer.getName() + " cannot answer");
-        }
-        return false; // no player in this list has any of the guess cards
-    }
+    private static void printEvents(GameEngine engine, List<Event> events) {
+        boolean firstTime = false; // the first turn of a round
+        for (Event e : events) {
+            Player player = e.getPlayer();
+            switch (e.getType()) {
+                case ROUND_STARTED:
+                    System.out.println("\n********************");
+                    System.out.println("***** TURN " + e.getValue() + " *******");
+                    System.out.println("********************\n");
+                    firstTime = true;
+                    break;
+                case TURN_STARTED:
+                    if (!firstTime) {
+                        System.out.println("\n********************\n");
+                    }
+                    firstTime = false;
+                    break;
+                case DICE_ROLLED:
+                    System.out.println(player.getName() + " rolls a " + e.getValue() + ".");
+                    break;
+                case MOVED:
+                    clearScreen();
+                    System.out.println("\n" + player.toString() + " has moved towards the " + e.getRoom().toString());
+                    break;
+                case ENTERED_ROOM:
+                    System.out.println(player.toString() + " has just entered the " + e.getRoom().getName());
+                    break;
+                case SUGGESTED:
+                    // it is essentially the end of the players turn, hide their information
+                    clearScreen();
 
-    /**
-     * The logic for accusing another player. This is where you win the game or loose
-     *
-     * @param player
-     * @param game
-     */
-    private static void accuseOptions(Player player, Game game, Card character, Card weapon, Card room) {
-        // A player can accuse anywhere on the board
-        // This is how a player can win the game
-        if (game.getSolution().contains(character) &&
-                game.getSolution().contains(weapon) &&
-                game.getSolution().contains(room)) {
-            // the player has won the game
-            System.out.println("\n***************************");
-            System.out.println("CONGRATULATIONS YOU WON " + player.getName() + "!!!");
-            System.out.println("*****************************\n");
-            printSolution(game);
-            System.out.println("Game Over");
-            System.exit(0);// exit the program
-        } else { // the guess was incorrect therefor the player is excluded
-            // clear the screen
-            clearScreen();
-            System.out.println("Your accusation was incorrect. You have been eliminated");
-            excludedPlayers.add(player);
-            if (players.size() - excludedPlayers.size() < 2) {
-                System.out.println("There is only one player left in the game, therefore the game is over!");
-                printSolution(game);
-                System.exit(0);
+                    // displays the information on the output of what the current player suggested
+                    System.out.println();
+                    System.out.println("Player " + player.getName() + " who is " + player.getToken().name() + " asks...");
+                    System.out.printf("Was it %1s with the %1s in the %1s\n\n", e.getCharacter(), e.getWeapon(), e.getRoom());
+                    break;
+                case CANNOT_ANSWER:
+                    System.out.println(player.getName() + " cannot answer");
+                    break;
+                case CARD_REVEALED:
+                    System.out.println(player.getName() + " revealed a card to " + e.getOther().getName());
+                    break;
+                case NO_CARD_REVEALED:
+                    System.out.println("No player revealed a card, put on your poker face :)");
+                    break;
+                case WON:
+                    // the player has won the game
+                    System.out.println("\n***************************");
+                    System.out.println("CONGRATULATIONS YOU WON " + player.getName() + "!!!");
+                    System.out.println("*****************************\n");
+                    break;
+                case ELIMINATED:
+                    // clear the screen
+                    clearScreen();
+                    System.out.println("Your accusation was incorrect. You have been eliminated");
+                    break;
+                case GAME_OVER:
+                    if (player == null)
+                        System.out.println("There is only one player left in the game, therefore the game is over!");
+                    break;
+                default:
+                    break;
             }
         }
-
     }
 
     /**
@@ -520,6 +485,8 @@ public class TextClient {
      */
     public static void main(String[] args) {
         Game game = new Game();
+        GameEngine engine = new GameEngine(game);
+        renderer = new BoardRenderer(game.getBoard());
 
         System.out.println("*********************************");
         String art = "   ________               __    \n" +
@@ -537,35 +504,18 @@ public class TextClient {
 
         //players
         int nplayers = inputNumber("How many players? [2-6]");
-        players = inputPlayers(nplayers, game);
-        excludedPlayers = new ArrayList<>();
+        inputPlayers(nplayers, engine);
 
-        // deal cards to all the players
-        game.dealCards(players);
+        // deal cards to all the players and play the game
+        printEvents(engine, engine.start());
+        while (!engine.isOver())
+            playerOptions(engine);
 
-        // play the game
-        int turn = 1;
-        Random dice = new Random();
-        while (true) {
-
-            System.out.println("\n********************");
-            System.out.println("***** TURN " + turn + " *******");
-            System.out.println("********************\n");
-            boolean firstTime = true;
-            for (Player player : players) {
-                // check if player is disqualified from the game
-                if (!excludedPlayers.contains(player)) {
-                    if (!firstTime) {
-                        System.out.println("\n********************\n");
-                    }
-                    firstTime = false;
-                    int roll = dice.nextInt(10) + 2;
-                    System.out.println(player.getName() + " rolls a " + roll + ".");
-                    playerOptions(player, roll, game);
-                    turn++;
-                }
-            }
-        }
+        if (ANSI)
+            System.out.print(renderer.release());
+        printSolution(game);
+        if (engine.getWinner() != null)
+            System.out.println("Game Over");
     }
 
 }
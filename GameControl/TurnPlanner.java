@@ -0,0 +1,244 @@
+package GameControl;
+
+import java.util.Arrays;
+
+/**
+ * A TurnPlanner knows how many turns it takes, on average with the dice the
+ * GameEngine rolls, to get into each room from every square and every other room.
+ * <p>
+ * The turns to walk into a room whose door is some steps away are worked out by
+ * dynamic programming over the steps left after each roll. Going between rooms a
+ * player can also take a secret passage, which takes a turn, so the quickest way
+ * from every room to every other is found over the graph of rooms, walking or
+ * through passages. From a square the quickest way is to walk into the room, or
+ * into another room first and go on from there.
+ * <p>
+ * On boards of up to MAX_SQUARES squares the answers for every square are worked
+ * out when the planner is made, so asking is an array read. Bigger boards search
+ * out from the square each time they are asked.
+ */
+public class TurnPlanner {
+
+    public static final double UNREACHABLE = Double.POSITIVE_INFINITY;
+    public static final int MAX_SQUARES = 1 << 16;
+
+    private static final int FIRST_ROOM = Integer.numberOfTrailingZeros(Card.ROOMS);
+    private static final int ROOMS = Integer.bitCount(Card.ROOMS);
+
+    // the turns to walk in are kept exactly up to this many steps, further on each roll walks its average
+    private static final int EXACT = 1024;
+    private static final double[] WALK = walkTurns();
+
+    private final CompiledBoard board;
+    private final RoomSearch search;
+    private final Room[] rooms = new Room[ROOMS]; // the rooms on the board, by card id less the first room's
+
+    // the quickest way between every two rooms, and the room to go into first on the way
+    private final double[][] between = new double[ROOMS][ROOMS];
+    private final int[][] via = new int[ROOMS][ROOMS];
+
+    // the quickest way from every square to every room and the room to go into first, null on bigger boards
+    private final float[] turns;
+    private final byte[] first;
+
+    public TurnPlanner(CompiledBoard board, RoomSearch search) {
+        this.board = board;
+        this.search = search;
+        for (Room room : board.getRooms()) {
+            if (!room.getDoors().isEmpty())
+                rooms[index(room)] = room;
+        }
+        planRooms();
+
+        if (board.size() > MAX_SQUARES) {
+            turns = null;
+            first = null;
+            return;
+        }
+        turns = new float[board.size() * ROOMS];
+        first = new byte[board.size() * ROOMS];
+        int[][] steps = new int[ROOMS][];
+        for (int q = 0; q < ROOMS; q++) {
+            if (rooms[q] != null)
+                steps[q] = board.getGraph().distances(doors(rooms[q]));
+        }
+        int[] toRoom = new int[ROOMS];
+        for (int cell = 0; cell < board.size(); cell++) {
+            for (int q = 0; q < ROOMS; q++)
+                toRoom[q] = steps[q] == null ? RoomSearch.UNREACHABLE : steps[q][cell];
+            for (int t = 0; t < ROOMS; t++) {
+                int at = cell * ROOMS + t;
+                first[at] = (byte) plan(toRoom, t);
+                turns[at] = first[at] < 0 ? Float.POSITIVE_INFINITY : (float) (walk(toRoom[first[at]]) + between[first[at]][t]);
+            }
+        }
+    }
+
+    /**
+     * The turns to walk into a room whose door is this many steps away, with a step
+     * to spare to go in, averaged over the rolls of the dice
+     */
+    public static double walk(int steps) {
+        if (steps < 0)
+            return UNREACHABLE;
+        int need = steps + 1;
+        if (need < WALK.length)
+            return WALK[need];
+        double average = (GameEngine.MIN_ROLL + GameEngine.MAX_ROLL) / 2.0;
+        return WALK[WALK.length - 1] + (need - WALK.length + 1) / average;
+    }
+
+    /**
+     * WALK[n] is the turns it takes to walk n steps. A turn that rolls fewer leaves
+     * the rest to walk, so each is one turn more than the average over the rolls of what is left.
+     */
+    private static double[] walkTurns() {
+        double chance = 1.0 / (GameEngine.MAX_ROLL - GameEngine.MIN_ROLL + 1);
+        double[] walk = new double[EXACT + 1];
+        for (int n = 1; n <= EXACT; n++) {
+            walk[n] = 1;
+            for (int roll = GameEngine.MIN_ROLL; roll <= GameEngine.MAX_ROLL && roll < n; roll++)
+                walk[n] += chance * walk[n - roll];
+        }
+        return walk;
+    }
+
+    /**
+     * The quickest way between every two rooms, found over the graph of rooms with a
+     * walk or a passage between each two
+     */
+    private void planRooms() {
+        for (double[] row : between)
+            Arrays.fill(row, UNREACHABLE);
+        for (int[] row : via)
+            Arrays.fill(row, -1);
+        for (int a = 0; a < ROOMS; a++) {
+            if (rooms[a] == null)
+                continue;
+            between[a][a] = 0;
+            via[a][a] = a;
+            RoomSearch.Distances distances = search.from(rooms[a]);
+            for (Room room : distances.getRooms()) {
+                int b = index(room);
+                between[a][b] = distances.byPassage(room) ? 1 : walk(distances.getSteps(room));
+                via[a][b] = b;
+            }
+        }
+        for (int k = 0; k < ROOMS; k++)
+            for (int a = 0; a < ROOMS; a++)
+                for (int b = 0; b < ROOMS; b++) {
+                    if (between[a][k] + between[k][b] < between[a][b]) {
+                        between[a][b] = between[a][k] + between[k][b];
+                        via[a][b] = via[a][k];
+                    }
+                }
+    }
+
+    /**
+     * The room to go into first on the quickest way to room t, from somewhere the
+     * given steps from each room, or -1 if none of them lead there
+     */
+    private int plan(int[] toRoom, int t) {
+        int best = -1;
+        double fewest = UNREACHABLE;
+        // going straight there comes first when it is as quick
+        for (int i = 0; i < ROOMS; i++) {
+            int q = (t + i) % ROOMS;
+            double turns = walk(toRoom[q]) + between[q][t];
+            if (turns < fewest) {
+                fewest = turns;
+                best = q;
+            }
+        }
+        return best;
+    }
+
+    private int[] doors(Room room) {
+        int[] doors = new int[room.getDoors().size()];
+        int n = 0;
+        for (Door door : room.getDoors())
+            doors[n++] = board.cell(door.getPos());
+        return doors;
+    }
+
+    private static int index(Room room) {
+        int i = room.getId() - FIRST_ROOM;
+        if (i < 0 || i >= ROOMS)
+            throw new IllegalArgumentException(room + " is not a room");
+        return i;
+    }
+
+    /**
+     * The steps from the square to every room, with one search
+     */
+    private int[] steps(int cell) {
+        checkCell(cell);
+        RoomSearch.Distances distances = search.from(board.position(cell));
+        int[] toRoom = new int[ROOMS];
+        for (int q = 0; q < ROOMS; q++)
+            toRoom[q] = rooms[q] == null ? RoomSearch.UNREACHABLE : distances.getSteps(rooms[q]);
+        return toRoom;
+    }
+
+    private void checkCell(int cell) {
+        if (cell < 0 || cell >= board.size() || !board.isWalkable(cell))
+            throw new IllegalArgumentException("A player cannot stand on cell " + cell);
+    }
+
+    /*********************************/
+    /*          ASKING               */
+    /*********************************/
+
+    /**
+     * @return the turns it takes on average to get into the room from the square, or UNREACHABLE
+     */
+    public double getTurns(int cell, Room room) {
+        int t = index(room);
+        if (turns == null) {
+            int[] toRoom = steps(cell);
+            int q = plan(toRoom, t);
+            return q < 0 ? UNREACHABLE : walk(toRoom[q]) + between[q][t];
+        }
+        checkCell(cell);
+        return turns[cell * ROOMS + t];
+    }
+
+    /**
+     * @return the turns it takes on average to get from one room into the other, or UNREACHABLE
+     */
+    public double getTurns(Room from, Room to) {
+        return between[index(from)][index(to)];
+    }
+
+    /**
+     * @return the turns it takes the player on average to get into the room from their room or square
+     */
+    public double getTurns(Player player, Room room) {
+        if (player.getRoom() != null)
+            return getTurns(player.getRoom(), room);
+        return getTurns(board.cell(player.getPosition()), room);
+    }
+
+    /**
+     * The room the player should go into next on their quickest way to the room,
+     * which is the room itself unless going through a secret passage is quicker
+     *
+     * @return the room, or null if the player cannot get there
+     */
+    public Room getNextRoom(Player player, Room room) {
+        int t = index(room);
+        int q;
+        if (player.getRoom() != null) {
+            q = via[index(player.getRoom())][t];
+        } else {
+            int cell = board.cell(player.getPosition());
+            if (first == null) {
+                q = plan(steps(cell), t);
+            } else {
+                checkCell(cell);
+                q = first[cell * ROOMS + t];
+            }
+        }
+        return q < 0 ? null : rooms[q];
+    }
+}
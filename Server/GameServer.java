@@ -0,0 +1,251 @@
+package Server;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The GameServer hosts games of Cluedo for clients connecting over TCP, each
+ * connection is a Session and each game a Table. Clients send one command a
+ * line and get back replies and the events of their game, see Session for the
+ * commands.
+ * <p>
+ * A single thread waits on a Selector for every connection, so a session that
+ * is not doing anything only costs its socket and a few small objects. When a
+ * command arrives it is run on the executor, one at a time for each session,
+ * and the replies are queued for the selector thread to send. The executor
+ * starts a virtual thread for every command when the Java running the server
+ * has them, and otherwise reuses threads from a pool.
+ */
+public class GameServer implements Closeable {
+
+    private final ServerSocketChannel server;
+    private final Selector selector;
+    private final ExecutorService executor;
+    private final Thread selectorThread;
+
+    // sessions with replies waiting to be sent, handed over to the selector thread
+    private final Queue<Session> writes = new ConcurrentLinkedQueue<>();
+    private final ByteBuffer readBuffer = ByteBuffer.allocateDirect(8192);
+
+    private final Map<Integer, Session> sessions = new ConcurrentHashMap<>();
+    private final Map<Integer, Table> tables = new ConcurrentHashMap<>();
+    private final AtomicInteger nextSession = new AtomicInteger();
+    private final AtomicInteger nextTable = new AtomicInteger();
+    private volatile boolean running = true;
+
+    /**
+     * Opens the server on a port of localhost
+     *
+     * @param port the port to listen on, 0 for any free port
+     */
+    public GameServer(int port) throws IOException {
+        this(new InetSocketAddress("localhost", port));
+    }
+
+    public GameServer(InetSocketAddress address) throws IOException {
+        this.selector = Selector.open();
+        this.server = ServerSocketChannel.open();
+        server.bind(address, 1024);
+        server.configureBlocking(false);
+        server.register(selector, SelectionKey.OP_ACCEPT);
+        this.executor = newExecutor();
+        this.selectorThread = new Thread(this::select, "GameServer selector");
+        selectorThread.setDaemon(true);
+    }
+
+    /**
+     * A virtual thread for each task where the runtime has them, otherwise a pool
+     */
+    static ExecutorService newExecutor() {
+        try {
+            Method virtual = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) virtual.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool(r -> {
+                Thread t = new Thread(r, "GameServer worker");
+                t.setDaemon(true);
+                return t;
+            });
+        }
+    }
+
+    public GameServer start() {
+        selectorThread.start();
+        return this;
+    }
+
+    public int getPort() {
+        return server.socket().getLocalPort();
+    }
+
+    public int getSessionCount() {
+        return sessions.size();
+    }
+
+    public int getTableCount() {
+        return tables.size();
+    }
+
+    @Override
+    public void close() throws IOException {
+        running = false;
+        selector.wakeup();
+        try {
+            selectorThread.join(1000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        for (Session s : sessions.values())
+            s.close();
+        server.close();
+        selector.close();
+        executor.shutdownNow();
+    }
+
+    /*********************************/
+    /*          TABLES               */
+    /*********************************/
+
+    Table createTable() {
+        Table table = new Table(nextTable.incrementAndGet(), this);
+        tables.put(table.getId(), table);
+        return table;
+    }
+
+    Table getTable(int id) {
+        return tables.get(id);
+    }
+
+    void removeTable(Table table) {
+        tables.remove(table.getId());
+    }
+
+    /*********************************/
+    /*          SELECTING            */
+    /*********************************/
+
+    /**
+     * The selector thread, accepting connections, reading commands and sending replies
+     */
+    private void select() {
+        while (running) {
+            try {
+                selector.select();
+                Session waiting;
+                while ((waiting = writes.poll()) != null)
+                    write(waiting);
+
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if (!key.isValid())
+                        continue;
+                    if (key.isAcceptable())
+                        accept();
+                    else {
+                        Session session = (Session) key.attachment();
+                        try {
+                            if (key.isReadable())
+                                read(session);
+                            if (key.isValid() && key.isWritable())
+                                write(session);
+                        } catch (CancelledKeyException e) {
+                            // closed by another thread while we were looking at it
+                            disconnect(session);
+                        }
+                    }
+                }
+            } catch (IOException e) {
+                if (running)
+                    System.err.println("GameServer: " + e.getMessage());
+            }
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel;
+        while ((channel = server.accept()) != null) {
+            channel.configureBlocking(false);
+            Session session = new Session(nextSession.incrementAndGet(), channel, this);
+            session.setKey(channel.register(selector, SelectionKey.OP_READ, session));
+            sessions.put(session.getId(), session);
+            session.send("WELCOME Cluedo");
+        }
+    }
+
+    private void read(Session session) {
+        readBuffer.clear();
+        int n;
+        try {
+            n = session.getChannel().read(readBuffer);
+        } catch (IOException e) {
+            n = -1;
+        }
+        if (n < 0) {
+            disconnect(session);
+            return;
+        }
+        readBuffer.flip();
+        session.received(readBuffer);
+    }
+
+    private void write(Session session) {
+        try {
+            boolean done = session.flush();
+            SelectionKey key = session.getKey();
+            if (key.isValid())
+                key.interestOps(done ? SelectionKey.OP_READ : SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+        } catch (IOException | CancelledKeyException e) {
+            disconnect(session);
+        }
+    }
+
+    /**
+     * Called by the sessions when they have replies to send
+     */
+    void requestWrite(Session session) {
+        writes.add(session);
+        selector.wakeup();
+    }
+
+    /**
+     * Runs a session's commands on the executor
+     */
+    void execute(Runnable task) {
+        executor.execute(task);
+    }
+
+    void disconnect(Session session) {
+        if (sessions.remove(session.getId()) != null)
+            execute(session::close);
+    }
+
+    /**
+     * Runs a server until it is killed
+     * <p>
+     * Arguments: [port]
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 4040;
+        GameServer server = new GameServer(port).start();
+        System.out.println("Cluedo server listening on localhost:" + server.getPort());
+        Thread.currentThread().join();
+    }
+}
@@ -0,0 +1,167 @@
+package Server;
+
+import GameControl.Player;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The LoadTest starts a GameServer and loads it over localhost. First it opens a
+ * number of connections that only say hello and then sit idle, and reports how
+ * much heap the server needs for them. Then it plays games with two clients each,
+ * where every player ends their turn as soon as it starts, and reports how many
+ * commands a second the server handles while all the idle sessions are open.
+ * <p>
+ * Arguments: [idle sessions] [games] [turns a game]
+ */
+public class LoadTest {
+
+    public static void main(String[] args) throws Exception {
+        int idle = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+        int games = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+        int turns = args.length > 2 ? Integer.parseInt(args[2]) : 200;
+
+        try (GameServer server = new GameServer(0).start()) {
+            InetSocketAddress address = new InetSocketAddress("localhost", server.getPort());
+            long before = usedHeap();
+
+            List<SocketChannel> idlers = new ArrayList<>(idle);
+            ByteBuffer ping = ByteBuffer.wrap("PING\n".getBytes(StandardCharsets.UTF_8));
+            for (int i = 0; i < idle; i++) {
+                SocketChannel channel = SocketChannel.open(address);
+                ping.rewind();
+                channel.write(ping);
+                idlers.add(channel);
+            }
+            while (server.getSessionCount() < idle)
+                Thread.sleep(10);
+            long after = usedHeap();
+            System.out.println(idle + " idle sessions, " + (after - before) / 1024 + " KB of heap, "
+                    + (after - before) / Math.max(1, idle) + " bytes each");
+
+            AtomicLong commands = new AtomicLong();
+            CountDownLatch done = new CountDownLatch(games * 2);
+            long start = System.nanoTime();
+            for (int g = 0; g < games; g++)
+                play(address, turns, commands, done);
+            done.await();
+            double seconds = (System.nanoTime() - start) / 1e9;
+            System.out.printf("%d games of %d turns, %d commands in %.2fs, %.0f commands/sec%n",
+                    games, turns, commands.get(), seconds, commands.get() / seconds);
+
+            for (SocketChannel channel : idlers)
+                channel.close();
+        }
+    }
+
+    /**
+     * Two clients at a new table, each on their own thread
+     */
+    private static void play(InetSocketAddress address, int turns, AtomicLong commands, CountDownLatch done)
+            throws IOException {
+        Client first = new Client(address);
+        first.send("CREATE");
+        String table = first.expect("TABLE ").substring(6);
+        Client second = new Client(address);
+        first.send("JOIN " + table + " " + Player.Token.MissScarlett);
+        first.expect("JOINED ");
+        second.send("JOIN " + table + " " + Player.Token.ColonelMustard);
+        second.expect("JOINED ");
+        first.send("START");
+
+        for (Client client : new Client[]{first, second}) {
+            Thread thread = new Thread(() -> {
+                try {
+                    client.endTurns(turns, commands);
+                } catch (IOException e) {
+                    System.err.println("LoadTest: " + e.getMessage());
+                } finally {
+                    done.countDown();
+                }
+            });
+            thread.setDaemon(true);
+            thread.start();
+        }
+    }
+
+    private static long usedHeap() throws InterruptedException {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            Thread.sleep(50);
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    /**
+     * A client playing over a blocking socket
+     */
+    private static class Client {
+        private final Socket socket;
+        private final BufferedReader in;
+        private final PrintWriter out;
+        private final String name;
+
+        Client(InetSocketAddress address) throws IOException {
+            socket = new Socket(address.getAddress(), address.getPort());
+            socket.setTcpNoDelay(true);
+            in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+            out = new PrintWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8), true);
+            name = "load" + Integer.toHexString(System.identityHashCode(this));
+            expect("WELCOME");
+            send("NAME " + name);
+            expect("OK");
+        }
+
+        void send(String line) {
+            out.println(line);
+        }
+
+        /**
+         * Reads lines until one starts with the prefix
+         */
+        String expect(String prefix) throws IOException {
+            String line;
+            while ((line = in.readLine()) != null) {
+                if (line.startsWith(prefix))
+                    return line;
+                if (line.startsWith("ERROR"))
+                    throw new IOException(line);
+            }
+            throw new IOException("Connection closed waiting for " + prefix);
+        }
+
+        /**
+         * Ends every turn of ours as it starts, until the game has had enough turns
+         */
+        void endTurns(int turns, AtomicLong commands) throws IOException {
+            String ours = "EVENT TURN_STARTED|player=" + name + "|";
+            String line;
+            while ((line = in.readLine()) != null) {
+                if (!line.startsWith("EVENT TURN_STARTED|"))
+                    continue;
+                int turn = Integer.parseInt(line.substring(line.indexOf("value=") + 6));
+                if (turn > turns)
+                    break;
+                if (line.startsWith(ours)) {
+                    send("END");
+                    commands.incrementAndGet();
+                }
+            }
+            send("QUIT");
+            socket.close();
+        }
+    }
+}
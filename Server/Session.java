@@ -0,0 +1,365 @@
+package Server;
+
+import GameControl.Card;
+import GameControl.CardIndex;
+import GameControl.CardSet;
+import GameControl.Command;
+import GameControl.Game;
+import GameControl.Player;
+import GameControl.Room;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+
+/**
+ * A Session is one client connected to the GameServer. Everything a session
+ * needs is kept here rather than in statics, so any number of them can play at
+ * once. Commands are one a line, the first word says what to do:
+ * <pre>
+ * NAME name                     the name to play under, one word
+ * CREATE                        open a new table, replies TABLE id
+ * JOIN id token                 sit at a table as one of the Player.Tokens
+ * START                         deal and start the game at our table
+ * MOVE room                     the commands of a turn, as in Command
+ * PASSAGE
+ * STAY
+ * SUGGEST character|weapon
+ * ACCUSE character|weapon|room
+ * END
+ * HAND                          the cards in our hand
+ * BOARD                         the board with every player on it
+ * PING                          replies PONG
+ * QUIT
+ * </pre>
+ * Replies are OK, ERROR with a message, or the answer asked for, and the events
+ * of our table arrive as EVENT lines.
+ * <p>
+ * Buffers are only made once a session has something in them, so a session
+ * that is connected but idle costs very little.
+ */
+class Session {
+
+    // longer lines are thrown away
+    private static final int MAX_LINE = 1024;
+
+    private final int id;
+    private final SocketChannel channel;
+    private final GameServer server;
+    private SelectionKey key;
+
+    private volatile String name;
+    private volatile Table table;
+    private volatile Player player;
+
+    // bytes of a line still being read, only touched by the selector thread
+    private byte[] partial;
+    private int partialLength;
+
+    // commands waiting to be run, and whether a thread is running them
+    private ArrayDeque<String> commands;
+    private boolean running;
+
+    // replies waiting to be sent
+    private ArrayDeque<ByteBuffer> replies;
+    private boolean closing;
+
+    Session(int id, SocketChannel channel, GameServer server) {
+        this.id = id;
+        this.channel = channel;
+        this.server = server;
+        this.name = "Player" + id;
+    }
+
+    int getId() {
+        return id;
+    }
+
+    String getName() {
+        return name;
+    }
+
+    Player getPlayer() {
+        return player;
+    }
+
+    void setPlayer(Player player) {
+        this.player = player;
+    }
+
+    SocketChannel getChannel() {
+        return channel;
+    }
+
+    SelectionKey getKey() {
+        return key;
+    }
+
+    void setKey(SelectionKey key) {
+        this.key = key;
+    }
+
+    /*********************************/
+    /*          READING              */
+    /*********************************/
+
+    /**
+     * Bytes have arrived, every complete line is queued as a command
+     */
+    void received(ByteBuffer bytes) {
+        while (bytes.hasRemaining()) {
+            byte b = bytes.get();
+            if (b == '\n') {
+                String line = new String(partial == null ? new byte[0] : partial, 0, partialLength, StandardCharsets.UTF_8);
+                partialLength = 0;
+                queue(line.trim());
+            } else if (partialLength < MAX_LINE) {
+                if (partial == null)
+                    partial = new byte[64];
+                else if (partialLength == partial.length)
+                    partial = Arrays.copyOf(partial, Math.min(partial.length * 2, MAX_LINE));
+                partial[partialLength++] = b;
+            }
+        }
+    }
+
+    private void queue(String line) {
+        if (line.isEmpty())
+            return;
+        synchronized (this) {
+            if (commands == null)
+                commands = new ArrayDeque<>(4);
+            commands.add(line);
+            if (running)
+                return;
+            running = true;
+        }
+        server.execute(this::runCommands);
+    }
+
+    /**
+     * Runs the queued commands in order, on one thread at a time
+     */
+    private void runCommands() {
+        while (true) {
+            String line;
+            synchronized (this) {
+                line = commands.poll();
+                if (line == null) {
+                    running = false;
+                    return;
+                }
+            }
+            try {
+                handle(line);
+            } catch (IllegalArgumentException e) {
+                send("ERROR " + e.getMessage());
+            } catch (RuntimeException e) {
+                send("ERROR " + e);
+            }
+        }
+    }
+
+    /*********************************/
+    /*          COMMANDS             */
+    /*********************************/
+
+    private void handle(String line) {
+        int space = line.indexOf(' ');
+        String command = (space < 0 ? line : line.substring(0, space)).toUpperCase();
+        String args = space < 0 ? "" : line.substring(space + 1).trim();
+
+        switch (command) {
+            case "PING":
+                send("PONG");
+                break;
+            case "NAME":
+                if (args.isEmpty() || args.contains(" ") || args.contains("|"))
+                    throw new IllegalArgumentException("A name is one word");
+                if (player != null)
+                    throw new IllegalArgumentException("You cannot change your name during a game");
+                name = args;
+                send("OK");
+                break;
+            case "CREATE":
+                checkNoTable();
+                send("TABLE " + server.createTable().getId());
+                break;
+            case "JOIN":
+                join(args);
+                break;
+            case "START":
+                checkTable().start(this);
+                break;
+            case "MOVE":
+                checkTable().play(this, Command.move(game().getRoom(args)));
+                break;
+            case "PASSAGE":
+                checkTable().play(this, Command.passage());
+                break;
+            case "STAY":
+                checkTable().play(this, Command.stay());
+                break;
+            case "SUGGEST": {
+                Card deck = game().getCard();
+                int bar = args.indexOf('|');
+                checkTable().play(this, Command.suggest(card(deck, args, 0, bar, Card.CHARACTERS),
+                        card(deck, args, bar + 1, args.length(), Card.WEAPONS)));
+                break;
+            }
+            case "ACCUSE": {
+                Card deck = game().getCard();
+                int bar = args.indexOf('|');
+                int second = bar < 0 ? -1 : args.indexOf('|', bar + 1);
+                checkTable().play(this, Command.accuse(card(deck, args, 0, bar, Card.CHARACTERS),
+                        card(deck, args, bar + 1, second, Card.WEAPONS),
+                        (Room) card(deck, args, second + 1, args.length(), Card.ROOMS)));
+                break;
+            }
+            case "END":
+                checkTable().play(this, Command.end());
+                break;
+            case "HAND":
+                if (player == null)
+                    throw new IllegalArgumentException("You have not been dealt any cards");
+                send("HAND " + names(player.getHand()));
+                break;
+            case "BOARD": {
+                StringBuilder lines = new StringBuilder();
+                for (String row : checkTable().board().split("\n"))
+                    lines.append("BOARD ").append(row).append('\n');
+                sendLines(lines);
+                break;
+            }
+            case "QUIT":
+                // both at once, so the connection is closed by the flush that sends BYE
+                synchronized (this) {
+                    closing = true;
+                    send("BYE");
+                }
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown command: " + command);
+        }
+    }
+
+    private void join(String args) {
+        checkNoTable();
+        String[] parts = args.split("\\s+");
+        if (parts.length != 2)
+            throw new IllegalArgumentException("JOIN table token");
+        Table t;
+        Player.Token token;
+        try {
+            t = server.getTable(Integer.parseInt(parts[0]));
+            token = Player.Token.valueOf(parts[1]);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("JOIN table token, the tokens are " + Arrays.toString(Player.Token.values()));
+        }
+        if (t == null)
+            throw new IllegalArgumentException("There is no table " + parts[0]);
+        t.join(this, token);
+        table = t;
+    }
+
+    private void checkNoTable() {
+        if (table != null)
+            throw new IllegalArgumentException("You are already at table " + table.getId());
+    }
+
+    private Table checkTable() {
+        if (table == null)
+            throw new IllegalArgumentException("Join a table first");
+        return table;
+    }
+
+    private Game game() {
+        Game game = checkTable().getGame();
+        if (game == null)
+            throw new IllegalArgumentException("The game has not started");
+        return game;
+    }
+
+    /**
+     * The card named from start to end of the arguments, found without making any strings
+     */
+    private static Card card(Card deck, String args, int start, int end, int category) {
+        if (start < 0 || end < 0 || end > args.length() || args.indexOf('|', start) >= 0 && args.indexOf('|', start) < end)
+            throw new IllegalArgumentException("Separate the cards with |");
+        int id = CardIndex.find(args, start, end, category);
+        if (id == CardIndex.AMBIGUOUS)
+            throw new IllegalArgumentException("\"" + args.substring(start, end).trim() + "\" could be more than one card");
+        if (id < 0)
+            throw new IllegalArgumentException("There is no card called \"" + args.substring(start, end).trim() + "\"");
+        return deck.getCard(id);
+    }
+
+    static String names(CardSet cards) {
+        StringBuilder names = new StringBuilder();
+        for (Card c : cards) {
+            if (names.length() > 0) names.append('|');
+            names.append(c.getName());
+        }
+        return names.toString();
+    }
+
+    /*********************************/
+    /*          WRITING              */
+    /*********************************/
+
+    void send(String line) {
+        sendLines(new StringBuilder(line).append('\n'));
+    }
+
+    /**
+     * Queues lines, each ending in a new line, to be sent by the selector thread
+     */
+    void sendLines(CharSequence lines) {
+        ByteBuffer bytes = ByteBuffer.wrap(lines.toString().getBytes(StandardCharsets.UTF_8));
+        synchronized (this) {
+            if (replies == null)
+                replies = new ArrayDeque<>(4);
+            replies.add(bytes);
+        }
+        server.requestWrite(this);
+    }
+
+    /**
+     * Sends as much as the socket will take, on the selector thread
+     *
+     * @return true when everything queued has been sent
+     */
+    boolean flush() throws IOException {
+        synchronized (this) {
+            while (replies != null && !replies.isEmpty()) {
+                ByteBuffer next = replies.peek();
+                channel.write(next);
+                if (next.hasRemaining())
+                    return false;
+                replies.poll();
+            }
+            replies = null; // an idle session keeps no buffers
+            if (closing)
+                server.disconnect(this);
+            return true;
+        }
+    }
+
+    /**
+     * Leaves the table and closes the connection
+     */
+    void close() {
+        Table t = table;
+        if (t != null)
+            t.leave(this);
+        try {
+            channel.close();
+        } catch (IOException e) {
+            // already closed
+        }
+    }
+}
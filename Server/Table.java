@@ -0,0 +1,170 @@
+package Server;
+
+import GameControl.Command;
+import GameControl.Event;
+import GameControl.Game;
+import GameControl.GameEngine;
+import GameControl.Player;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A Table is one game on the server with the sessions playing it. Sessions take
+ * a seat with a token, and once the game is started each session's commands are
+ * passed to the table's GameEngine and the events sent to everyone at the table.
+ * <p>
+ * Only the two players involved see which card was revealed. Every method is
+ * synchronized, so the commands of one game happen one at a time even though
+ * its sessions are served on different threads.
+ */
+class Table {
+
+    private final int id;
+    private final GameServer server;
+    private final List<Session> seats = new ArrayList<>();
+    private final List<Player.Token> tokens = new ArrayList<>();
+
+    // created when the game starts
+    private Game game;
+    private GameEngine engine;
+
+    Table(int id, GameServer server) {
+        this.id = id;
+        this.server = server;
+    }
+
+    int getId() {
+        return id;
+    }
+
+    synchronized Game getGame() {
+        return game;
+    }
+
+    /**
+     * The board with every player on it
+     */
+    synchronized String board() {
+        if (engine == null)
+            throw new IllegalArgumentException("The game has not started");
+        return game.printBoard(engine.getPlayers());
+    }
+
+    synchronized void join(Session session, Player.Token token) {
+        if (engine != null)
+            throw new IllegalArgumentException("The game at table " + id + " has started");
+        if (tokens.contains(token))
+            throw new IllegalArgumentException("Token " + token + " has already been taken");
+        if (seats.size() == Player.Token.values().length)
+            throw new IllegalArgumentException("Table " + id + " is full");
+        seats.add(session);
+        tokens.add(token);
+        broadcast("JOINED " + session.getName() + " " + token);
+    }
+
+    /**
+     * Creates the game, with the players sat in the order they joined, and deals
+     */
+    synchronized void start(Session session) {
+        if (engine != null)
+            throw new IllegalArgumentException("The game has already started");
+        if (seats.size() < 2)
+            throw new IllegalArgumentException("At least two players are needed to play");
+        game = new Game();
+        engine = new GameEngine(game);
+        for (int i = 0; i < seats.size(); i++)
+            seats.get(i).setPlayer(engine.addPlayer(seats.get(i).getName(), tokens.get(i)));
+        List<Event> events = engine.start();
+        for (Session s : seats)
+            s.send("HAND " + Session.names(s.getPlayer().getHand()));
+        broadcast(events);
+    }
+
+    /**
+     * Carries out a command for the player whose turn it is
+     */
+    synchronized void play(Session session, Command command) {
+        if (engine == null)
+            throw new IllegalArgumentException("The game has not started");
+        if (engine.getCurrentPlayer() != session.getPlayer())
+            throw new IllegalArgumentException("It is not your turn");
+        broadcast(engine.execute(command));
+        if (engine.isOver())
+            server.removeTable(this);
+    }
+
+    /**
+     * A session has left. Before the game starts their seat is given up, after
+     * it their cards stay in the game and their turns are ended for them
+     */
+    synchronized void leave(Session session) {
+        int seat = seats.indexOf(session);
+        if (seat < 0)
+            return;
+        if (engine == null) {
+            seats.remove(seat);
+            tokens.remove(seat);
+        } else {
+            seats.set(seat, null);
+        }
+        broadcast("LEFT " + session.getName());
+
+        boolean empty = true;
+        for (Session s : seats)
+            empty &= s == null;
+        if (empty)
+            server.removeTable(this);
+        else if (engine != null && !engine.isOver() && engine.getCurrentPlayer() == session.getPlayer())
+            broadcast(engine.execute(Command.end()));
+    }
+
+    private void broadcast(String line) {
+        for (Session s : seats)
+            if (s != null)
+                s.send(line);
+    }
+
+    private void broadcast(List<Event> events) {
+        for (Session s : seats) {
+            if (s == null) continue;
+            StringBuilder lines = new StringBuilder();
+            for (Event e : events)
+                lines.append(format(e, s.getPlayer())).append('\n');
+            s.sendLines(lines);
+        }
+        // a player who has left cannot end their own turn
+        Player current = engine.getCurrentPlayer();
+        if (!engine.isOver() && seats.get(engine.getPlayers().indexOf(current)) == null)
+            broadcast(engine.execute(Command.end()));
+    }
+
+    /**
+     * An event as a line of the protocol, fields are separated by | as the names of cards have spaces
+     */
+    static String format(Event e, Player viewer) {
+        StringBuilder line = new StringBuilder("EVENT ").append(e.getType());
+        if (e.getPlayer() != null)
+            line.append("|player=").append(e.getPlayer().getName());
+        if (e.getOther() != null)
+            line.append("|other=").append(e.getOther().getName());
+        if (e.getCharacter() != null)
+            line.append("|character=").append(e.getCharacter());
+        if (e.getWeapon() != null)
+            line.append("|weapon=").append(e.getWeapon());
+        if (e.getRoom() != null)
+            line.append("|room=").append(e.getRoom());
+        if (e.getCard() != null && (viewer == e.getPlayer() || viewer == e.getOther()))
+            line.append("|card=").append(e.getCard());
+        switch (e.getType()) {
+            case ROUND_STARTED:
+            case TURN_STARTED:
+            case DICE_ROLLED:
+                line.append("|value=").append(e.getValue());
+                break;
+            default:
+                break;
+        }
+        return line.toString();
+    }
+}
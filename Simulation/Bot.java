@@ -0,0 +1,134 @@
+package Simulation;
+
+import GameControl.Card;
+import GameControl.Command;
+import GameControl.DeductionSolver;
+import GameControl.Game;
+import GameControl.GameEngine;
+import GameControl.Knowledge;
+import GameControl.Player;
+import GameControl.Room;
+import GameControl.TurnPlanner;
+import GameControl.SolutionProbabilities;
+
+import java.util.Random;
+
+/**
+ * A Bot plays one player of a game by choosing the commands for their turns.
+ * It suggests the cards most likely to be in the solution, and accuses as soon
+ * as the DeductionSolver leaves only one card possible in every category.
+ */
+public class Bot {
+
+    private final Player player;
+    private final Random random;
+    private SolutionProbabilities probabilities;
+
+    public Bot(Player player, Random random) {
+        this.player = player;
+        this.random = random;
+    }
+
+    public Player getPlayer() {
+        return player;
+    }
+
+    /**
+     * Choose the next command for our turn
+     */
+    public Command nextCommand(GameEngine engine) {
+        Game game = engine.getGame();
+        int unknown = DeductionSolver.solve(player.getKnowledge()).getPossibleSolution();
+
+        // suggest the character and weapon most likely to be the solution
+        if (engine.canSuggest()) {
+            probabilities().update(player.getKnowledge());
+            return Command.suggest(game.getCard().getCard(probabilities.mostLikely(unknown & Card.CHARACTERS)),
+                    game.getCard().getCard(probabilities.mostLikely(unknown & Card.WEAPONS)));
+        }
+
+        // accuse once every category is down to one card
+        int characters = unknown & Card.CHARACTERS;
+        int weapons = unknown & Card.WEAPONS;
+        int rooms = unknown & Card.ROOMS;
+        if (single(characters) && single(weapons) && single(rooms))
+            return Command.accuse(game.getCard().getCard(lowest(characters)),
+                    game.getCard().getCard(lowest(weapons)),
+                    (Room) game.getCard().getCard(lowest(rooms)));
+
+        Room room = player.getRoom();
+        if (engine.canStay() && isUnknown(room, unknown))
+            return Command.stay();
+        if (engine.canUsePassage() && isUnknown(room.getSecretPassage(), unknown))
+            return Command.passage();
+
+        // head for a room we have not seen, one we can get into this turn if there is one
+        // or else the one the fewest turns away, or anywhere else if we have seen them all
+        int here = room != null ? 1 << room.getId() : 0;
+        int targets = unknown & Card.ROOMS & ~here;
+        if ((targets & engine.getReachableRooms()) != 0)
+            return Command.move((Room) game.getCard().getCard(pick(targets & engine.getReachableRooms(), 0)));
+        if (targets == 0)
+            return Command.move((Room) game.getCard().getCard(pick(Card.ROOMS & ~here, 0)));
+
+        // going through a secret passage can be quicker than walking there
+        TurnPlanner planner = game.getTurnPlanner();
+        Room target = (Room) game.getCard().getCard(pick(quickest(planner, targets, game), 0));
+        Room next = planner.getNextRoom(player, target);
+        if (next != null && room != null && next == room.getSecretPassage() && engine.canUsePassage())
+            return Command.passage();
+        return Command.move(next != null && next != room ? next : target);
+    }
+
+    private SolutionProbabilities probabilities() {
+        if (probabilities == null) {
+            Knowledge knowledge = player.getKnowledge();
+            int[] handSizes = new int[knowledge.getPlayers()];
+            for (int i = 0; i < handSizes.length; i++)
+                handSizes[i] = knowledge.getHandSize(i);
+            probabilities = new SolutionProbabilities(handSizes);
+        }
+        return probabilities;
+    }
+
+    /**
+     * The rooms of the mask the fewest turns away, or all of them if none can be got to
+     */
+    private int quickest(TurnPlanner planner, int rooms, Game game) {
+        int quickest = 0;
+        double fewest = TurnPlanner.UNREACHABLE;
+        for (int mask = rooms; mask != 0; mask &= mask - 1) {
+            double turns = planner.getTurns(player, (Room) game.getCard().getCard(lowest(mask)));
+            if (turns > fewest || turns == TurnPlanner.UNREACHABLE)
+                continue;
+            if (turns < fewest)
+                quickest = 0;
+            fewest = turns;
+            quickest |= mask & -mask;
+        }
+        return quickest != 0 ? quickest : rooms;
+    }
+
+    private boolean isUnknown(Room room, int unknown) {
+        return room != null && (unknown & (1 << room.getId())) != 0;
+    }
+
+    /**
+     * Pick a random card id from the mask, or from the fallback when the mask is empty
+     */
+    private int pick(int mask, int fallback) {
+        if (mask == 0) mask = fallback;
+        int n = random.nextInt(Integer.bitCount(mask));
+        while (n-- > 0)
+            mask &= mask - 1;
+        return lowest(mask);
+    }
+
+    private static int lowest(int mask) {
+        return Integer.numberOfTrailingZeros(mask);
+    }
+
+    private static boolean single(int mask) {
+        return mask != 0 && (mask & (mask - 1)) == 0;
+    }
+}
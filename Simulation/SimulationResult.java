@@ -0,0 +1,105 @@
+package Simulation;
+
+import GameControl.Player;
+
+/**
+ * The totals of a batch of simulated games. Results of batches played on
+ * different threads are combined with merge.
+ */
+public class SimulationResult {
+
+    private long games;
+    private long turns;
+    private long unfinished; // games that hit the turn limit
+    private long noWinner;   // games where every player but one was eliminated
+    private final long[] winsByToken = new long[Player.Token.values().length];
+    private final long[] gamesByToken = new long[Player.Token.values().length];
+    private final long[] winsBySeat = new long[Player.Token.values().length];
+    private long nanos;
+
+    void addGame(Player.Token[] tokens, int winningSeat, int turns, boolean finished) {
+        games++;
+        this.turns += turns;
+        for (Player.Token t : tokens)
+            gamesByToken[t.ordinal()]++;
+        if (!finished)
+            unfinished++;
+        else if (winningSeat < 0)
+            noWinner++;
+        else {
+            winsByToken[tokens[winningSeat].ordinal()]++;
+            winsBySeat[winningSeat]++;
+        }
+    }
+
+    void setNanos(long nanos) {
+        this.nanos = nanos;
+    }
+
+    /**
+     * Adds the totals of the other result to this one
+     */
+    public SimulationResult merge(SimulationResult other) {
+        games += other.games;
+        turns += other.turns;
+        unfinished += other.unfinished;
+        noWinner += other.noWinner;
+        for (int i = 0; i < winsByToken.length; i++) {
+            winsByToken[i] += other.winsByToken[i];
+            gamesByToken[i] += other.gamesByToken[i];
+            winsBySeat[i] += other.winsBySeat[i];
+        }
+        return this;
+    }
+
+    public long getGames() {
+        return games;
+    }
+
+    public long getWins(Player.Token token) {
+        return winsByToken[token.ordinal()];
+    }
+
+    public long getGamesPlayed(Player.Token token) {
+        return gamesByToken[token.ordinal()];
+    }
+
+    /**
+     * Wins of the player who sat in the given seat, seat 0 moves first
+     */
+    public long getWinsBySeat(int seat) {
+        return winsBySeat[seat];
+    }
+
+    public long getUnfinished() {
+        return unfinished;
+    }
+
+    public long getNoWinner() {
+        return noWinner;
+    }
+
+    public double getAverageTurns() {
+        return games == 0 ? 0 : (double) turns / games;
+    }
+
+    public double getGamesPerSecond() {
+        return nanos == 0 ? 0 : games * 1e9 / nanos;
+    }
+
+    public String toString() {
+        StringBuilder out = new StringBuilder();
+        out.append(String.format("%d games in %.2fs, %.0f games/sec, %.1f turns per game%n",
+                games, nanos / 1e9, getGamesPerSecond(), getAverageTurns()));
+        for (Player.Token t : Player.Token.values()) {
+            long played = getGamesPlayed(t);
+            out.append(String.format("%-16s won %6.2f%% of %d games%n", t,
+                    played == 0 ? 0 : 100.0 * getWins(t) / played, played));
+        }
+        for (int seat = 0; seat < winsBySeat.length; seat++)
+            if (winsBySeat[seat] > 0)
+                out.append(String.format("seat %d won %6.2f%%%n", seat + 1, 100.0 * winsBySeat[seat] / games));
+        out.append(String.format("no winner %d, unfinished %d%n", noWinner, unfinished));
+        return out.toString();
+    }
+}
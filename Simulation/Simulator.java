@@ -0,0 +1,154 @@
+package Simulation;
+
+import GameControl.BoardLayout;
+import GameControl.Command;
+import GameControl.Game;
+import GameControl.GameEngine;
+import GameControl.Player;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * The Simulator plays complete games between Bots to answer balance questions,
+ * such as how often each token wins from its start position. Games are split
+ * between the threads of a ForkJoinPool, each batch of games gets its own random
+ * number stream and its own result which are merged at the end.
+ * <p>
+ * The random streams only depend on the seed and the games in the batch, so a run
+ * gives the same result no matter how many threads play it.
+ */
+public class Simulator {
+
+    // batches smaller than this are played on one thread
+    private static final int BATCH = 64;
+
+    // a game still going after this many turns is given up on
+    private static final int MAX_TURNS = 2000;
+
+    private final int nplayers;
+    private final long seed;
+    private final BoardLayout layout;
+
+    public Simulator(int nplayers, long seed) {
+        this(nplayers, seed, null);
+    }
+
+    /**
+     * @param layout the board every game is played on, or null for cluedoBoardDraw.txt
+     */
+    public Simulator(int nplayers, long seed, BoardLayout layout) {
+        if (nplayers < 2 || nplayers > Player.Token.values().length)
+            throw new IllegalArgumentException("Incorrect number of players: " + nplayers);
+        this.nplayers = nplayers;
+        this.seed = seed;
+        this.layout = layout;
+    }
+
+    public SimulationResult run(int games) {
+        return run(games, ForkJoinPool.commonPool());
+    }
+
+    public SimulationResult run(int games, ForkJoinPool pool) {
+        long start = System.nanoTime();
+        SimulationResult result = pool.invoke(new Batch(this, 0, games));
+        result.setNanos(System.nanoTime() - start);
+        return result;
+    }
+
+    /**
+     * A range of games, split in half until it is small enough to play
+     */
+    private static class Batch extends RecursiveTask<SimulationResult> {
+        private static final long serialVersionUID = 1L;
+
+        private final Simulator simulator;
+        private final int from;
+        private final int to;
+
+        Batch(Simulator simulator, int from, int to) {
+            this.simulator = simulator;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected SimulationResult compute() {
+            if (to - from <= BATCH) {
+                SimulationResult result = new SimulationResult();
+                SplittableRandom stream = new SplittableRandom(simulator.seed ^ mix(from));
+                for (int game = from; game < to; game++)
+                    simulator.playGame(new Random(stream.nextLong()), result);
+                return result;
+            }
+            int middle = (from + to) >>> 1;
+            Batch left = new Batch(simulator, from, middle);
+            left.fork();
+            SimulationResult right = new Batch(simulator, middle, to).compute();
+            return right.merge(left.join());
+        }
+    }
+
+    /**
+     * Plays one game from start to finish and adds it to the result
+     */
+    void playGame(Random random, SimulationResult result) {
+        Game game = new Game(random, layout);
+        GameEngine engine = new GameEngine(game, random);
+
+        // a random choice of tokens, sat in a random order
+        List<Player.Token> tokens = new ArrayList<>();
+        Collections.addAll(tokens, Player.Token.values());
+        Collections.shuffle(tokens, random);
+        Player.Token[] seats = new Player.Token[nplayers];
+        List<Bot> bots = new ArrayList<>();
+        for (int seat = 0; seat < nplayers; seat++) {
+            seats[seat] = tokens.get(seat);
+            bots.add(new Bot(engine.addPlayer("Bot " + (seat + 1), seats[seat]), random));
+        }
+
+        engine.start();
+        while (!engine.isOver() && engine.getTurn() < MAX_TURNS) {
+            Bot bot = bots.get(engine.getPlayers().indexOf(engine.getCurrentPlayer()));
+            Command command = bot.nextCommand(engine);
+            engine.execute(command);
+        }
+
+        int winner = engine.getWinner() == null ? -1 : engine.getPlayers().indexOf(engine.getWinner());
+        result.addGame(seats, winner, engine.getTurn(), engine.isOver());
+    }
+
+    /**
+     * Spreads the bits of the first game number so neighbouring batches get unrelated streams
+     */
+    private static long mix(long z) {
+        z = (z ^ (z >>> 33)) * 0xff51afd7ed558ccdL;
+        z = (z ^ (z >>> 33)) * 0xc4ceb9fe1a85ec53L;
+        return z ^ (z >>> 33);
+    }
+
+    /**
+     * Runs a simulation and prints the results
+     * <p>
+     * Arguments: [games] [players] [threads] [seed]
+     */
+    public static void main(String[] args) {
+        int games = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+        int nplayers = args.length > 1 ? Integer.parseInt(args[1]) : 6;
+        int threads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+        long seed = args.length > 3 ? Long.parseLong(args[3]) : System.nanoTime();
+
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            System.out.println("Simulating " + games + " games of " + nplayers + " players on " + threads + " threads");
+            System.out.print(new Simulator(nplayers, seed).run(games, pool));
+        } finally {
+            pool.shutdown();
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package Tests;
 
 import GameControl.Game;
+import GameControl.GameEngine;
 import GameControl.Player;
 
 import java.util.ArrayList;
@@ -66,4 +67,15 @@ class Main_Tests {
         return players;
     }
 
+    /**
+     * Helper Method to setup a started game engine with two mock players
+     */
+    GameEngine setupMockEngine() {
+        GameEngine engine = new GameEngine(new Game());
+        engine.addPlayer("jack", Player.Token.MissScarlett);
+        engine.addPlayer("john", Player.Token.MrGreen);
+        engine.start();
+        return engine;
+    }
+
 }
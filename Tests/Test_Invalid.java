@@ -1,10 +1,29 @@
 package Tests;
 
+import File_Readers.BoardCompiler;
+import File_Readers.BoardGenerator;
+import File_Readers.MoveTableCompiler;
+import GameControl.BoardLayout;
+import GameControl.Command;
+import GameControl.CompiledBoard;
 import GameControl.Game;
+import GameControl.GameEngine;
+import GameControl.MoveTable;
 import GameControl.Player;
+import GameControl.Position;
+import GameControl.Reachability;
+import GameControl.Replayer;
 import GameControl.Room;
+import GameControl.Snapshot;
 import org.junit.Test;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.List;
+
 import static junit.framework.TestCase.fail;
 
 /**
@@ -79,4 +98,257 @@ public class Test_Invalid {
 
         }
     }
+
+    /**
+     * A player cannot make a suggestion without first entering a room
+     */
+    @Test
+    public void test_suggestOutsideRoom(){
+        GameEngine engine = mocks.setupMockEngine();
+        Player player = engine.getCurrentPlayer();
+
+        try{
+            engine.execute(Command.suggest(engine.getGame().getCharacter("Plum"), engine.getGame().getWeapon("Rope")));
+            fail();
+        }catch (IllegalArgumentException e){ }
+
+        assert engine.getCurrentPlayer() == player;
+    }
+
+    /**
+     * Two players cannot play the same token
+     */
+    @Test
+    public void test_duplicateToken(){
+        GameEngine engine = new GameEngine(new Game());
+        engine.addPlayer("jack", Player.Token.MrGreen);
+
+        try{
+            engine.addPlayer("john", Player.Token.MrGreen);
+            fail();
+        }catch (IllegalArgumentException e){ }
+    }
+
+    /**
+     * A file that is not a journal cannot be replayed
+     */
+    @Test
+    public void test_replayNotAJournal() throws IOException {
+        Path file = Files.createTempFile("cluedo", ".journal");
+        try {
+            Files.write(file, "not a journal".getBytes("UTF-8"));
+            new Replayer(file);
+            fail("The file is not a journal");
+        } catch (IllegalArgumentException e) {
+
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    /**
+     * A snapshot that has been cut short cannot be restored
+     */
+    @Test
+    public void test_restoreDamagedSnapshot() {
+        GameEngine engine = mocks.setupMockEngine();
+        byte[] snapshot = Snapshot.save(engine);
+        try {
+            Snapshot.restore(Arrays.copyOf(snapshot, snapshot.length / 2));
+            fail("The snapshot has been cut short");
+        } catch (IllegalArgumentException e) {
+
+        }
+    }
+
+    /**
+     * A name that could be more than one card does not find any of them
+     */
+    @Test
+    public void test_ambiguousCardName() {
+        Game game = new Game();
+        try {
+            game.getRoom("room");
+            fail("Three rooms are called room");
+        } catch (IllegalArgumentException e) {
+            assert e.getMessage().contains("more than one");
+        }
+    }
+
+    /**
+     * A board with a door that does not open onto a path cannot be compiled
+     */
+    @Test
+    public void test_compileBoardWithBlockedDoor() throws IOException {
+        List<String> lines = Files.readAllLines(Paths.get("cluedoBoardDraw.txt"));
+        // the Kitchen door, with the path below it walled off
+        lines.set(7, "#" + lines.get(7).substring(1, 4) + "#" + lines.get(7).substring(5));
+        try {
+            BoardCompiler.compile(lines);
+            fail("The Kitchen door opens onto a wall");
+        } catch (IllegalArgumentException e) {
+            assert e.getMessage().contains("Kitchen");
+        }
+    }
+
+    /**
+     * A generated board must have room for all its rooms, and a room for every room card
+     */
+    @Test
+    public void test_generateBoardTooSmall() {
+        try {
+            new BoardGenerator(12, 12, 9, 2);
+            fail("Nine rooms do not fit on a board of 12 by 12");
+        } catch (IllegalArgumentException e) {
+
+        }
+        try {
+            new BoardGenerator(200, 200, 8, 2);
+            fail("There are nine room cards");
+        } catch (IllegalArgumentException e) {
+
+        }
+    }
+
+    /**
+     * The dice never roll more than GameEngine.MAX_ROLL, and players only stand on squares they can walk on
+     */
+    @Test
+    public void test_reachabilityOffTheBoard() {
+        Game game = new Game();
+        Reachability reachability = game.getReachability();
+        try {
+            reachability.from(game.getBoard().cell(game.getBoard().getStartPositions().get(0))).getRooms(GameEngine.MAX_ROLL + 1);
+            fail("A roll cannot be more than " + GameEngine.MAX_ROLL);
+        } catch (IllegalArgumentException e) {
+
+        }
+        try {
+            reachability.from(0);
+            fail("The corner of the board is a wall");
+        } catch (IllegalArgumentException e) {
+
+        }
+    }
+
+    /**
+     * A move table file cut short is damaged, and the table has no answers for rolls the dice cannot make
+     */
+    @Test
+    public void test_damagedMoveTable() throws IOException {
+        Game game = new Game();
+        MoveTable table = game.getMoveTable();
+        Path file = Files.createTempFile("cluedo", ".moves");
+        try {
+            MoveTableCompiler.write(table, game.getBoard(), file);
+            byte[] bytes = Files.readAllBytes(file);
+            Files.write(file, Arrays.copyOf(bytes, bytes.length - 2));
+            MoveTableCompiler.read(file, game.getBoard());
+            fail("The move table is missing an entry");
+        } catch (IllegalArgumentException e) {
+
+        } finally {
+            Files.deleteIfExists(file);
+        }
+        try {
+            table.getRooms(game.getRoom("Kitchen"), 1);
+            fail("Two dice cannot roll one");
+        } catch (IllegalArgumentException e) {
+
+        }
+    }
+
+    /**
+     * A board file cut short is damaged, and so is one whose board cannot be played on
+     */
+    @Test
+    public void test_damagedBoardFile() throws IOException {
+        BoardLayout layout = BoardCompiler.load(Paths.get("cluedoBoardDraw.txt"));
+        Path file = Files.createTempFile("cluedo", ".bin");
+        try {
+            BoardCompiler.write(layout, file, 0, 0);
+            byte[] bytes = Files.readAllBytes(file);
+            Files.write(file, Arrays.copyOf(bytes, bytes.length - 1));
+            BoardCompiler.read(file, 0, 0);
+            fail("The board file is missing a square");
+        } catch (IllegalArgumentException e) {
+
+        } finally {
+            Files.deleteIfExists(file);
+        }
+        try {
+            // wall off a start square
+            BoardCompiler.write(layout, file, 0, 0);
+            byte[] bytes = Files.readAllBytes(file);
+            int start = 0;
+            while (layout.kind(start) != CompiledBoard.START)
+                start++;
+            bytes[32 + start] = CompiledBoard.BLOCKED;
+            Files.write(file, bytes);
+            BoardCompiler.read(file, 0, 0);
+            fail("The board file has too few start squares");
+        } catch (IllegalArgumentException e) {
+
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    /**
+     * A token can only be put on the board once
+     */
+    @Test
+    public void test_occupancyTwice() {
+        Game game = new Game();
+        Player p1 = game.createPlayer("Bob", Player.Token.MrGreen, 1);
+        game.getOccupancy().add(p1);
+        try {
+            game.getOccupancy().add(p1);
+            fail("A player cannot be put on the board twice");
+        } catch (IllegalArgumentException e) {
+
+        }
+        assert game.getOccupancy().count() == 1;
+    }
+
+    /**
+     * Room distances cannot be found from a square a player cannot stand on
+     */
+    @Test
+    public void test_roomSearchOffTheBoard() {
+        Game game = new Game();
+        try {
+            game.getRoomSearch().from(new Position(-1, 3));
+            fail("There is no square off the board");
+        } catch (IllegalArgumentException e) {
+
+        }
+        try {
+            game.getRoomSearch().from(game.getBoard().position(0));
+            fail("A player cannot stand on a wall");
+        } catch (IllegalArgumentException e) {
+
+        }
+    }
+
+    /**
+     * The turns to a room cannot be asked for from a square a player cannot stand on
+     */
+    @Test
+    public void test_turnPlannerOffTheBoard() {
+        Game game = new Game();
+        try {
+            game.getTurnPlanner().getTurns(0, game.getRoom("Kitchen"));
+            fail("A player cannot stand on a wall");
+        } catch (IllegalArgumentException e) {
+
+        }
+        try {
+            game.getTurnPlanner().getTurns(game.getBoard().size(), game.getRoom("Kitchen"));
+            fail("There is no square off the end of the board");
+        } catch (IllegalArgumentException e) {
+
+        }
+    }
+
 }
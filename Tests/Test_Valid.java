@@ -1,11 +1,32 @@
 package Tests;
 
+import File_Readers.BoardCompiler;
+import File_Readers.BoardGenerator;
+import File_Readers.MoveTableCompiler;
 import GameControl.*;
+import Server.GameServer;
+import Simulation.Bot;
+import Simulation.SimulationResult;
+import Simulation.Simulator;
 import org.junit.Test;
 
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.net.Socket;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.Objects;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
 
 import static junit.framework.TestCase.fail;
 
@@ -153,4 +174,1013 @@ public class Test_Valid {
         }
     }
 
+    /**
+     * Test that walking towards a room takes the player one step closer to
+     * the door for every step they take
+     */
+    @Test
+    public void test_distanceFieldWalk() {
+        Game game = new Game();
+        Player p1 = mocks.setupMockPlayer(game);
+        Room kitchen = game.getRoom("Kitchen");
+
+        Door door = kitchen.getDoor(p1.getPosition(), game.getDistances());
+        int distance = game.getDistances().distance(door, p1.getPosition());
+        assert distance > 0;
+
+        // stop one step short of the door
+        assert !game.movePlayer(p1, distance - 1, kitchen);
+        assert game.getDistances().distance(door, p1.getPosition()) == 1;
+    }
+
+    /**
+     * Test that A* finds paths as short as the walk measured by the distance fields
+     */
+    @Test
+    public void test_pathFinderShortestPaths() {
+        Game game = new Game();
+        PathFinder finder = game.getPathFinder();
+        DistanceField distances = game.getDistances();
+        Player p1 = mocks.setupMockPlayer(game);
+        int[] path = new int[finder.size()];
+
+        for (Door door : distances.getDoors()) {
+            int length = finder.findPath(finder.cell(p1.getPosition()), finder.cell(door.getPos()), path);
+            assert length == distances.distance(door, p1.getPosition());
+            assert path[length - 1] == finder.cell(door.getPos());
+            assert finder.getExpandedNodes() > 0;
+        }
+    }
+
+    /**
+     * Test that every door on the compiled board can be found again from its square
+     * and belongs to the room it opens into
+     */
+    @Test
+    public void test_compiledBoardDoors() {
+        Game game = new Game();
+        CompiledBoard board = game.getBoard();
+        int starts = 0;
+
+        for (Room room : game.getCard().getRooms()) {
+            assert !room.getDoors().isEmpty();
+            for (Door door : room.getDoors()) {
+                int cell = board.cell(door.getPos());
+                assert board.kind(cell) == CompiledBoard.DOOR;
+                assert board.doorAt(cell) == door;
+                assert board.roomAt(cell) == room;
+            }
+        }
+        for (int cell = 0; cell < board.size(); cell++)
+            if (board.kind(cell) == CompiledBoard.START) starts++;
+        assert starts == Player.Token.values().length;
+    }
+
+    /**
+     * Test that every card has its own id and can be found again by it
+     */
+    @Test
+    public void test_cardIds() {
+        Game game = new Game();
+        Card card = game.getCard();
+        int seen = 0;
+        for (Card c : card.getDeck()) {
+            assert card.getCard(c.getId()) == c;
+            seen |= 1 << c.getId();
+        }
+        assert seen == (Card.CHARACTERS | Card.WEAPONS | Card.ROOMS);
+        assert (game.getSolution().getMask() & Card.ROOMS) != 0;
+    }
+
+    /**
+     * Test that a player can only reveal a card of the guess that is in their hand
+     */
+    @Test
+    public void test_checkCards() {
+        Game game = new Game();
+        List<Player> players = mocks.setupTwoMockPlayers(game);
+        game.dealCards(players);
+        Player p1 = players.get(0);
+
+        Card held = p1.getHand().iterator().next();
+        CardSet guess = new CardSet(game.getSolution().toArray(new Card[0]));
+        assert !p1.checkCards(guess);
+
+        guess.add(held);
+        assert p1.checkCards(guess);
+        assert p1.pickRandomCardToReveal(guess) == held;
+    }
+
+    /**
+     * Test that the renderer draws every player and, once the board is on the screen,
+     * only sends the squares that change and clears only the text below it
+     */
+    @Test
+    public void test_boardRenderer() {
+        Game game = new Game();
+        List<Player> players = mocks.setupTwoMockPlayers(game);
+        Player jack = players.get(0);
+        BoardRenderer renderer = new BoardRenderer(game.getBoard());
+
+        // every player is drawn, two chars a square and a new line a row
+        int width = game.getBoard().cols() * 2 + 1;
+        String frame = renderer.draw(players);
+        for (Player p : players)
+            assert frame.charAt(p.getPosition().x * width + p.getPosition().y * 2) == (char) ('0' + p.playerNumber);
+        assert game.printBoard(jack).startsWith(renderer.draw(Collections.singletonList(jack)));
+
+        // the first update draws everything, then only what changes is sent
+        assert renderer.update(players).startsWith(BoardRenderer.CLEAR);
+        assert renderer.update(players).isEmpty();
+        Position start = jack.getPosition();
+        jack.move(new Position(start.x + 1, start.y));
+        String diff = renderer.update(players);
+        assert !diff.isEmpty() && diff.length() < 40;
+        assert diff.contains("\u001b[" + (start.x + 2) + ";" + (start.y * 2 + 1) + "H" + jack.playerNumber);
+
+        // the text below the board is cleared without the board
+        int text = game.getBoard().rows() + 2;
+        assert renderer.clearText().equals("\u001b[" + text + ";1H\u001b[J");
+        assert renderer.update(players).isEmpty();
+
+        renderer.invalidate();
+        String full = renderer.update(players);
+        assert full.startsWith(BoardRenderer.CLEAR) && full.endsWith("\u001b[" + text + "r\u001b[" + text + ";1H");
+        renderer.release();
+        assert renderer.clearText().equals(BoardRenderer.CLEAR);
+        assert renderer.update(players).startsWith(BoardRenderer.CLEAR);
+    }
+
+    /**
+     * Test that ending a turn passes the turn on to the next player
+     */
+    @Test
+    public void test_engineTurns() {
+        GameEngine engine = mocks.setupMockEngine();
+        Player first = engine.getCurrentPlayer();
+        assert engine.getTurn() == 1;
+        assert engine.getRoll() >= 2 && engine.getRoll() <= 11;
+
+        List<Event> events = engine.execute(Command.end());
+        assert events.get(0).getType() == Event.Type.TURN_ENDED;
+        assert engine.getCurrentPlayer() != first;
+        assert engine.getTurn() == 2;
+    }
+
+    /**
+     * Test that what is known about who holds a card is passed on, both when nobody
+     * can hold it and when a player has shown one of a few cards
+     */
+    @Test
+    public void test_knowledgePropagation() {
+        Knowledge knowledge = new Knowledge(new int[]{9, 9});
+        int envelope = knowledge.getEnvelope();
+
+        // nobody holds Miss Scarlett, so she did it and the other characters did not
+        knowledge.setHasnt(0, 1);
+        knowledge.setHasnt(1, 1);
+        assert knowledge.state(0, envelope) == Knowledge.HAS;
+        assert knowledge.state(1, envelope) == Knowledge.HASNT;
+        assert (knowledge.getPossibleSolution() & Card.CHARACTERS) == 1;
+
+        // player 0 showed one of three cards, two of which they turn out not to have
+        knowledge.setShownOneOf(0, (1 << 1) | (1 << 6) | (1 << 12));
+        assert knowledge.getConstraintCount() == 1;
+        knowledge.setHasnt(0, (1 << 6) | (1 << 12));
+        assert knowledge.state(1, 0) == Knowledge.HAS;
+        assert knowledge.state(1, 1) == Knowledge.HASNT;
+        assert knowledge.getConstraintCount() == 0;
+    }
+
+    /**
+     * Test that the solver finds what follows from every deal that agrees with what is
+     * known, and turns away knowledge that no deal agrees with
+     */
+    @Test
+    public void test_deductionSolver() {
+        Knowledge knowledge = new Knowledge(new int[]{9, 9});
+        int envelope = knowledge.getEnvelope();
+
+        // the weapon is the Rope or the Dagger, player 0 has the Rope or the Kitchen,
+        // player 1 has the Dagger or the Kitchen, whoever has the Kitchen it is not the room
+        knowledge.setHasnt(envelope, Card.WEAPONS & ~((1 << 6) | (1 << 7)));
+        knowledge.setShownOneOf(0, (1 << 6) | (1 << 12));
+        knowledge.setShownOneOf(1, (1 << 7) | (1 << 12));
+        assert knowledge.state(12, envelope) == Knowledge.UNKNOWN;
+
+        Knowledge solved = DeductionSolver.solve(knowledge);
+        assert solved.state(12, envelope) == Knowledge.HASNT;
+        assert solved.state(6, envelope) == Knowledge.UNKNOWN;
+        assert knowledge.state(12, envelope) == Knowledge.UNKNOWN;
+
+        // nobody can hold the Rope
+        solved.setHasnt(0, 1 << 6);
+        solved.setHasnt(1, 1 << 6);
+        solved.setHasnt(envelope, 1 << 6);
+        try {
+            DeductionSolver.solve(solved);
+            fail("Knowledge that no deal agrees with should not solve");
+        } catch (IllegalArgumentException e) {
+        }
+    }
+
+    /**
+     * Test that the weight of every envelope is the number of deals that leave it, counted
+     * here one deal at a time
+     */
+    @Test
+    public void test_solutionProbabilities() {
+        // player 0 of three holds the last three characters and weapons
+        int[] sizes = {6, 6, 6};
+        CardSet hand = new CardSet();
+        Card card = new Card();
+        for (int id : new int[]{3, 4, 5, 9, 10, 11})
+            hand.add(card.getCard(id));
+        Knowledge knowledge = new Knowledge(sizes, 0, hand);
+        SolutionProbabilities probabilities = new SolutionProbabilities(sizes);
+
+        // with nothing else known, each of the 3 x 3 x 9 envelopes leaves 12 choose 6 deals
+        probabilities.update(knowledge);
+        assert probabilities.getWeight(0, 6, 12) == 924;
+        assert probabilities.getWeight(3, 6, 12) == 0;
+        assert probabilities.getTotal() == 81 * 924;
+        assert Math.abs(probabilities.cardProbability(1) - 1.0 / 3) < 1e-9;
+
+        knowledge.setHasnt(1, (1 << 0) | (1 << 12));
+        knowledge.setShownOneOf(2, (1 << 1) | (1 << 7) | (1 << 13));
+        knowledge.setShownOneOf(1, (1 << 2) | (1 << 8) | (1 << 14));
+        probabilities.update(knowledge);
+        assert probabilities.isExact();
+
+        // count the same deals one at a time
+        long total = 0;
+        for (int c = 0; c < 6; c++)
+            for (int w = 6; w < 12; w++)
+                for (int r = 12; r < 21; r++) {
+                    int envelope = (1 << c) | (1 << w) | (1 << r);
+                    int rest = ~hand.getMask() & ~envelope & ((1 << Card.DECK_SIZE) - 1);
+                    long deals = 0;
+                    if ((envelope & (hand.getMask() | knowledge.getHasnt(3))) == 0)
+                        for (int one = rest; one != 0; one = (one - 1) & rest) {
+                            int two = rest & ~one;
+                            if (Integer.bitCount(one) == 6 && (one & knowledge.getHasnt(1)) == 0
+                                    && (two & knowledge.getHasnt(2)) == 0
+                                    && (two & ((1 << 1) | (1 << 7) | (1 << 13))) != 0
+                                    && (one & ((1 << 2) | (1 << 8) | (1 << 14))) != 0)
+                                deals++;
+                        }
+                    assert probabilities.getWeight(c, w, r) == deals;
+                    total += deals;
+                }
+        assert probabilities.getTotal() == total;
+    }
+
+    /**
+     * Test that nothing the bots work out about the cards in a whole game is wrong
+     */
+    @Test
+    public void test_knowledgeMatchesDeal() {
+        Random random = new Random(7);
+        Game game = new Game(random);
+        GameEngine engine = new GameEngine(game, random);
+        List<Bot> bots = new ArrayList<>();
+        bots.add(new Bot(engine.addPlayer("jack", Player.Token.MissScarlett), random));
+        bots.add(new Bot(engine.addPlayer("john", Player.Token.MrGreen), random));
+        bots.add(new Bot(engine.addPlayer("jane", Player.Token.MrsWhite), random));
+        engine.start();
+
+        while (!engine.isOver() && engine.getTurn() < 300) {
+            engine.execute(bots.get(engine.getPlayers().indexOf(engine.getCurrentPlayer())).nextCommand(engine));
+            // nothing anyone has worked out, or could work out, can be wrong
+            for (Player p : engine.getPlayers()) {
+                Knowledge knowledge = DeductionSolver.solve(p.getKnowledge());
+                for (int owner = 0; owner <= knowledge.getPlayers(); owner++) {
+                    int cards = owner == knowledge.getEnvelope() ? game.getSolution().getMask()
+                            : engine.getPlayers().get(owner).getHand().getMask();
+                    assert (knowledge.getHas(owner) & ~cards) == 0;
+                    assert (knowledge.getHasnt(owner) & cards) == 0;
+                }
+            }
+        }
+    }
+
+    /**
+     * Test that accusing with the solution wins the game
+     */
+    @Test
+    public void test_engineAccuseWins() {
+        GameEngine engine = mocks.setupMockEngine();
+        Player player = engine.getCurrentPlayer();
+        Card character = null, weapon = null;
+        Room room = null;
+        for (Card c : engine.getGame().getSolution()) {
+            if (c instanceof GameControl.Character) character = c;
+            else if (c instanceof Weapon) weapon = c;
+            else room = (Room) c;
+        }
+
+        engine.execute(Command.accuse(character, weapon, room));
+        assert engine.isOver();
+        assert engine.getWinner() == player;
+    }
+
+    /**
+     * Test that simulated games all finish and give the same results no matter
+     * how many threads play them
+     */
+    @Test
+    public void test_simulatorDeterministic() {
+        Simulator simulator = new Simulator(3, 42);
+        SimulationResult one = simulator.run(200, new ForkJoinPool(1));
+        SimulationResult two = simulator.run(200, new ForkJoinPool(2));
+
+        assert one.getGames() == 200 && one.getUnfinished() == 0;
+        assert one.getAverageTurns() == two.getAverageTurns();
+        for (Player.Token token : Player.Token.values())
+            assert one.getWins(token) == two.getWins(token);
+    }
+
+    /**
+     * Test that two clients can play a game on the server over localhost, while
+     * idle connections are held open beside them
+     */
+    @Test
+    public void test_gameServer() throws IOException {
+        try (GameServer server = new GameServer(0).start()) {
+            List<Socket> sockets = new ArrayList<>();
+            try {
+                for (int i = 0; i < 20; i++)
+                    sockets.add(new Socket("localhost", server.getPort()));
+                Socket one = sockets.get(0), two = sockets.get(1);
+                BufferedReader in1 = new BufferedReader(new InputStreamReader(one.getInputStream(), "UTF-8"));
+                BufferedReader in2 = new BufferedReader(new InputStreamReader(two.getInputStream(), "UTF-8"));
+                PrintWriter out1 = new PrintWriter(new OutputStreamWriter(one.getOutputStream(), "UTF-8"), true);
+                PrintWriter out2 = new PrintWriter(new OutputStreamWriter(two.getOutputStream(), "UTF-8"), true);
+                assert in1.readLine().equals("WELCOME Cluedo");
+                assert in2.readLine().equals("WELCOME Cluedo");
+
+                out1.println("NAME jack");
+                assert in1.readLine().equals("OK");
+                out1.println("CREATE");
+                String table = in1.readLine().substring("TABLE ".length());
+                out1.println("JOIN " + table + " MissScarlett");
+                assert in1.readLine().equals("JOINED jack MissScarlett");
+                out2.println("JOIN " + table + " MissScarlett");
+                assert in2.readLine().startsWith("ERROR");
+                out2.println("END");
+                assert in2.readLine().startsWith("ERROR");
+                out2.println("NAME jill");
+                assert in2.readLine().equals("OK");
+                out2.println("JOIN " + table + " ColonelMustard");
+                assert in2.readLine().equals("JOINED jill ColonelMustard");
+                assert in1.readLine().equals("JOINED jill ColonelMustard");
+
+                out1.println("START");
+                assert in1.readLine().startsWith("HAND ");
+                assert in2.readLine().startsWith("HAND ");
+                assert in1.readLine().equals("EVENT ROUND_STARTED|value=1");
+                assert in1.readLine().equals("EVENT TURN_STARTED|player=jack|value=1");
+                assert in1.readLine().startsWith("EVENT DICE_ROLLED|player=jack|value=");
+                out2.println("END");
+                assert in2.readLine().equals("EVENT ROUND_STARTED|value=1");
+                assert in2.readLine().equals("EVENT TURN_STARTED|player=jack|value=1");
+                assert in2.readLine().startsWith("EVENT DICE_ROLLED|player=jack|value=");
+                assert in2.readLine().startsWith("ERROR");
+                out1.println("END");
+                assert in1.readLine().equals("EVENT TURN_ENDED|player=jack");
+                assert in1.readLine().equals("EVENT TURN_STARTED|player=jill|value=2");
+                assert in1.readLine().startsWith("EVENT DICE_ROLLED|player=jill|value=");
+                assert in2.readLine().equals("EVENT TURN_ENDED|player=jack");
+                assert in2.readLine().equals("EVENT TURN_STARTED|player=jill|value=2");
+                assert in2.readLine().startsWith("EVENT DICE_ROLLED|player=jill|value=");
+
+                out1.println("PING");
+                assert in1.readLine().equals("PONG");
+                assert server.getSessionCount() == 20;
+                assert server.getTableCount() == 1;
+
+                // jill leaves on her turn, so it is ended for her
+                out2.println("QUIT");
+                assert in2.readLine().equals("BYE");
+                assert in1.readLine().equals("LEFT jill");
+                assert in1.readLine().equals("EVENT TURN_ENDED|player=jill");
+                assert in1.readLine().equals("EVENT ROUND_STARTED|value=3");
+                assert in1.readLine().equals("EVENT TURN_STARTED|player=jack|value=3");
+                assert in1.readLine().startsWith("EVENT DICE_ROLLED|player=jack|value=");
+            } finally {
+                for (Socket s : sockets)
+                    s.close();
+            }
+        }
+    }
+
+    /**
+     * Test that a game recorded in a journal can be rebuilt as it was after any
+     * command, with everyone where they were and knowing what they knew
+     */
+    @Test
+    public void test_journalReplay() throws IOException {
+        Path file = Files.createTempFile("cluedo", ".journal");
+        try {
+            Random random = new Random(11);
+            GameEngine engine = new GameEngine(new Game(random), random);
+            List<Bot> bots = new ArrayList<>();
+            bots.add(new Bot(engine.addPlayer("jack", Player.Token.MissScarlett), random));
+            bots.add(new Bot(engine.addPlayer("john", Player.Token.MrGreen), random));
+            bots.add(new Bot(engine.addPlayer("jane", Player.Token.ColonelMustard), random));
+
+            List<Long> records = new ArrayList<>();
+            List<String> states = new ArrayList<>();
+            try (Journal journal = new Journal(file)) {
+                engine.setJournal(journal);
+                engine.start();
+                while (!engine.isOver() && engine.getTurn() < 200) {
+                    engine.execute(bots.get(engine.getPlayers().indexOf(engine.getCurrentPlayer())).nextCommand(engine));
+                    records.add(journal.getRecords() - 1);
+                    states.add(describe(engine));
+                }
+            }
+
+            Replayer replayer = new Replayer(file);
+            assert replayer.count() == records.get(records.size() - 1) + 1;
+            assert replayer.next() && replayer.isGame() && replayer.getPlayers() == 3;
+            assert replayer.getName(2).equals("jane") && replayer.getToken(2) == Player.Token.ColonelMustard;
+            assert replayer.getSolution() == engine.getGame().getSolution().getMask();
+            for (int i = 0; i < records.size(); i += 7)
+                assert describe(replayer.rebuild(records.get(i))).equals(states.get(i));
+            assert describe(replayer.rebuild(records.get(records.size() - 1))).equals(describe(engine));
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    /**
+     * Everything about a game that a replay has to get right
+     */
+    private static String describe(GameEngine engine) {
+        StringBuilder state = new StringBuilder();
+        state.append(engine.getTurn()).append(' ').append(engine.getRoll()).append(' ')
+                .append(engine.getCurrentPlayer().getName()).append(' ').append(engine.isOver())
+                .append(' ').append(engine.getWinner()).append(' ').append(engine.canSuggest())
+                .append(' ').append(engine.getExcludedPlayers()).append('\n');
+        for (Player p : engine.getPlayers()) {
+            state.append(p.getName()).append(' ').append(p.getPosition().x).append(',').append(p.getPosition().y)
+                    .append(' ').append(p.getRoom()).append(' ').append(p.getWasMoved())
+                    .append(' ').append(p.getHand().getMask()).append(' ').append(p.getInventory().getMask());
+            Knowledge knowledge = p.getKnowledge();
+            for (int owner = 0; owner <= knowledge.getPlayers(); owner++)
+                state.append(' ').append(knowledge.getHas(owner)).append('/').append(knowledge.getHasnt(owner));
+            state.append(' ').append(knowledge.getConstraintCount()).append('\n');
+        }
+        return state.toString();
+    }
+
+    /**
+     * Test that a game saved to a snapshot after every command is restored as it was
+     */
+    @Test
+    public void test_snapshotRestore() {
+        Random random = new Random(5);
+        GameEngine engine = new GameEngine(new Game(random), random);
+        List<Bot> bots = new ArrayList<>();
+        bots.add(new Bot(engine.addPlayer("jack", Player.Token.MrsPeacock), random));
+        bots.add(new Bot(engine.addPlayer("john", Player.Token.ProfessorPlum), random));
+        bots.add(new Bot(engine.addPlayer("jane", Player.Token.MrsWhite), random));
+        bots.add(new Bot(engine.addPlayer("jill", Player.Token.MrGreen), random));
+
+        GameEngine waiting = Snapshot.restore(Snapshot.save(engine));
+        assert !waiting.isStarted() && waiting.getPlayers().size() == 4;
+        assert waiting.getPlayers().get(3).getName().equals("jill");
+
+        engine.start();
+        Game spare = new Game();
+        while (!engine.isOver() && engine.getTurn() < 200) {
+            engine.execute(bots.get(engine.getPlayers().indexOf(engine.getCurrentPlayer())).nextCommand(engine));
+            if (engine.getTurn() % 10 == 0 || engine.isOver()) {
+                GameEngine restored = Snapshot.restore(Snapshot.save(engine), spare, random);
+                assert describe(restored).equals(describe(engine));
+                assert restored.getGame().getSolution().getMask() == engine.getGame().getSolution().getMask();
+                spare = new Game();
+            }
+        }
+    }
+
+    /**
+     * Test that cards are found by their names, the start of any of their words,
+     * their tokens and the letters of the rooms on the board
+     */
+    @Test
+    public void test_cardIndex() {
+        Game game = new Game();
+        assert game.getRoom("dining").getName().equals("Dining Room");
+        assert game.getRoom("I").getName().equals("Dining Room");
+        assert game.getRoom("b").getName().equals("Ball Room");
+        assert game.getRoom("billiard").getName().equals("Billiard Room");
+        assert game.getRoom("hall").getName().equals("Hall");
+        assert game.getRoom("BallRoom").getName().equals("Ball Room");
+        assert game.getCharacter("scar").getName().equals("Miss Scarlett");
+        assert game.getCharacter("MISS  scarlett").getName().equals("Miss Scarlett");
+        assert game.getWeapon("pipe").getName().equals("Lead Pipe");
+        assert game.getCard().getCard("leadpipe").getName().equals("Lead Pipe");
+        assert CardIndex.find("Mrs", Card.CHARACTERS) == CardIndex.AMBIGUOUS;
+        assert CardIndex.find("kitchen knife", Card.ROOMS) == CardIndex.NOT_FOUND;
+        assert CardIndex.find("SUGGEST Plum|Rope", 8, 12, Card.CHARACTERS) == game.getCharacter("Professor Plum").getId();
+
+        for (Player.Token token : Player.Token.values()) {
+            Card character = game.getCharacter(token.name());
+            assert GameEngine.tokenOf(character) == token;
+        }
+    }
+
+    /**
+     * Test that the board is compiled once to a binary file next to its drawing,
+     * which reads back the same, and that every game shares the one layout
+     */
+    @Test
+    public void test_boardCompiler() throws IOException {
+        Path dir = Files.createTempDirectory("board");
+        Path drawing = dir.resolve("board.txt");
+        Files.copy(Paths.get("cluedoBoardDraw.txt"), drawing);
+        try {
+            BoardLayout compiled = BoardCompiler.load(drawing);
+            assert BoardCompiler.load(drawing) == compiled;
+            Path binary = BoardCompiler.binaryFor(drawing);
+            assert binary.getFileName().toString().equals("board.bin");
+            assert Files.size(binary) == 32 + 2 * compiled.size();
+
+            BoardLayout read = BoardCompiler.read(binary, Files.getLastModifiedTime(drawing).toMillis(), Files.size(drawing));
+            assert read != null && read.rows() == compiled.rows() && read.cols() == compiled.cols();
+            for (int cell = 0; cell < compiled.size(); cell++)
+                assert read.kind(cell) == compiled.kind(cell) && read.room(cell) == compiled.room(cell);
+            // written for a different drawing
+            assert BoardCompiler.read(binary, 0, Files.size(drawing)) == null;
+        } finally {
+            Files.deleteIfExists(BoardCompiler.binaryFor(drawing));
+            Files.delete(drawing);
+            Files.delete(dir);
+        }
+
+        Game one = new Game();
+        Game two = new Game();
+        assert one.getBoard().getLayout() == two.getBoard().getLayout();
+        assert one.getBoard().getDoors().size() == two.getBoard().getDoors().size();
+        assert one.getBoard().getDoors().get(0) != two.getBoard().getDoors().get(0);
+        assert one.getBoard().getDoors().get(0).getRoom() == one.getCard().getCard(one.getBoard().getDoors().get(0).getRoom().getId());
+        assert one.getBoard().getStartPositions().size() == Player.Token.values().length;
+    }
+
+    /**
+     * Test that a generated board can be drawn, compiled back and played on,
+     * and that players can walk into its rooms
+     */
+    @Test
+    public void test_generatedBoard() {
+        BoardGenerator generator = new BoardGenerator(120, 100, 20, 3);
+        BoardLayout layout = generator.generate(7);
+        List<String> drawing = BoardCompiler.draw(layout);
+        assert drawing.equals(BoardCompiler.draw(generator.generate(7)));
+        assert drawing.size() == 120 && drawing.get(0).length() == 100;
+
+        BoardLayout compiled = BoardCompiler.compile(drawing);
+        for (int cell = 0; cell < layout.size(); cell++)
+            assert compiled.kind(cell) == layout.kind(cell) && compiled.room(cell) == layout.room(cell);
+
+        Game game = new Game(new Random(3), layout);
+        CompiledBoard board = game.getBoard();
+        assert board.getDoors().size() == 20 * 3;
+        assert new Position(0, 0).getNeighbours(board).size() == 2;
+        assert new Position(119, 99).isFree(board) && !new Position(120, 99).isFree(board);
+
+        Player p1 = game.createPlayer("Bob", Player.Token.MrsPeacock, 1);
+        for (Room room : game.getCard().getRooms()) {
+            p1.leaveRoom();
+            assert game.movePlayer(p1, 10000, room);
+            assert p1.getRoom() == room;
+        }
+    }
+
+    /**
+     * Test that the hierarchical search finds paths as short as the flat search,
+     * and that it moves players on boards too big for distance fields
+     */
+    @Test
+    public void test_hierarchicalPathFinder() {
+        Game game = new Game(new Random(5), new BoardGenerator(300, 300, 25, 2).generate(11));
+        CompiledBoard board = game.getBoard();
+        assert game.getDistances() == null;
+        HierarchicalPathFinder hierarchical = game.getHierarchicalPathFinder();
+        PathFinder flat = game.getPathFinder();
+
+        Random random = new Random(8);
+        int[] path = new int[board.size()];
+        for (int i = 0; i < 200; i++) {
+            int from = random.nextInt(board.size());
+            int to = random.nextInt(board.size());
+            if (!board.isWalkable(from) || !board.isWalkable(to))
+                continue;
+            int length = hierarchical.findPath(from, to, path);
+            int shortest = flat.findPath(from, to, null);
+            assert length == shortest;
+            // every step is onto a square next to the last
+            int here = from;
+            for (int step = 0; step < length; step++) {
+                assert board.isWalkable(path[step]);
+                assert Math.abs(path[step] / board.cols() - here / board.cols()) + Math.abs(path[step] % board.cols() - here % board.cols()) == 1;
+                here = path[step];
+            }
+            assert here == to;
+        }
+
+        int[] doors = {board.cell(board.getDoors().get(0).getPos()), board.cell(board.getDoors().get(40).getPos())};
+        int length = hierarchical.findNearest(doors[1], doors, null);
+        assert length == 0 && hierarchical.getTarget() == 1;
+
+        // the nearest door of each room is as near as the flat search's
+        for (int i = 0; i < 50; i++) {
+            int from = random.nextInt(board.size());
+            if (!board.isWalkable(from))
+                continue;
+            for (Room room : game.getCard().getRooms()) {
+                int[] roomDoors = new int[room.getDoors().size()];
+                int n = 0;
+                for (Door door : room.getDoors())
+                    roomDoors[n++] = board.cell(door.getPos());
+                assert hierarchical.findNearest(from, roomDoors, null) == flat.findNearest(from, roomDoors, null, null);
+            }
+        }
+
+        Player p1 = game.createPlayer("Bob", Player.Token.ColonelMustard, 1);
+        for (Room room : game.getCard().getRooms()) {
+            assert game.movePlayer(p1, 100000, room);
+            assert p1.getRoom() == room;
+        }
+    }
+
+    /**
+     * Every square within the roll is reached, and every room whose door is short of it can be walked into
+     */
+    @Test
+    public void test_reachability() {
+        checkReachability(new Game(new Random(5)));
+        checkReachability(new Game(new Random(5), new BoardGenerator(120, 100, 20, 3).generate(7)));
+
+        Game game = new Game(new Random(5));
+        Reachability reachability = game.getReachability();
+        Room kitchen = game.getRoom("Kitchen");
+        Reachability.Reach reach = reachability.from(kitchen);
+        assert reach == reachability.from(kitchen);
+        assert !reach.canEnter(kitchen, GameEngine.MAX_ROLL);
+        assert reach.getStepsToRoom(kitchen) == -1;
+        assert new Game(new Random(6)).getReachability() == reachability;
+    }
+
+    private void checkReachability(Game game) {
+        CompiledBoard board = game.getBoard();
+        PathFinder flat = game.getPathFinder();
+        Reachability reachability = game.getReachability();
+        Random random = new Random(8);
+        for (int i = 0; i < 20; ) {
+            int from = random.nextInt(board.size());
+            if (!board.isWalkable(from))
+                continue;
+            i++;
+            Reachability.Reach reach = reachability.from(from);
+            assert reach == reachability.from(from);
+            for (int roll = GameEngine.MIN_ROLL; roll <= GameEngine.MAX_ROLL; roll++) {
+                int count = 0;
+                for (int cell = 0; cell < board.size(); cell++) {
+                    if (!board.isWalkable(cell))
+                        continue;
+                    int length = flat.findPath(from, cell, null);
+                    boolean near = length != PathFinder.NO_PATH && length <= roll;
+                    assert reach.canReach(cell, roll) == near;
+                    if (near)
+                        count++;
+                }
+                assert reach.getCells(roll) == count;
+                for (int c = 0; c < count; c++)
+                    assert reach.getSteps(c) == flat.findPath(from, reach.getCell(c), null);
+
+                // the rooms we can enter are the ones movePlayer takes us into
+                if (game.getDistances() != null) {
+                    Player player = game.createPlayer("Bob", Player.Token.ColonelMustard, 1);
+                    for (Room room : game.getCard().getRooms()) {
+                        player.leaveRoom();
+                        player.move(board.position(from));
+                        assert game.movePlayer(player, roll, room) == reach.canEnter(room, roll);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * The table read in at startup gives the same rooms as searching, and the squares movePlayer walks to
+     */
+    @Test
+    public void test_moveTable() throws IOException {
+        Game game = new Game(new Random(5));
+        CompiledBoard board = game.getBoard();
+        MoveTable table = game.getMoveTable();
+        Reachability reachability = game.getReachability();
+        DistanceField distances = game.getDistances();
+        Player player = game.createPlayer("Bob", Player.Token.ColonelMustard, 1);
+        for (int cell = 0; cell < board.size(); cell++) {
+            if (!board.isWalkable(cell))
+                continue;
+            for (int roll = GameEngine.MIN_ROLL; roll <= GameEngine.MAX_ROLL; roll++) {
+                assert table.getRooms(cell, roll) == reachability.from(cell).getRooms(roll);
+                for (Room room : game.getCard().getRooms()) {
+                    int landing = table.getLanding(cell, roll, room);
+                    player.leaveRoom();
+                    player.move(board.position(cell));
+                    if (game.movePlayer(player, roll, room)) {
+                        assert board.doorAt(landing).getRoom() == room;
+                    } else {
+                        assert nearestDoor(distances, room, player.getPosition()) == nearestDoor(distances, room, board.position(landing));
+                    }
+                }
+            }
+        }
+        for (Room room : game.getCard().getRooms()) {
+            assert table.getRooms(room, GameEngine.MAX_ROLL) == reachability.from(room).getRooms(GameEngine.MAX_ROLL);
+            assert table.getLanding(room, GameEngine.MAX_ROLL, room) == MoveTable.NO_CELL;
+        }
+
+        Path file = Files.createTempFile("cluedo", ".moves");
+        try {
+            MoveTableCompiler.write(table, board, file);
+            assert Arrays.equals(MoveTableCompiler.read(file, board).getEntries(), table.getEntries());
+            Game other = new Game(new Random(5), new BoardGenerator(60, 60, 9, 2).generate(3));
+            assert MoveTableCompiler.read(file, other.getBoard()) == null;
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    private int nearestDoor(DistanceField distances, Room room, Position p) {
+        int nearest = Integer.MAX_VALUE;
+        for (Door door : room.getDoors())
+            nearest = Math.min(nearest, distances.distance(door, p));
+        return nearest;
+    }
+
+    /**
+     * Every game on a board shares one position for each square, and a square's
+     * neighbours are the walkable squares next to it
+     */
+    @Test
+    public void test_positionFlyweight() {
+        Game game = new Game(new Random(5));
+        CompiledBoard board = game.getBoard();
+        CompiledBoard other = new Game(new Random(6)).getBoard();
+        for (int cell = 0; cell < board.size(); cell++) {
+            Position p = board.position(cell);
+            assert p == board.position(p.x, p.y) && p == other.position(cell);
+            assert board.cell(p) == cell;
+            List<Position> neighbours = p.getNeighbours(board);
+            assert neighbours == p.getNeighbours(board);
+            int walkable = 0;
+            for (Position q : new Position[]{new Position(p.x, p.y - 1), new Position(p.x, p.y + 1),
+                    new Position(p.x - 1, p.y), new Position(p.x + 1, p.y)}) {
+                if (board.inBounds(q.x, q.y) && board.isWalkable(board.cell(q)))
+                    assert neighbours.get(walkable++) == board.position(q.x, q.y);
+            }
+            assert neighbours.size() == walkable;
+            assert new Position(p.x, p.y).getNeighbours(board).equals(neighbours);
+        }
+        try {
+            board.position(0).getNeighbours(board).add(board.position(1));
+            fail("The neighbours of a square cannot be changed");
+        } catch (UnsupportedOperationException e) {
+
+        }
+
+        Player player = game.createPlayer("Bob", Player.Token.ColonelMustard, 1);
+        assert player.getPosition() == board.position(board.cell(board.getStartPositions().get(5)));
+        game.movePlayer(player, 7, game.getRoom("Kitchen"));
+        assert player.getPosition() == board.position(board.cell(player.getPosition()));
+    }
+
+    /**
+     * The graph joins each walkable square to its walkable neighbours, and squares
+     * walled off from each other are turned away before any search
+     */
+    @Test
+    public void test_boardGraph() {
+        CompiledBoard board = new Game().getBoard();
+        BoardGraph graph = board.getGraph();
+        assert graph.components() == 1;
+        for (int cell = 0; cell < board.size(); cell++) {
+            assert graph.isWalkable(cell) == board.isWalkable(cell);
+            List<Position> neighbours = board.position(cell).getNeighbours(board);
+            assert graph.degree(cell) == (board.isWalkable(cell) ? neighbours.size() : 0);
+            for (int e = graph.first(cell); e < graph.first(cell) + graph.degree(cell); e++)
+                assert board.position(graph.target(e)) == neighbours.get(e - graph.first(cell));
+        }
+
+        // a wall down the middle of a board built square by square leaves two halves
+        CompiledBoard split = new CompiledBoard(5, 5);
+        for (int x = 0; x < 5; x++)
+            split.addSquare(x, 2, CompiledBoard.BLOCKED);
+        graph = split.getGraph();
+        assert graph.components() == 2;
+        assert graph.connected(0, 21) && !graph.connected(0, 4) && !graph.connected(2, 2);
+        assert graph.component(2) == BoardGraph.NO_COMPONENT;
+
+        PathFinder finder = new PathFinder(split);
+        assert finder.findPath(0, 21, null) == 5;
+        assert finder.findPath(0, 4, null) == PathFinder.NO_PATH && finder.getExpandedNodes() == 0;
+        HierarchicalPathFinder hierarchical = new HierarchicalPathFinder(split, 2);
+        assert hierarchical.findNearest(0, new int[]{4, 9}, null) == PathFinder.NO_PATH && hierarchical.getExpandedNodes() == 0;
+        assert hierarchical.findNearest(0, new int[]{4, 20}, null) == finder.findPath(0, 20, null) && hierarchical.getTarget() == 1;
+    }
+
+    /**
+     * Players walk round the tokens in their way rather than through them, the
+     * board keeps track of the tokens as they move, a room is offered exactly when
+     * a player can walk into it round the tokens, and a player carries on along the
+     * path they were on when they stop short of a room
+     */
+    @Test
+    public void test_occupancy() {
+        Game game = new Game(new Random(5));
+        CompiledBoard board = game.getBoard();
+        DistanceField distances = game.getDistances();
+        Occupancy occupancy = game.getOccupancy();
+        Room kitchen = game.getRoom("Kitchen");
+        Player p1 = game.createPlayer("Bob", Player.Token.MrGreen, 1);
+        Player p2 = game.createPlayer("Sue", Player.Token.MissScarlett, 2);
+        Position start = p1.getPosition();
+        occupancy.add(p1);
+        occupancy.add(p2);
+        assert occupancy.count() == 2 && occupancy.isOccupied(start);
+
+        // stand three steps along the shortest way to the kitchen, which is two steps round
+        Door door = kitchen.getDoor(start, distances);
+        int distance = distances.distance(door, start);
+        Position blocking = start;
+        for (int i = 0; i < 3; i++)
+            blocking = distances.nextStep(door, blocking);
+        p2.move(blocking);
+        assert occupancy.count() == 2 && occupancy.isOccupied(blocking);
+        assert game.getPathFinder().findPath(board.cell(start), board.cell(door.getPos()), null, occupancy) == distance + 2;
+
+        assert !game.movePlayer(p1, distance + 1, kitchen);
+        assert !p1.getPosition().equals(blocking);
+        p1.move(start);
+        assert game.movePlayer(p1, distance + 3, kitchen);
+        assert occupancy.count() == 1 && !occupancy.isOccupied(door.getPos());
+        p1.leaveRoom();
+        assert occupancy.count() == 2 && occupancy.isOccupied(door.getPos());
+        p2.enterRoom(kitchen);
+        assert occupancy.count() == 1 && !occupancy.isOccupied(blocking);
+
+        // a room is only offered on the rolls that can walk into it round the tokens
+        // stand nearer the door, where the token three steps on makes us go round
+        p2.leaveRoom();
+        Position near = start;
+        int steps = distance;
+        int detour;
+        do {
+            near = distances.nextStep(door, near);
+            steps--;
+            blocking = near;
+            for (int i = 0; i < 3; i++)
+                blocking = distances.nextStep(door, blocking);
+            p2.move(blocking);
+            detour = game.getPathFinder().findPath(board.cell(near), board.cell(door.getPos()), null, occupancy);
+        } while (steps >= GameEngine.MAX_ROLL || detour == steps);
+        p1.move(near);
+        Reachability.Reach empty = game.getReachability().from(p1);
+        Reachability.Reach round = game.getReachability().from(p1, occupancy);
+        for (int roll = GameEngine.MIN_ROLL; roll <= GameEngine.MAX_ROLL; roll++) {
+            assert empty.canEnter(kitchen, roll) == steps < roll;
+            assert round.canEnter(kitchen, roll) == (detour != PathFinder.NO_PATH && detour < roll);
+        }
+
+        // the rooms offered round the tokens are the ones movePlayer takes us into, also when a token stands on a door
+        Random random = new Random(9);
+        List<Door> allDoors = board.getDoors();
+        for (int i = 0; i < 200; ) {
+            int other = i % 2 == 0 ? board.cell(allDoors.get(random.nextInt(allDoors.size())).getPos()) : random.nextInt(board.size());
+            int from = other + random.nextInt(7) - 3 + (random.nextInt(7) - 3) * board.cols();
+            if (from < 0 || from >= board.size() || from == other || !board.isWalkable(from) || !board.isWalkable(other))
+                continue;
+            i++;
+            p2.move(board.position(other));
+            for (Room room : game.getCard().getRooms()) {
+                int roll = GameEngine.MIN_ROLL + random.nextInt(GameEngine.MAX_ROLL - GameEngine.MIN_ROLL + 1);
+                p1.leaveRoom();
+                p1.move(board.position(from));
+                boolean offered = game.getReachability().from(p1, occupancy).canEnter(room, roll);
+                assert game.movePlayer(p1, roll, room) == offered;
+            }
+        }
+
+        // on a board without distance fields the rest of the path is followed turn after turn
+        Game large = new Game(new Random(5), new BoardGenerator(300, 300, 25, 2).generate(11));
+        Player p3 = large.createPlayer("Bob", Player.Token.ColonelMustard, 1);
+        for (Room room : large.getCard().getRooms()) {
+            p3.leaveRoom();
+            int[] doors = new int[room.getDoors().size()];
+            int n = 0;
+            for (Door d : room.getDoors())
+                doors[n++] = large.getBoard().cell(d.getPos());
+            int length = large.getHierarchicalPathFinder().findNearest(large.getBoard().cell(p3.getPosition()), doors, null);
+            int turns = 1;
+            while (!large.movePlayer(p3, 7, room))
+                turns++;
+            assert turns == (length + 7) / 7;
+        }
+    }
+
+    /**
+     * One search finds the nearest door of every room, the same as the distance
+     * fields give, and a secret passage leads straight to its room
+     */
+    @Test
+    public void test_roomSearch() {
+        Game game = new Game(new Random(5));
+        CompiledBoard board = game.getBoard();
+        DistanceField distances = game.getDistances();
+        RoomSearch search = game.getRoomSearch();
+        for (int cell = 0; cell < board.size(); cell++) {
+            if (!board.isWalkable(cell))
+                continue;
+            RoomSearch.Distances found = search.from(board.position(cell));
+            assert found.getRooms().size() == game.getCard().getRooms().size();
+            int last = 0;
+            for (Room room : found.getRooms()) {
+                int steps = found.getSteps(room);
+                assert steps == nearestDoor(distances, room, board.position(cell));
+                assert found.getDoor(room).getRoom() == room && distances.distance(found.getDoor(room), board.position(cell)) == steps;
+                assert steps >= last && !found.byPassage(room);
+                last = steps;
+            }
+        }
+
+        Room kitchen = game.getRoom("Kitchen");
+        Room study = game.getRoom("Study");
+        RoomSearch.Distances fromKitchen = search.from(kitchen);
+        assert fromKitchen.getRooms().get(0) == study && fromKitchen.byPassage(study);
+        assert fromKitchen.getSteps(study) == 0 && fromKitchen.getDoor(study) == null;
+        assert fromKitchen.getSteps(kitchen) == RoomSearch.UNREACHABLE && !fromKitchen.getRooms().contains(kitchen);
+        Room hall = game.getRoom("Hall");
+        assert fromKitchen.getSteps(hall) == distances.distance(kitchen.selectBestDoorToDoor(hall, distances), fromKitchen.getDoor(hall).getPos());
+        assert search.from(hall).getRooms().size() == game.getCard().getRooms().size() - 1;
+    }
+
+    /**
+     * The turns to walk into a room match playing the rolls out, secret passages
+     * take a turn, and no way to a room takes longer than walking straight there
+     */
+    @Test
+    public void test_turnPlanner() {
+        assert TurnPlanner.walk(0) == 1 && TurnPlanner.walk(1) == 1;
+        assert Math.abs(TurnPlanner.walk(2) - 1.1) < 1e-9;
+        Random dice = new Random(3);
+        for (int steps : new int[]{5, 20, 60}) {
+            long turns = 0;
+            for (int game = 0; game < 20000; game++) {
+                for (int left = steps + 1; left > 0; turns++)
+                    left -= dice.nextInt(GameEngine.MAX_ROLL - GameEngine.MIN_ROLL + 1) + GameEngine.MIN_ROLL;
+            }
+            assert Math.abs(turns / 20000.0 - TurnPlanner.walk(steps)) < 0.05;
+        }
+
+        Game game = new Game(new Random(5));
+        CompiledBoard board = game.getBoard();
+        TurnPlanner planner = game.getTurnPlanner();
+        RoomSearch search = game.getRoomSearch();
+        Room kitchen = game.getRoom("Kitchen");
+        Room study = game.getRoom("Study");
+        assert planner.getTurns(kitchen, study) == 1 && planner.getTurns(kitchen, kitchen) == 0;
+        for (int cell = 0; cell < board.size(); cell++) {
+            if (!board.isWalkable(cell))
+                continue;
+            RoomSearch.Distances distances = search.from(board.position(cell));
+            for (Room room : game.getCard().getRooms()) {
+                double turns = planner.getTurns(cell, room);
+                assert turns <= TurnPlanner.walk(distances.getSteps(room)) + 1e-6;
+                if (board.doorAt(cell) != null && board.doorAt(cell).getRoom() == room)
+                    assert turns == 1;
+            }
+        }
+
+        // walking to the kitchen and taking its passage is the quickest way to the study from next to the kitchen
+        Player player = game.createPlayer("Bob", Player.Token.MrsWhite, 1);
+        player.move(kitchen.getDoors().iterator().next().getPos());
+        assert planner.getNextRoom(player, study) == kitchen;
+        assert planner.getTurns(player, study) == (float) (1 + planner.getTurns(kitchen, study));
+        player.enterRoom(kitchen);
+        assert planner.getNextRoom(player, study) == study && planner.getTurns(player, study) == 1;
+
+        // bigger boards search from the square when asked
+        Game large = new Game(new Random(5), new BoardGenerator(300, 300, 25, 2).generate(11));
+        assert large.getBoard().size() > TurnPlanner.MAX_SQUARES;
+        Door door = large.getBoard().getDoors().get(0);
+        assert large.getTurnPlanner().getTurns(large.getBoard().cell(door.getPos()), door.getRoom()) == 1;
+    }
+
 }